@@ -4,6 +4,9 @@ import com.alerts.Alert;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@code AlertGenerator}  class monitors patient data and generates alerts
@@ -14,7 +17,11 @@ import com.data_management.PatientRecord;
  * the problem wsa that line comments for java doc were  big and we wrapped them
  */
 public class AlertGenerator {
+    /** Record types {@link #evaluate} has conditions for. */
+    private static final int[] CHECKED_TYPES = {RecordTypes.SYSTOLIC_PRESSURE, RecordTypes.SATURATION};
+
     private DataStorage dataStorage;
+    private final AtomicLong alertCount = new AtomicLong();
 
     /**
      * Constructs an {@code AlertGenerator} with a specified {@code DataStorage}.
@@ -38,37 +45,90 @@ public class AlertGenerator {
      * @param patient the patient data to evaluate for alert conditions
      */
     public void evaluateData(Patient patient) {
-        // Example 1: Critical blood pressure thresholds
-        for (PatientRecord rec : patient.getAllRecords()) {
-            String type = rec.getRecordType();
-            double value = rec.getMeasurementValue();
-            long ts = rec.getTimestamp();
+        // One pass in timestamp order, as over the whole history, but only
+        // over the record types that have conditions
+        for (PatientRecord rec : patient.getRecords(CHECKED_TYPES, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            evaluate(patient.getPatientId(), rec.getRecordTypeCode(), rec.getMeasurementValue(), rec.getTimestamp(),
+                    patient);
+        }
+    }
 
-            if ("SystolicPressure".equals(type) && (value > 180 || value < 90)) {
-                triggerAlert(new Alert(
-                        String.valueOf(patient.getPatientId()),             // convert int → String
-                        "Critical systolic pressure: " + value,
-                        ts));
-            }
+    /**
+     * Evaluates a single reading as it arrives, with the same conditions as
+     * {@link #evaluateData(Patient)}. The reading is expected to be in the
+     * storage already, as the combined condition looks at the patient's
+     * readings of the last minute.
+     *
+     * @param patientId the patient the reading belongs to
+     * @param type      the record type, e.g. "SystolicPressure"
+     * @param value     the measured value
+     * @param timestamp the time of the reading (ms since epoch)
+     */
+    public void evaluateReading(int patientId, String type, double value, long timestamp) {
+        evaluate(patientId, RecordTypes.codeOf(type), value, timestamp, null);
+    }
+
+    /**
+     * Evaluates a single reading whose record type is already
+     * dictionary-encoded.
+     *
+     * @param patientId the patient the reading belongs to
+     * @param type      the record type as a {@link RecordTypes} code
+     * @param value     the measured value
+     * @param timestamp the time of the reading (ms since epoch)
+     */
+    public void evaluateReading(int patientId, int type, double value, long timestamp) {
+        evaluate(patientId, type, value, timestamp, null);
+    }
 
-            // Example 2: Low oxygen saturation
-            if ("Saturation".equals(type) && value < 92.0) {
-                triggerAlert(new Alert(
-                        String.valueOf(patient.getPatientId()),             // convert int → String
-                        "Low blood oxygen saturation: " + value + "%",
-                        ts));
-            }
+    /**
+     * @return number of alerts triggered so far
+     */
+    public long getAlertCount() {
+        return alertCount.get();
+    }
 
-            // Example 3: Hypotensive hypoxemia (combined condition)
-            if ("SystolicPressure".equals(type) && value < 90) {
-                patient.getRecords(ts - 60_000, ts).stream()
-                        .filter(r -> "Saturation".equals(r.getRecordType()) && r.getMeasurementValue() < 92.0)
-                        .findFirst()
-                        .ifPresent(r2 -> triggerAlert(new Alert(
-                                String.valueOf(patient.getPatientId()),         // convert int → String
-                                "Hypotensive hypoxemia (BP=" + value + ", Sat=" + r2.getMeasurementValue() + "%)",
-                                ts)));
-            }
+    /**
+     * Checks one reading against all conditions.
+     *
+     * @param patient the patient whose records hold the reading's history, or
+     *                null to look it up in the storage
+     */
+    private void evaluate(int patientId, int type, double value, long ts, Patient patient) {
+        switch (type) {
+            case RecordTypes.SYSTOLIC_PRESSURE:
+                // Example 1: Critical blood pressure thresholds
+                if (value > 180 || value < 90) {
+                    triggerAlert(new Alert(
+                            String.valueOf(patientId),             // convert int → String
+                            "Critical systolic pressure: " + value,
+                            ts));
+                }
+                // Example 3: Hypotensive hypoxemia (combined condition)
+                if (value < 90) {
+                    List<PatientRecord> recent = patient != null
+                            ? patient.getRecords(RecordTypes.SATURATION, ts - 60_000, ts)
+                            : dataStorage.getRecords(patientId, RecordTypes.SATURATION, ts - 60_000, ts);
+                    recent.stream()
+                            .filter(r -> r.getMeasurementValue() < 92.0)
+                            .findFirst()
+                            .ifPresent(r2 -> triggerAlert(new Alert(
+                                    String.valueOf(patientId),         // convert int → String
+                                    "Hypotensive hypoxemia (BP=" + value + ", Sat=" + r2.getMeasurementValue() + "%)",
+                                    ts)));
+                }
+                break;
+            case RecordTypes.SATURATION:
+                // Example 2: Low oxygen saturation
+                if (value < 92.0) {
+                    triggerAlert(new Alert(
+                            String.valueOf(patientId),             // convert int → String
+                            "Low blood oxygen saturation: " + value + "%",
+                            ts));
+                }
+                break;
+            default:
+                break; // no conditions on other record types
         }
     }
 
@@ -80,8 +140,9 @@ public class AlertGenerator {
      *
      * @param alert the alert object containing details about the alert condition
      */
-    private void triggerAlert(Alert alert) {
+    protected void triggerAlert(Alert alert) {
         // Implementation might involve logging the alert or notifying staff
+        alertCount.incrementAndGet();
         System.out.println("ALERT: " + alert);
     }
 }
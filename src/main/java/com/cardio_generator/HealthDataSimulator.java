@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -17,11 +19,26 @@ import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.RandomStreams;
+import com.cardio_generator.generators.SimulatedClock;
+import com.cardio_generator.generators.SimulationClock;
+import com.cardio_generator.outputs.AsyncOutputStrategy;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
+import com.cardio_generator.outputs.DataStorageOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.RotatingFileOutputStrategy;
+import com.cardio_generator.outputs.SegmentLogOutputStrategy;
+import com.cardio_generator.outputs.SharedMemoryOutputStrategy;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.cardio_generator.scheduling.PatientLoopScheduler;
+import com.cardio_generator.scheduling.PeriodicSignal;
+import com.cardio_generator.scheduling.TimingWheelScheduler;
+import com.cardio_generator.scheduling.VirtualThreads;
+import com.data_management.DataStorage;
+import com.data_management.DeletionPolicy;
+import com.data_management.Patient;
 
 /**
  * Entry point for the Health Data Simulator application.
@@ -43,6 +60,54 @@ public class HealthDataSimulator {
     /** Scheduler to manage periodic data generation tasks. */
     private static ScheduledExecutorService scheduler;
 
+    /** Scheduling mode: "pool" (one task per patient and signal) or "wheel". */
+    private static String schedulerMode = "pool";
+
+    /** Thread kind: "platform" (default) or "virtual" for one virtual thread per patient. */
+    private static String executorMode = "platform";
+
+    /** Output specification given with --output; resolved once all options are known. */
+    private static String outputSpec = "console";
+
+    /** Time mode: "realtime" (default) or "simulated" for a clock driven by the scheduler. */
+    private static String timeMode = "realtime";
+
+    /** Simulated milliseconds per wall-clock millisecond; infinite means as fast as possible. */
+    private static double speed = Double.POSITIVE_INFINITY;
+
+    /** Amount of simulated time to generate in simulated mode (one day by default). */
+    private static long durationMillis = TimeUnit.DAYS.toMillis(1);
+
+    /** Start of the simulated time line; the current wall-clock time by default. */
+    private static long startMillis = System.currentTimeMillis();
+
+    /** ECG samples per second and patient; 1 keeps the one-reading-per-second model. */
+    private static int ecgRate = 1;
+
+    /** Master seed for the generators' per-patient random streams. */
+    private static long seed = RandomStreams.newSeed();
+
+    /** When file output forces written records to disk. */
+    private static FileOutputStrategy.FsyncPolicy fsyncPolicy = FileOutputStrategy.FsyncPolicy.NEVER;
+
+    /** Period after which file output starts a new compressed segment; 0 disables time rotation. */
+    private static long rotatePeriodMillis = 0;
+
+    /** Uncompressed size at which file output starts a new compressed segment; 0 disables size rotation. */
+    private static long rotateBytes = 0;
+
+    /** Retention rules {@code <type>=<duration>} for storage output; empty keeps everything. */
+    private static final List<String> retentionRules = new ArrayList<>();
+
+    /** Ring size of an {@code async:} output. */
+    private static int asyncCapacity = AsyncOutputStrategy.DEFAULT_CAPACITY;
+
+    /** What an {@code async:} output does when its ring is full. */
+    private static AsyncOutputStrategy.OverflowPolicy asyncOverflow = AsyncOutputStrategy.OverflowPolicy.BLOCK;
+
+    /** Clock all generators read their timestamps from. */
+    private static SimulationClock clock = SimulationClock.SYSTEM;
+
     /** Strategy for outputting generated data (console by default). */
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy();
 
@@ -54,29 +119,108 @@ public class HealthDataSimulator {
      * and schedules data generation tasks.
      *
      * @param args command-line arguments for configuration
-     * @throws IOException if file output directory creation fails
+     * @throws IOException          if file output directory creation fails
+     * @throws InterruptedException if a simulated run is interrupted
      */
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
         parseArguments(args);
+        if (executorMode.equals("virtual") && !VirtualThreads.isSupported()) {
+            System.err.println("Virtual threads require Java 21 or newer. Using platform threads.");
+            executorMode = "platform";
+        }
+        outputStrategy = createOutputStrategy(outputSpec);
+        // Write out buffered records however the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> outputStrategy.close()));
+
+        if (timeMode.equals("simulated")) {
+            // Simulated time is always driven by the timing wheel
+            runSimulation();
+            return;
+        }
+
+        if (executorMode.equals("virtual")) {
+            // A plain sleeping loop per patient; virtual threads make that cheap
+            new PatientLoopScheduler(patientCount, createSignals(), outputStrategy,
+                    VirtualThreads.newThreadPerTaskExecutor()).start();
+            return;
+        }
+        if (schedulerMode.equals("wheel")) {
+            // One wheel and a worker per core, regardless of the patient count
+            new TimingWheelScheduler(patientCount, createSignals(), outputStrategy,
+                    Runtime.getRuntime().availableProcessors(),
+                    TimingWheelScheduler.DEFAULT_TICK_MILLIS, clock).start();
+            return;
+        }
         scheduler = Executors.newScheduledThreadPool(patientCount * 4);
         List<Integer> patientIds = initializePatientIds(patientCount);
         Collections.shuffle(patientIds); // Randomize the order of patient IDs
         scheduleTasksForPatients(patientIds);
     }
 
+    /**
+     * Generates {@link #durationMillis} of data on a simulated clock starting
+     * at {@link #startMillis}, at the configured speed.
+     *
+     * @throws InterruptedException if the run is interrupted
+     */
+    private static void runSimulation() throws InterruptedException {
+        clock = new SimulatedClock(startMillis);
+        TimingWheelScheduler wheelScheduler = new TimingWheelScheduler(patientCount, createSignals(),
+                outputStrategy, Runtime.getRuntime().availableProcessors(),
+                TimingWheelScheduler.DEFAULT_TICK_MILLIS, clock);
+
+        long wallStart = System.nanoTime();
+        wheelScheduler.runSimulated(durationMillis, speed);
+        outputStrategy.close();
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+        System.out.println("Simulated " + durationMillis / 1000 + " s for " + patientCount
+                + " patients in " + wallMillis + " ms (seed " + seed + ")");
+        if (outputStrategy instanceof AsyncOutputStrategy) {
+            AsyncOutputStrategy async = (AsyncOutputStrategy) outputStrategy;
+            System.out.println("Async output: " + async.getQueuedCount() + " readings queued, "
+                    + async.getDroppedCount() + " dropped");
+        }
+        if (outputStrategy instanceof DataStorageOutputStrategy) {
+            DataStorageOutputStrategy direct = (DataStorageOutputStrategy) outputStrategy;
+            System.out.println("Storage output: " + direct.getStoredCount() + " readings stored for "
+                    + direct.getStorage().getAllPatients().size() + " patients");
+            if (!retentionRules.isEmpty()) {
+                direct.getStorage().stopPurging();
+                long purged = direct.getStorage().purgeOldData();
+                long held = 0;
+                for (Patient patient : direct.getStorage().getAllPatients()) {
+                    held += patient.getRecordCount();
+                }
+                System.out.println("Retention: " + held + " readings held after a final purge of " + purged);
+            }
+        }
+    }
+
     /**
      * Parses command-line arguments to configure patient count and output strategy.
      * Recognized options:
      * <ul>
      *   <li>{@code -h}: show help and exit</li>
      *   <li>{@code --patient-count <count>}: number of patients to simulate</li>
-     *   <li>{@code --output console | file:<dir> | websocket:<port> | tcp:<port>}</li>
+     *   <li>{@code --output console | storage | file:<dir> | websocket:<port> | tcp:<port> | segments:<dir> | shm:<path> | async:<output>}</li>
+     *   <li>{@code --scheduler pool | wheel}: scheduling mode</li>
+     *   <li>{@code --executor platform | virtual}: thread kind for generation loops</li>
+     *   <li>{@code --time-mode realtime | simulated}: clock used for timestamps</li>
+     *   <li>{@code --speed max | <factor>}: pace of simulated time</li>
+     *   <li>{@code --duration <n>[s|m|h|d]}: simulated time to generate</li>
+     *   <li>{@code --start <epoch-millis>}: start of simulated time</li>
+     *   <li>{@code --seed <long>}: master seed for reproducible readings</li>
+     *   <li>{@code --ecg-rate <hz>}: ECG sampling rate</li>
+     *   <li>{@code --fsync never | flush | close}: when file output forces records to disk</li>
+     *   <li>{@code --rotate <n>[s|m|h|d] | <n>MB}: rotation of file output into GZIP segments</li>
+     *   <li>{@code --retention <type>=<n>[s|m|h|d]}: how long storage output keeps a record type, repeatable</li>
+     *   <li>{@code --async-capacity <slots>}: ring size of an async output</li>
+     *   <li>{@code --async-overflow block | drop-oldest | drop-newest}: full-ring policy</li>
      * </ul>
      *
      * @param args array of command-line arguments
-     * @throws IOException if creating the output directory fails
      */
-    private static void parseArguments(String[] args) throws IOException {
+    private static void parseArguments(String[] args) {
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "-h":
@@ -95,36 +239,152 @@ public class HealthDataSimulator {
                     break;
                 case "--output":
                     if (i + 1 < args.length) {
-                        String outputArg = args[++i];
-                        if (outputArg.equals("console")) {
-                            outputStrategy = new ConsoleOutputStrategy();
-                        } else if (outputArg.startsWith("file:")) {
-                            String baseDirectory = outputArg.substring(5);
-                            Path outputPath = Paths.get(baseDirectory);
-                            if (!Files.exists(outputPath)) {
-                                Files.createDirectories(outputPath);
+                        outputSpec = args[++i];
+                    }
+                    break;
+                case "--executor":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i];
+                        if (mode.equals("platform") || mode.equals("virtual")) {
+                            executorMode = mode;
+                        } else {
+                            System.err.println("Unknown executor '" + mode + "'. Using default (platform).");
+                        }
+                    }
+                    break;
+                case "--time-mode":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i];
+                        if (mode.equals("realtime") || mode.equals("simulated")) {
+                            timeMode = mode;
+                        } else {
+                            System.err.println("Unknown time mode '" + mode + "'. Using default (realtime).");
+                        }
+                    }
+                    break;
+                case "--speed":
+                    if (i + 1 < args.length) {
+                        String value = args[++i];
+                        try {
+                            double parsed = value.equals("max") ? Double.POSITIVE_INFINITY : Double.parseDouble(value);
+                            if (!value.equals("max") && !(Double.isFinite(parsed) && parsed > 0)) {
+                                throw new NumberFormatException("speed must be finite and positive: " + value);
                             }
-                            outputStrategy = new FileOutputStrategy(baseDirectory);
-                        } else if (outputArg.startsWith("websocket:")) {
-                            try {
-                                int port = Integer.parseInt(outputArg.substring(10));
-                                outputStrategy = new WebSocketOutputStrategy(port);
-                                System.out.println("WebSocket output will be on port: " + port);
-                            } catch (NumberFormatException e) {
-                                System.err.println(
-                                        "Invalid port for WebSocket output. Please specify a valid port number.");
+                            speed = parsed;
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid speed. Using default value: max");
+                        }
+                    }
+                    break;
+                case "--duration":
+                    if (i + 1 < args.length) {
+                        try {
+                            durationMillis = parseDuration(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid duration. Using default value: 1d");
+                        }
+                    }
+                    break;
+                case "--start":
+                    if (i + 1 < args.length) {
+                        try {
+                            startMillis = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid start time. Using the current time.");
+                        }
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using a random seed.");
+                        }
+                    }
+                    break;
+                case "--ecg-rate":
+                    if (i + 1 < args.length) {
+                        try {
+                            ecgRate = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid ECG rate. Using default value: " + ecgRate);
+                        }
+                    }
+                    break;
+                case "--fsync":
+                    if (i + 1 < args.length) {
+                        String policy = args[++i];
+                        if (policy.equals("never")) {
+                            fsyncPolicy = FileOutputStrategy.FsyncPolicy.NEVER;
+                        } else if (policy.equals("flush")) {
+                            fsyncPolicy = FileOutputStrategy.FsyncPolicy.ON_FLUSH;
+                        } else if (policy.equals("close")) {
+                            fsyncPolicy = FileOutputStrategy.FsyncPolicy.ON_CLOSE;
+                        } else {
+                            System.err.println("Unknown fsync policy '" + policy + "'. Using default (never).");
+                        }
+                    }
+                    break;
+                case "--rotate":
+                    if (i + 1 < args.length) {
+                        String rotation = args[++i];
+                        try {
+                            if (rotation.endsWith("MB")) {
+                                rotateBytes = Long.parseLong(rotation.substring(0, rotation.length() - 2)) << 20;
+                            } else {
+                                rotatePeriodMillis = parseDuration(rotation);
                             }
-                        } else if (outputArg.startsWith("tcp:")) {
-                            try {
-                                int port = Integer.parseInt(outputArg.substring(4));
-                                outputStrategy = new TcpOutputStrategy(port);
-                                System.out.println("TCP socket output will be on port: " + port);
-                            } catch (NumberFormatException e) {
-                                System.err.println(
-                                        "Invalid port for TCP output. Please specify a valid port number.");
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid rotation '" + rotation + "'. File output will not rotate.");
+                        }
+                    }
+                    break;
+                case "--retention":
+                    if (i + 1 < args.length) {
+                        String rule = args[++i];
+                        int separator = rule.indexOf('=');
+                        try {
+                            if (separator <= 0) {
+                                throw new NumberFormatException(rule);
                             }
+                            parseDuration(rule.substring(separator + 1));
+                            retentionRules.add(rule);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid retention '" + rule + "'. Expected <type>=<duration>.");
+                        }
+                    }
+                    break;
+                case "--async-capacity":
+                    if (i + 1 < args.length) {
+                        try {
+                            asyncCapacity = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid async capacity. Using default value: " + asyncCapacity);
+                        }
+                    }
+                    break;
+                case "--async-overflow":
+                    if (i + 1 < args.length) {
+                        String policy = args[++i];
+                        if (policy.equals("block")) {
+                            asyncOverflow = AsyncOutputStrategy.OverflowPolicy.BLOCK;
+                        } else if (policy.equals("drop-oldest")) {
+                            asyncOverflow = AsyncOutputStrategy.OverflowPolicy.DROP_OLDEST;
+                        } else if (policy.equals("drop-newest")) {
+                            asyncOverflow = AsyncOutputStrategy.OverflowPolicy.DROP_NEWEST;
+                        } else {
+                            System.err.println("Unknown overflow policy '" + policy + "'. Using default (block).");
+                        }
+                    }
+                    break;
+                case "--scheduler":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i];
+                        if (mode.equals("pool") || mode.equals("wheel")) {
+                            schedulerMode = mode;
                         } else {
-                            System.err.println("Unknown output type. Using default (console).");
+                            System.err.println("Unknown scheduler '" + mode + "'. Using default (pool).");
                         }
                     }
                     break;
@@ -136,6 +396,105 @@ public class HealthDataSimulator {
         }
     }
 
+    /**
+     * Parses a duration such as {@code 90s}, {@code 15m}, {@code 12h} or
+     * {@code 7d}; a bare number is taken as seconds.
+     *
+     * @param value the duration text
+     * @return the duration in milliseconds
+     * @throws NumberFormatException if the value is not a valid duration
+     */
+    private static long parseDuration(String value) {
+        TimeUnit unit = TimeUnit.SECONDS;
+        String amount = value;
+        switch (value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+            case 's':
+                amount = value.substring(0, value.length() - 1);
+                break;
+            case 'm':
+                unit = TimeUnit.MINUTES;
+                amount = value.substring(0, value.length() - 1);
+                break;
+            case 'h':
+                unit = TimeUnit.HOURS;
+                amount = value.substring(0, value.length() - 1);
+                break;
+            case 'd':
+                unit = TimeUnit.DAYS;
+                amount = value.substring(0, value.length() - 1);
+                break;
+            default:
+                break;
+        }
+        return unit.toMillis(Long.parseLong(amount));
+    }
+
+    /**
+     * Creates the output strategy described by an {@code --output} value.
+     *
+     * @param spec the output specification, e.g. {@code file:./output}
+     * @return the configured strategy; console output if the spec is invalid
+     * @throws IOException if creating the output directory fails, or a
+     *                     segment log directory already holds segments
+     */
+    private static OutputStrategy createOutputStrategy(String spec) throws IOException {
+        if (spec.equals("console")) {
+            return new ConsoleOutputStrategy();
+        } else if (spec.equals("storage")) {
+            DataStorage storage = new DataStorage(createDeletionPolicy());
+            if (!retentionRules.isEmpty()) {
+                storage.startPurging(1000);
+            }
+            // com.alerts evaluates stored readings; the generators' AlertGenerator only simulates alert buttons
+            return new DataStorageOutputStrategy(storage, new com.alerts.AlertGenerator(storage));
+        } else if (spec.startsWith("async:")) {
+            // Decorates any other output, e.g. async:file:./output
+            return new AsyncOutputStrategy(createOutputStrategy(spec.substring(6)), asyncCapacity, asyncOverflow);
+        } else if (spec.startsWith("file:")) {
+            String baseDirectory = spec.substring(5);
+            Path outputPath = Paths.get(baseDirectory);
+            if (!Files.exists(outputPath)) {
+                Files.createDirectories(outputPath);
+            }
+            if (rotatePeriodMillis > 0 || rotateBytes > 0) {
+                return new RotatingFileOutputStrategy(baseDirectory, rotatePeriodMillis, rotateBytes, fsyncPolicy);
+            }
+            return new FileOutputStrategy(baseDirectory, fsyncPolicy,
+                    FileOutputStrategy.DEFAULT_BUFFER_BYTES, FileOutputStrategy.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        } else if (spec.startsWith("segments:")) {
+            return new SegmentLogOutputStrategy(spec.substring(9),
+                    SegmentLogOutputStrategy.DEFAULT_SEGMENT_BYTES, fsyncPolicy);
+        } else if (spec.startsWith("shm:")) {
+            return new SharedMemoryOutputStrategy(spec.substring(4));
+        } else if (spec.startsWith("websocket:")) {
+            try {
+                int port = Integer.parseInt(spec.substring(10));
+                System.out.println("WebSocket output will be on port: " + port);
+                return new WebSocketOutputStrategy(port, WebSocketOutputStrategy.DEFAULT_FLUSH_MILLIS,
+                        WebSocketOutputStrategy.DEFAULT_MAX_RECORDS, patientCount);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Invalid port for WebSocket output. Please specify a valid port number.");
+            }
+        } else if (spec.startsWith("tcp:")) {
+            try {
+                int port = Integer.parseInt(spec.substring(4));
+                ExecutorService acceptExecutor = executorMode.equals("virtual")
+                        ? VirtualThreads.newThreadPerTaskExecutor()
+                        : Executors.newSingleThreadExecutor();
+                System.out.println("TCP socket output will be on port: " + port);
+                // Handed over, so closing the strategy ends its thread and the JVM can exit
+                return new TcpOutputStrategy(port, acceptExecutor, true);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Invalid port for TCP output. Please specify a valid port number.");
+            }
+        } else {
+            System.err.println("Unknown output type. Using default (console).");
+        }
+        return new ConsoleOutputStrategy();
+    }
+
     /**
      * Prints usage instructions to the console.
      */
@@ -145,17 +504,69 @@ public class HealthDataSimulator {
         System.out.println("  -h                       Show help and exit.");
         System.out.println(
                 "  --patient-count <count>  Specify the number of patients to simulate data for (default: 50).");
+        System.out.println("  --scheduler <mode>       Define the scheduling mode. Options are:");
+        System.out.println("                             'pool' for one periodic task per patient and signal (default),");
+        System.out.println("                             'wheel' for a timing wheel driving a fixed worker pool,");
+        System.out.println("                             suited to very large patient counts.");
+        System.out.println("  --executor <kind>        Define the thread kind. Options are:");
+        System.out.println("                             'platform' for platform threads (default),");
+        System.out.println("                             'virtual' for one virtual thread per patient (Java 21+).");
+        System.out.println("  --time-mode <mode>       'realtime' (default) or 'simulated' to run on a simulated clock.");
+        System.out.println("  --speed <factor>         Pace of simulated time: 'max' (default) or a multiple of real time.");
+        System.out.println("  --duration <n>[s|m|h|d]  Amount of simulated time to generate (default: 1d).");
+        System.out.println("  --start <epoch-millis>   Start of simulated time (default: now).");
+        System.out.println("  --seed <long>            Master seed for reproducible readings (default: random).");
+        System.out.println("  --ecg-rate <hz>          ECG samples per second and patient, e.g. 250 or 500 (default: 1).");
+        System.out.println("  --fsync <policy>         When file output forces records to disk: 'never' (default),");
+        System.out.println("                             'flush' after every buffer flush, or 'close' on shutdown.");
+        System.out.println("  --rotate <period|size>   Write file output as GZIP segments, starting a new one per period");
+        System.out.println("                             of reading time (e.g. '1h') or per uncompressed size (e.g. '256MB').");
+        System.out.println("                             Give both to rotate on whichever comes first.");
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
+        System.out.println("                             'storage' to store readings in memory and evaluate alerts as they arrive,");
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'tcp:<port>' for TCP socket output,");
+        System.out.println("                             'segments:<directory>' for a memory-mapped binary segment log,");
+        System.out.println("                             'shm:<path>' for a shared-memory ring read by local processes,");
+        System.out.println("                             'async:<output>' to write any of the above on a background thread.");
+        System.out.println("  --retention <type>=<n>   How long 'storage' output keeps readings of a type, e.g. 'ECG=10m'");
+        System.out.println("                             or 'default=7d' for all other types. Repeatable; expired readings");
+        System.out.println("                             are dropped as new ones arrive and purged every second.");
+        System.out.println("  --async-capacity <n>     Ring size of an async output (default: 65536).");
+        System.out.println("  --async-overflow <mode>  When the ring is full: 'block' (default), 'drop-oldest' or 'drop-newest'.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
                 "  This command simulates data for 100 patients and sends the output to WebSocket clients connected to port 8080.");
     }
 
+    /**
+     * Builds the storage output's deletion policy from the --retention rules.
+     *
+     * @return the policy, or null if no rules were given
+     */
+    private static DeletionPolicy createDeletionPolicy() {
+        if (retentionRules.isEmpty()) {
+            return null;
+        }
+        long defaultRetention = DeletionPolicy.KEEP_FOREVER;
+        for (String rule : retentionRules) {
+            if (rule.startsWith("default=")) {
+                defaultRetention = parseDuration(rule.substring(8));
+            }
+        }
+        DeletionPolicy policy = new DeletionPolicy(defaultRetention);
+        for (String rule : retentionRules) {
+            int separator = rule.indexOf('=');
+            if (!rule.startsWith("default=")) {
+                policy.setRetention(rule.substring(0, separator), parseDuration(rule.substring(separator + 1)));
+            }
+        }
+        return policy;
+    }
+
     /**
      * Creates a sequential list of patient IDs from 1 to the specified count.
      *
@@ -170,32 +581,42 @@ public class HealthDataSimulator {
         return patientIds;
     }
 
+    /**
+     * Creates the generators for all patients together with the period at
+     * which each one produces a reading.
+     *
+     * @return the signals to simulate
+     */
+    private static List<PeriodicSignal> createSignals() {
+        // Each generator gets its own seed, drawn in a fixed order from the master seed
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<PeriodicSignal> signals = new ArrayList<>();
+        signals.add(new PeriodicSignal(new ECGDataGenerator(patientCount, clock, seeds.nextLong(), ecgRate),
+                1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodSaturationDataGenerator(patientCount, clock, seeds.nextLong()),
+                1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodPressureDataGenerator(patientCount, clock, seeds.nextLong()),
+                1, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new BloodLevelsDataGenerator(patientCount, clock, seeds.nextLong()),
+                2, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new AlertGenerator(patientCount, clock, seeds.nextLong()),
+                20, TimeUnit.SECONDS));
+        return signals;
+    }
+
     /**
      * Schedules periodic data generation tasks for each patient ID.
      *
      * @param patientIds shuffled list of patient identifiers
      */
     private static void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator =
-                new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator =
-                new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator =
-                new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
+        List<PeriodicSignal> signals = createSignals();
 
         for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy),
-                    1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy),
-                    1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy),
-                    1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy),
-                    2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy),
-                    20, TimeUnit.SECONDS);
+            for (PeriodicSignal signal : signals) {
+                scheduleTask(() -> signal.getGenerator().generate(patientId, outputStrategy),
+                        signal.getPeriod(), signal.getTimeUnit());
+            }
         }
     }
 
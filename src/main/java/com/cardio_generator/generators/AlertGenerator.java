@@ -1,40 +1,63 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.LabelRegistry;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingBatch;
 
 public class AlertGenerator implements PatientDataGenerator {
 
-    public static final Random randomGenerator = new Random();
+    private final SplittableRandom[] randomGenerators; // one stream per patient
     private boolean[] AlertStates; // false = resolved, true = pressed
+    private final SimulationClock clock;
 
     public AlertGenerator(int patientCount) {
+        this(patientCount, SimulationClock.SYSTEM);
+    }
+
+    public AlertGenerator(int patientCount, SimulationClock clock) {
+        this(patientCount, clock, RandomStreams.newSeed());
+    }
+
+    public AlertGenerator(int patientCount, SimulationClock clock, long seed) {
         AlertStates = new boolean[patientCount + 1];
+        this.clock = clock;
+        this.randomGenerators = RandomStreams.perPatient(seed, patientCount);
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
-        try {
-            if (AlertStates[patientId]) {
-                if (randomGenerator.nextDouble() < 0.9) { // 90% chance to resolve
-                    AlertStates[patientId] = false;
-                    // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
-                }
-            } else {
-                double Lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
-                double p = -Math.expm1(-Lambda); // Probability of at least one alert in the period
-                boolean alertTriggered = randomGenerator.nextDouble() < p;
+        generateBatch(patientId, patientId, outputStrategy);
+    }
 
-                if (alertTriggered) {
+    @Override
+    public void generateBatch(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
+        try {
+            ReadingBatch batch = ReadingBatch.forCurrentThread();
+            long timestamp = clock.currentTimeMillis();
+            double Lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
+            double p = -Math.expm1(-Lambda); // Probability of at least one alert in the period
+            for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+                SplittableRandom randomGenerator = randomGenerators[patientId];
+                if (AlertStates[patientId]) {
+                    if (randomGenerator.nextDouble() < 0.9) { // 90% chance to resolve
+                        AlertStates[patientId] = false;
+                        // Output the alert
+                        batch.add(patientId, timestamp, LabelRegistry.ALERT, "resolved");
+                    }
+                } else if (randomGenerator.nextDouble() < p) {
                     AlertStates[patientId] = true;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
+                    batch.add(patientId, timestamp, LabelRegistry.ALERT, "triggered");
                 }
             }
+            if (batch.size() > 0) {
+                outputStrategy.output(batch);
+            }
         } catch (Exception e) {
-            System.err.println("An error occurred while generating alert data for patient " + patientId);
+            System.err.println("An error occurred while generating alert data for patients "
+                    + fromPatientId + "-" + toPatientId);
             e.printStackTrace();
         }
     }
@@ -1,16 +1,29 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.LabelRegistry;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingBatch;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
+    private final SimulationClock clock;
 
     public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.SYSTEM);
+    }
+
+    public BloodLevelsDataGenerator(int patientCount, SimulationClock clock) {
+        this(patientCount, clock, RandomStreams.newSeed());
+    }
+
+    public BloodLevelsDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.clock = clock;
+        this.randoms = RandomStreams.perPatient(seed, patientCount);
         // Initialize arrays to store baseline values for each patient
         baselineCholesterol = new double[patientCount + 1];
         baselineWhiteCells = new double[patientCount + 1];
@@ -18,6 +31,7 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
         // Generate baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
+            SplittableRandom random = randoms[i];
             baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
             baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
             baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
@@ -26,19 +40,30 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generateBatch(patientId, patientId, outputStrategy);
+    }
+
+    @Override
+    public void generateBatch(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
         try {
-            // Generate values around the baseline for realism
-            double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
-            double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
-            double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
+            ReadingBatch batch = ReadingBatch.forCurrentThread();
+            long timestamp = clock.currentTimeMillis();
+            for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+                SplittableRandom random = randoms[patientId];
+                // Generate values around the baseline for realism
+                double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
+                double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
+                double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
+                batch.add(patientId, timestamp, LabelRegistry.CHOLESTEROL, cholesterol);
+                batch.add(patientId, timestamp, LabelRegistry.WHITE_BLOOD_CELLS, whiteCells);
+                batch.add(patientId, timestamp, LabelRegistry.RED_BLOOD_CELLS, redCells);
+            }
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
-                    Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(batch);
         } catch (Exception e) {
-            System.err.println("An error occurred while generating blood levels data for patient " + patientId);
+            System.err.println("An error occurred while generating blood levels data for patients "
+                    + fromPatientId + "-" + toPatientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
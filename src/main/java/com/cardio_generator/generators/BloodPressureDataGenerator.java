@@ -1,21 +1,35 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.LabelRegistry;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingBatch;
 
 public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient
 
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
+    private final SimulationClock clock;
 
     public BloodPressureDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.SYSTEM);
+    }
+
+    public BloodPressureDataGenerator(int patientCount, SimulationClock clock) {
+        this(patientCount, clock, RandomStreams.newSeed());
+    }
+
+    public BloodPressureDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.clock = clock;
+        this.randoms = RandomStreams.perPatient(seed, patientCount);
         lastSystolicValues = new int[patientCount + 1];
         lastDiastolicValues = new int[patientCount + 1];
 
         // Initialize with baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
+            SplittableRandom random = randoms[i];
             lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
             lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
         }
@@ -23,23 +37,33 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generateBatch(patientId, patientId, outputStrategy);
+    }
+
+    @Override
+    public void generateBatch(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
         try {
-            int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
-            int diastolicVariation = random.nextInt(5) - 2;
-            int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
-            int newDiastolicValue = lastDiastolicValues[patientId] + diastolicVariation;
-            // Ensure the blood pressure stays within a realistic and safe range
-            newSystolicValue = Math.min(Math.max(newSystolicValue, 90), 180);
-            newDiastolicValue = Math.min(Math.max(newDiastolicValue, 60), 120);
-            lastSystolicValues[patientId] = newSystolicValue;
-            lastDiastolicValues[patientId] = newDiastolicValue;
-
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
-                    Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
-                    Double.toString(newDiastolicValue));
+            ReadingBatch batch = ReadingBatch.forCurrentThread();
+            long timestamp = clock.currentTimeMillis();
+            for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+                SplittableRandom random = randoms[patientId];
+                int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
+                int diastolicVariation = random.nextInt(5) - 2;
+                int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
+                int newDiastolicValue = lastDiastolicValues[patientId] + diastolicVariation;
+                // Ensure the blood pressure stays within a realistic and safe range
+                newSystolicValue = Math.min(Math.max(newSystolicValue, 90), 180);
+                newDiastolicValue = Math.min(Math.max(newDiastolicValue, 60), 120);
+                lastSystolicValues[patientId] = newSystolicValue;
+                lastDiastolicValues[patientId] = newDiastolicValue;
+
+                batch.add(patientId, timestamp, LabelRegistry.SYSTOLIC_PRESSURE, newSystolicValue);
+                batch.add(patientId, timestamp, LabelRegistry.DIASTOLIC_PRESSURE, newDiastolicValue);
+            }
+            outputStrategy.output(batch);
         } catch (Exception e) {
-            System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
+            System.err.println("An error occurred while generating blood pressure data for patients "
+                    + fromPatientId + "-" + toPatientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
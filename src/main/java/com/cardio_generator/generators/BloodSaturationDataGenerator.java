@@ -1,7 +1,9 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import com.cardio_generator.outputs.LabelRegistry;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingBatch;
 
 /**
  * Generates simulated blood saturation readings for patients.
@@ -10,20 +12,45 @@ import com.cardio_generator.outputs.OutputStrategy;
  * fluctuations around a baseline. Ensures values stay within realistic bounds.
  */
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient
     private int[] lastSaturationValues;
+    private final SimulationClock clock;
 
     /**
-     * Initializes the generator with a baseline saturation for each patient.
+     * Initializes the generator with a baseline saturation for each patient,
+     * timestamping readings with wall-clock time.
      *
      * @param patientCount the total number of patients
      */
     public BloodSaturationDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.SYSTEM);
+    }
+
+    /**
+     * Initializes the generator with a baseline saturation for each patient.
+     *
+     * @param patientCount the total number of patients
+     * @param clock        source of the reading timestamps
+     */
+    public BloodSaturationDataGenerator(int patientCount, SimulationClock clock) {
+        this(patientCount, clock, RandomStreams.newSeed());
+    }
+
+    /**
+     * Initializes the generator with reproducible per-patient random streams.
+     *
+     * @param patientCount the total number of patients
+     * @param clock        source of the reading timestamps
+     * @param seed         master seed for the per-patient random streams
+     */
+    public BloodSaturationDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.clock = clock;
+        this.randoms = RandomStreams.perPatient(seed, patientCount);
         lastSaturationValues = new int[patientCount + 1];
 
         // Initialize with baseline saturation values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+            lastSaturationValues[i] = 95 + randoms[i].nextInt(6); // Initializes with a value between 95 and 100
         }
     }
 
@@ -37,20 +64,36 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
      */
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generateBatch(patientId, patientId, outputStrategy);
+    }
+
+    /**
+     * Generates new saturation values for a range of patients in one pass over
+     * {@code lastSaturationValues} and outputs them as a single batch.
+     *
+     * @param fromPatientId  first patient of the range
+     * @param toPatientId    last patient of the range
+     * @param outputStrategy the strategy to handle output of the generated data
+     */
+    @Override
+    public void generateBatch(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
         try {
-            // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
-            int newSaturationValue = lastSaturationValues[patientId] + variation;
-
-            // Ensure the saturation stays within a realistic and healthy range
-            newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
-            lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId,
-                    System.currentTimeMillis(),
-                    "Saturation",
-                    Double.toString(newSaturationValue) + "%");
+            ReadingBatch batch = ReadingBatch.forCurrentThread();
+            long timestamp = clock.currentTimeMillis();
+            for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+                // Simulate blood saturation values
+                int variation = randoms[patientId].nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
+                int newSaturationValue = lastSaturationValues[patientId] + variation;
+
+                // Ensure the saturation stays within a realistic and healthy range
+                newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
+                lastSaturationValues[patientId] = newSaturationValue;
+                batch.add(patientId, timestamp, LabelRegistry.SATURATION, newSaturationValue);
+            }
+            outputStrategy.output(batch);
         } catch (Exception e) {
-            System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
+            System.err.println("An error occurred while generating blood saturation data for patients "
+                    + fromPatientId + "-" + toPatientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
@@ -1,39 +1,154 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.LabelRegistry;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingBatch;
 
+/**
+ * Generates simulated ECG readings.
+ * <p>
+ * At the default rate of 1 Hz every call produces one value from a sum of
+ * sinusoids. With a higher sampling rate every call produces a one-second
+ * block of {@code sampleRateHz} samples per patient, read from a
+ * precomputed PQRST beat table indexed by each patient's phase within the
+ * current beat. The heart rate varies from beat to beat around a per-patient
+ * baseline. Each patient's block is output as one batch.
+ */
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
+    private final SimulationClock clock;
+
+    /** Length of the block produced per call in high-rate mode; matches the 1 s schedule. */
+    private static final long BLOCK_MILLIS = 1000;
+
+    /** One heartbeat sampled at {@code BEAT_TABLE.length} points of phase [0, 1). */
+    private static final double[] BEAT_TABLE = createBeatTable(1024);
+
+    private final int sampleRateHz;
+    private final double[] beatPhases;    // position within the current beat, [0, 1)
+    private final double[] baselineRates; // resting heart rate per patient, bpm
+    private final double[] heartRates;    // heart rate of the current beat, bpm
 
     public ECGDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.SYSTEM);
+    }
+
+    public ECGDataGenerator(int patientCount, SimulationClock clock) {
+        this(patientCount, clock, RandomStreams.newSeed());
+    }
+
+    public ECGDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this(patientCount, clock, seed, 1);
+    }
+
+    /**
+     * @param patientCount the total number of patients
+     * @param clock        source of the reading timestamps
+     * @param seed         master seed for the per-patient random streams
+     * @param sampleRateHz samples per second and patient; 1 keeps the
+     *                     single-value sinusoid model
+     */
+    public ECGDataGenerator(int patientCount, SimulationClock clock, long seed, int sampleRateHz) {
+        this.clock = clock;
+        this.randoms = RandomStreams.perPatient(seed, patientCount);
+        this.sampleRateHz = Math.max(1, sampleRateHz);
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
         for (int i = 1; i <= patientCount; i++) {
             lastEcgValues[i] = 0; // Initial ECG value can be set to 0
         }
+
+        beatPhases = new double[patientCount + 1];
+        baselineRates = new double[patientCount + 1];
+        heartRates = new double[patientCount + 1];
+        if (this.sampleRateHz > 1) {
+            for (int i = 1; i <= patientCount; i++) {
+                beatPhases[i] = randoms[i].nextDouble(); // patients are not in sync
+                baselineRates[i] = 60.0 + randoms[i].nextDouble() * 20.0; // between 60 and 80 bpm
+                heartRates[i] = baselineRates[i];
+            }
+        }
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generateBatch(patientId, patientId, outputStrategy);
+    }
+
+    @Override
+    public void generateBatch(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
+        if (sampleRateHz > 1) {
+            generateBlocks(fromPatientId, toPatientId, outputStrategy);
+            return;
+        }
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
-            lastEcgValues[patientId] = ecgValue;
+            ReadingBatch batch = ReadingBatch.forCurrentThread();
+            long timestamp = clock.currentTimeMillis();
+            for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+                double ecgValue = simulateEcgWaveform(randoms[patientId], timestamp, lastEcgValues[patientId]);
+                batch.add(patientId, timestamp, LabelRegistry.ECG, ecgValue);
+                lastEcgValues[patientId] = ecgValue;
+            }
+            outputStrategy.output(batch);
+        } catch (Exception e) {
+            System.err.println("An error occurred while generating ECG data for patients "
+                    + fromPatientId + "-" + toPatientId);
+            e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
+        }
+    }
+
+    /**
+     * Produces the block of samples for the second ending at the current
+     * time, one batch per patient.
+     */
+    private void generateBlocks(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
+        try {
+            ReadingBatch batch = ReadingBatch.forCurrentThread();
+            long blockStart = clock.currentTimeMillis() - BLOCK_MILLIS;
+            int tableSize = BEAT_TABLE.length;
+            for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+                SplittableRandom random = randoms[patientId];
+                double phase = beatPhases[patientId];
+                double heartRate = heartRates[patientId];
+                double phaseStep = heartRate / 60.0 / sampleRateHz;
+
+                for (int k = 1; k <= sampleRateHz; k++) {
+                    double value = BEAT_TABLE[(int) (phase * tableSize)]
+                            + (random.nextDouble() - 0.5) * 0.02; // Add small noise
+                    long timestamp = blockStart + k * BLOCK_MILLIS / sampleRateHz;
+                    batch.add(patientId, timestamp, LabelRegistry.ECG, value);
+
+                    phase += phaseStep;
+                    if (phase >= 1.0) {
+                        // New beat: vary the rate by up to +/-5 bpm around the baseline
+                        phase -= 1.0;
+                        heartRate = baselineRates[patientId] + (random.nextDouble() - 0.5) * 10.0;
+                        phaseStep = heartRate / 60.0 / sampleRateHz;
+                    }
+                }
+
+                beatPhases[patientId] = phase;
+                heartRates[patientId] = heartRate;
+                lastEcgValues[patientId] = batch.getValue(batch.size() - 1);
+                outputStrategy.output(batch);
+                batch.clear();
+            }
         } catch (Exception e) {
-            System.err.println("An error occurred while generating ECG data for patient " + patientId);
+            System.err.println("An error occurred while generating ECG data for patients "
+                    + fromPatientId + "-" + toPatientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
 
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(SplittableRandom random, long timestamp, double lastEcgValue) {
         // Simplified ECG waveform generation based on sinusoids
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double t = timestamp / 1000.0; // Use the reading's timestamp to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
@@ -43,4 +158,29 @@ public class ECGDataGenerator implements PatientDataGenerator {
 
         return pWave + qrsComplex + tWave + random.nextDouble() * 0.05; // Add small noise
     }
+
+    /**
+     * Builds one PQRST complex as a sum of Gaussian bumps, in mV.
+     *
+     * @param size number of phase steps in the table
+     * @return the waveform sampled over one beat
+     */
+    private static double[] createBeatTable(int size) {
+        // Wave centers (fraction of the beat), amplitudes (mV) and widths
+        double[] centers = {0.20, 0.37, 0.40, 0.43, 0.70};
+        double[] amplitudes = {0.15, -0.10, 1.00, -0.25, 0.30};
+        double[] widths = {0.025, 0.010, 0.012, 0.010, 0.050};
+
+        double[] table = new double[size];
+        for (int i = 0; i < size; i++) {
+            double phase = (double) i / size;
+            double value = 0;
+            for (int w = 0; w < centers.length; w++) {
+                double d = (phase - centers[w]) / widths[w];
+                value += amplitudes[w] * Math.exp(-0.5 * d * d);
+            }
+            table[i] = value;
+        }
+        return table;
+    }
 }
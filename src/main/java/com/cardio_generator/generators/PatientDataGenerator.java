@@ -17,4 +17,19 @@ public interface PatientDataGenerator {
      * @param outputStrategy the strategy used to output generated data
      */
     void generate(int patientId, OutputStrategy outputStrategy);
+
+    /**
+     * Generates data for every patient in {@code fromPatientId..toPatientId}
+     * (inclusive) and outputs it as one batch. The default implementation
+     * calls {@link #generate(int, OutputStrategy)} for each patient.
+     *
+     * @param fromPatientId  first patient of the range
+     * @param toPatientId    last patient of the range
+     * @param outputStrategy the strategy used to output generated data
+     */
+    default void generateBatch(int fromPatientId, int toPatientId, OutputStrategy outputStrategy) {
+        for (int patientId = fromPatientId; patientId <= toPatientId; patientId++) {
+            generate(patientId, outputStrategy);
+        }
+    }
 }
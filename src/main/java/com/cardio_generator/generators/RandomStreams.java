@@ -0,0 +1,41 @@
+package com.cardio_generator.generators;
+
+import java.util.SplittableRandom;
+
+/**
+ * Creates the per-patient random streams used by the generators.
+ * <p>
+ * Each patient gets its own {@link SplittableRandom}, split in patient order
+ * from a master seed. A patient is only ever generated by one thread at a
+ * time, so the streams need no synchronization. The values a patient
+ * receives also don't depend on how patients are spread over threads, so
+ * a run is reproducible from its seed.
+ */
+public final class RandomStreams {
+
+    private RandomStreams() {
+    }
+
+    /**
+     * @return a fresh, unpredictable master seed
+     */
+    public static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Splits one stream per patient from the given master seed.
+     *
+     * @param seed         the master seed
+     * @param patientCount the total number of patients
+     * @return streams indexed by patient ID ({@code 1..patientCount})
+     */
+    public static SplittableRandom[] perPatient(long seed, int patientCount) {
+        SplittableRandom master = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[patientCount + 1];
+        for (int i = 1; i <= patientCount; i++) {
+            streams[i] = master.split();
+        }
+        return streams;
+    }
+}
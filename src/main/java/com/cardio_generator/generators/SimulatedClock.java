@@ -0,0 +1,32 @@
+package com.cardio_generator.generators;
+
+/**
+ * Clock whose time only moves when it is explicitly advanced, used to
+ * generate data faster (or slower) than wall-clock time.
+ */
+public class SimulatedClock implements SimulationClock {
+
+    private volatile long now;
+
+    /**
+     * @param startMillis the initial time in milliseconds since epoch
+     */
+    public SimulatedClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * Moves the clock forward. Only the scheduler driving the simulation
+     * should call this.
+     *
+     * @param millis the amount of simulated time to add
+     */
+    public void advance(long millis) {
+        now += millis;
+    }
+}
@@ -0,0 +1,19 @@
+package com.cardio_generator.generators;
+
+/**
+ * Source of the timestamps attached to generated readings.
+ * <p>
+ * Generators and the scheduler read time only through this interface, so
+ * the simulator can run either in wall-clock time ({@link #SYSTEM}) or on a
+ * {@link SimulatedClock} that is advanced faster than real time.
+ */
+public interface SimulationClock {
+
+    /** Wall-clock time as reported by {@link System#currentTimeMillis()}. */
+    SimulationClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return the current time in milliseconds since epoch
+     */
+    long currentTimeMillis();
+}
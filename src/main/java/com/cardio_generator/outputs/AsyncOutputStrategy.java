@@ -0,0 +1,319 @@
+package com.cardio_generator.outputs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decorator that hands readings to another {@link OutputStrategy} on a
+ * background thread, so a slow sink no longer stalls data generation.
+ * <p>
+ * Readings are copied into a preallocated ring of primitive slots (a
+ * bounded multi-producer queue after Dmitry Vyukov's design: every slot
+ * carries a sequence number that tells producers and the consumer whose
+ * turn it is). Producers claim slots with a single CAS and never lock. One
+ * consumer thread drains the ring in batches and passes them to the wrapped
+ * strategy via {@link OutputStrategy#output(ReadingBatch)}.
+ * <p>
+ * When the ring is full the {@link OverflowPolicy} decides whether the
+ * producer waits, the oldest queued reading is discarded, or the new
+ * reading is discarded.
+ */
+public class AsyncOutputStrategy implements OutputStrategy {
+
+    /**
+     * What a producer does when the ring is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until the consumer frees a slot. */
+        BLOCK,
+        /** Discard the oldest queued reading to make room. */
+        DROP_OLDEST,
+        /** Discard the reading being output. */
+        DROP_NEWEST
+    }
+
+    /** Default number of slots in the ring. */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    /** Maximum number of readings handed to the wrapped strategy at once. */
+    private static final int DRAIN_BATCH = 1024;
+
+    /** How long the idle consumer sleeps before checking the ring again. */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final OutputStrategy delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final int mask;
+
+    // Slot columns; slot i holds the reading whose position maps to i
+    private final AtomicLongArray sequences;
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final int[] labelIds;
+    private final double[] values;
+    private final String[] texts;
+
+    private final AtomicLong head = new AtomicLong(); // next position to dequeue
+    private final AtomicLong tail = new AtomicLong(); // next position to enqueue
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /** Producers that entered and left {@link #enqueue}; equal when none is in flight. */
+    private final LongAdder entered = new LongAdder();
+    private final LongAdder left = new LongAdder();
+
+    private final Thread consumer;
+    private volatile boolean consumerIdle;
+    private volatile boolean closed;
+    private volatile boolean producersDone; // closed, and no producer can still publish
+
+    /**
+     * Wraps a strategy with a ring of {@link #DEFAULT_CAPACITY} slots that
+     * blocks producers when full.
+     *
+     * @param delegate the strategy that receives the readings
+     */
+    public AsyncOutputStrategy(OutputStrategy delegate) {
+        this(delegate, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param delegate       the strategy that receives the readings
+     * @param capacity       number of slots, rounded up to a power of two
+     * @param overflowPolicy what to do when the ring is full
+     */
+    public AsyncOutputStrategy(OutputStrategy delegate, int capacity, OverflowPolicy overflowPolicy) {
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        patientIds = new int[size];
+        timestamps = new long[size];
+        labelIds = new int[size];
+        values = new double[size];
+        texts = new String[size];
+
+        consumer = new Thread(this::drain, "async-output");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        enqueue(patientId, timestamp, LabelRegistry.idOf(label), Double.NaN, data);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        enqueue(patientId, timestamp, labelId, value, null);
+    }
+
+    @Override
+    public void output(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            enqueue(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabelId(i),
+                    batch.getValue(i), batch.getText(i));
+        }
+    }
+
+    /**
+     * Stops accepting readings, waits until the consumer has handed every
+     * queued reading to the wrapped strategy, and closes that strategy.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // A producer that saw closed still false may not have published yet;
+        // the consumer must not finish before it has
+        while (!producersGone()) {
+            Thread.yield();
+        }
+        producersDone = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    /**
+     * @return number of readings accepted into the ring so far
+     */
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * @return number of readings discarded because the ring was full or the
+     *         strategy was closed
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of readings currently waiting in the ring
+     */
+    public long getBacklog() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * @return the number of slots in the ring
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    private void enqueue(int patientId, long timestamp, int labelId, double value, String text) {
+        entered.increment(); // before reading closed, so close() waits for this call
+        try {
+            claim(patientId, timestamp, labelId, value, text);
+        } finally {
+            left.increment();
+        }
+    }
+
+    /**
+     * @return true if every producer that entered {@link #enqueue} has left.
+     *         Both counters only grow and a producer leaves after it
+     *         entered, so reading {@code left} first can report too few
+     *         departures but never too many.
+     */
+    private boolean producersGone() {
+        long departures = left.sum();
+        return departures == entered.sum();
+    }
+
+    private void claim(int patientId, long timestamp, int labelId, double value, String text) {
+        int spins = 0;
+        while (true) {
+            if (closed) {
+                // Also checked on every retry: a producer blocked on a full
+                // ring must not slip a reading in after close()
+                dropped.increment();
+                return;
+            }
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    patientIds[index] = patientId;
+                    timestamps[index] = timestamp;
+                    labelIds[index] = labelId;
+                    values[index] = value;
+                    texts[index] = text;
+                    sequences.lazySet(index, pos + 1); // publish to the consumer
+                    queued.increment();
+                    if (consumerIdle) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return;
+                }
+            } else if (diff < 0) {
+                // Full: the slot still holds the reading from one lap ago
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        dropped.increment();
+                        return;
+                    case DROP_OLDEST:
+                        if (dequeue(null)) {
+                            dropped.increment();
+                        }
+                        break;
+                    default:
+                        LockSupport.unpark(consumer);
+                        backOff(spins++);
+                        break;
+                }
+            }
+            // Otherwise another producer claimed the slot first; retry
+        }
+    }
+
+    /**
+     * Removes the oldest reading. Producers applying
+     * {@link OverflowPolicy#DROP_OLDEST} race the consumer for it, so
+     * dequeuing claims the slot with a CAS as well.
+     *
+     * @param batch receives the reading, or null to discard it
+     * @return false if the ring was empty
+     */
+    private boolean dequeue(ReadingBatch batch) {
+        while (true) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    if (batch != null) {
+                        if (texts[index] == null) {
+                            batch.add(patientIds[index], timestamps[index], labelIds[index], values[index]);
+                        } else {
+                            batch.add(patientIds[index], timestamps[index], labelIds[index], texts[index]);
+                        }
+                    }
+                    texts[index] = null;
+                    sequences.lazySet(index, pos + mask + 1); // free the slot for the next lap
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Body of the consumer thread.
+     */
+    private void drain() {
+        ReadingBatch batch = new ReadingBatch(DRAIN_BATCH);
+        while (true) {
+            batch.clear();
+            while (batch.size() < DRAIN_BATCH && dequeue(batch)) {
+                // keep filling
+            }
+            if (batch.size() > 0) {
+                try {
+                    delegate.output(batch);
+                } catch (Exception e) {
+                    System.err.println("An error occurred in the asynchronous output: " + e.getMessage());
+                    e.printStackTrace();
+                }
+                continue;
+            }
+            if (producersDone && getBacklog() == 0) {
+                return;
+            }
+            consumerIdle = true;
+            if (getBacklog() == 0 && !producersDone) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            consumerIdle = false;
+        }
+    }
+
+    private static void backOff(int spins) {
+        if (spins < 64) {
+            Thread.onSpinWait();
+        } else if (spins < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+    }
+}
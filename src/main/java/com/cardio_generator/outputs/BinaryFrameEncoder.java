@@ -0,0 +1,179 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Encodes readings into the compact binary wire format of the network
+ * outputs.
+ * <p>
+ * A stream is a sequence of frames. Each frame is its body length as an
+ * unsigned LEB128 varint followed by the body, a sequence of records that
+ * each start with a tag byte:
+ * <pre>
+ *   0 LABEL    varint labelId, varint length, UTF-8 name
+ *   1 NUMERIC  varint patientId, zigzag varint timestamp delta, varint labelId,
+ *              8-byte IEEE 754 value (big-endian)
+ *   2 TEXT     varint patientId, zigzag varint timestamp delta, varint labelId,
+ *              varint length, UTF-8 text
+ * </pre>
+ * Timestamp deltas are relative to the previous reading of the same frame
+ * (the first one to 0), and a label is defined by a LABEL record in every
+ * frame before its first use. Frames are therefore self-contained: a client
+ * can start decoding at any frame boundary.
+ * <p>
+ * Not thread-safe; callers synchronize around an encoder.
+ */
+final class BinaryFrameEncoder {
+
+    static final byte LABEL = 0;
+    static final byte NUMERIC = 1;
+    static final byte TEXT = 2;
+
+    /** Room reserved in front of the body for the length prefix. */
+    private static final int PREFIX = 5;
+
+    private byte[] buffer;
+    private int position = PREFIX;
+    private int records;
+    private long lastTimestamp;
+    private final BitSet definedLabels = new BitSet();
+
+    BinaryFrameEncoder(int initialCapacity) {
+        buffer = new byte[PREFIX + Math.max(64, initialCapacity)];
+    }
+
+    void addNumeric(int patientId, long timestamp, int labelId, double value) {
+        defineLabel(labelId);
+        ensure(1 + 5 + 10 + 5 + 8);
+        buffer[position++] = NUMERIC;
+        putHeader(patientId, timestamp, labelId);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (bits >>> shift);
+        }
+        records++;
+    }
+
+    void addText(int patientId, long timestamp, int labelId, String text) {
+        defineLabel(labelId);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ensure(1 + 5 + 10 + 5 + 5 + bytes.length);
+        buffer[position++] = TEXT;
+        putHeader(patientId, timestamp, labelId);
+        putBytes(bytes);
+        records++;
+    }
+
+    /**
+     * Adds a reading of a batch, numeric or text.
+     */
+    void add(ReadingBatch batch, int index) {
+        if (batch.isNumeric(index)) {
+            addNumeric(batch.getPatientId(index), batch.getTimestamp(index), batch.getLabelId(index),
+                    batch.getValue(index));
+        } else {
+            addText(batch.getPatientId(index), batch.getTimestamp(index), batch.getLabelId(index),
+                    batch.getText(index));
+        }
+    }
+
+    /**
+     * @return number of readings in the current frame
+     */
+    int records() {
+        return records;
+    }
+
+    /**
+     * @return size of the current frame's body in bytes
+     */
+    int bodyLength() {
+        return position - PREFIX;
+    }
+
+    /**
+     * Completes the current frame by writing its length prefix.
+     *
+     * @return the whole frame; a view of the encoder's buffer that is valid
+     *         until the next {@link #reset()}
+     */
+    ByteBuffer finish() {
+        int length = bodyLength();
+        int prefixSize = varintSize(length);
+        int start = PREFIX - prefixSize;
+        int p = start;
+        int v = length;
+        while ((v & ~0x7F) != 0) {
+            buffer[p++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[p] = (byte) v;
+        return ByteBuffer.wrap(buffer, start, prefixSize + length);
+    }
+
+    /**
+     * Starts a new, empty frame.
+     */
+    void reset() {
+        position = PREFIX;
+        records = 0;
+        lastTimestamp = 0;
+        definedLabels.clear();
+    }
+
+    private void defineLabel(int labelId) {
+        if (definedLabels.get(labelId)) {
+            return;
+        }
+        byte[] name = LabelRegistry.name(labelId).getBytes(StandardCharsets.UTF_8);
+        ensure(1 + 5 + 5 + name.length);
+        buffer[position++] = LABEL;
+        putVarint(labelId);
+        putBytes(name);
+        definedLabels.set(labelId);
+    }
+
+    private void putHeader(int patientId, long timestamp, int labelId) {
+        putVarint(patientId);
+        long delta = timestamp - lastTimestamp;
+        putVarLong((delta << 1) ^ (delta >> 63)); // zigzag: small negative deltas stay short
+        lastTimestamp = timestamp;
+        putVarint(labelId);
+    }
+
+    private void putBytes(byte[] bytes) {
+        putVarint(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void putVarint(int value) {
+        putVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void ensure(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(position + bytes, buffer.length * 2));
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
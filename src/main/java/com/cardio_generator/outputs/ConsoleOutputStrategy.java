@@ -1,8 +1,46 @@
 package com.cardio_generator.outputs;
 
+import java.io.PrintStream;
+
+/**
+ * Strategy for printing simulated patient data in a human-readable format.
+ * <p>
+ * Records are formatted into a per-thread buffer and written as bytes, so
+ * numeric readings are printed without allocating.
+ */
 public class ConsoleOutputStrategy implements OutputStrategy {
+
+    private final PrintStream out;
+
+    public ConsoleOutputStrategy() {
+        this(System.out);
+    }
+
+    /**
+     * @param out the stream records are printed to
+     */
+    public ConsoleOutputStrategy(PrintStream out) {
+        this.out = out;
+    }
+
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        System.out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
+        write(RecordBuffer.forCurrentThread().appendReadable(patientId, timestamp, label, data));
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        write(RecordBuffer.forCurrentThread().appendReadable(patientId, timestamp, labelId, value));
+    }
+
+    @Override
+    public void output(ReadingBatch batch) {
+        write(RecordBuffer.forCurrentThread().appendReadable(batch));
+    }
+
+    private void write(RecordBuffer buffer) {
+        buffer.encode();
+        // A single write keeps records from different threads from interleaving
+        out.write(buffer.bytes(), 0, buffer.length());
     }
 }
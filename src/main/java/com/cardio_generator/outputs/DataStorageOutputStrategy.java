@@ -0,0 +1,118 @@
+package com.cardio_generator.outputs;
+
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.data_management.RecordTypes;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strategy that hands readings straight to a {@link DataStorage} in the same
+ * JVM and evaluates alert conditions on each of them as it arrives, with no
+ * formatting, files or parsing in between.
+ * <p>
+ * Generator threads store and evaluate their readings concurrently; the
+ * storage is thread-safe and alert evaluation only reads snapshots of it.
+ * Text readings such as the simulator's own alert states are not stored,
+ * as the storage only holds numeric values.
+ */
+public class DataStorageOutputStrategy implements OutputStrategy {
+
+    private final DataStorage storage;
+    private final AlertGenerator alertGenerator;
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile int[] recordTypes = new int[0]; // LabelRegistry ID -> RecordTypes code + 1
+
+    /**
+     * @param storage        the storage to add readings to
+     * @param alertGenerator evaluates each reading after it is stored, or
+     *                       null to only store
+     */
+    public DataStorageOutputStrategy(DataStorage storage, AlertGenerator alertGenerator) {
+        this.storage = storage;
+        this.alertGenerator = alertGenerator;
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        String number = data.endsWith("%") ? data.substring(0, data.length() - 1) : data;
+        double value;
+        try {
+            value = Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            skipped.incrementAndGet();
+            return;
+        }
+        store(patientId, timestamp, recordType(LabelRegistry.idOf(label)), value);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        store(patientId, timestamp, recordType(labelId), value);
+    }
+
+    @Override
+    public void output(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isNumeric(i)) {
+                store(batch.getPatientId(i), batch.getTimestamp(i), recordType(batch.getLabelId(i)), batch.getValue(i));
+            } else {
+                skipped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the storage readings are added to
+     */
+    public DataStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return number of readings stored so far
+     */
+    public long getStoredCount() {
+        return stored.get();
+    }
+
+    /**
+     * @return number of text readings that were not stored
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    private void store(int patientId, long timestamp, int recordType, double value) {
+        storage.addPatientData(patientId, value, recordType, timestamp);
+        if (alertGenerator != null) {
+            alertGenerator.evaluateReading(patientId, recordType, value, timestamp);
+        }
+        stored.incrementAndGet();
+    }
+
+    /**
+     * Translates a label ID of the generators into the storage's record type
+     * code, caching the result per label.
+     */
+    private int recordType(int labelId) {
+        int[] cache = recordTypes;
+        if (labelId < cache.length && cache[labelId] != 0) {
+            return cache[labelId] - 1;
+        }
+        int code = RecordTypes.codeOf(LabelRegistry.name(labelId));
+        synchronized (this) {
+            int[] grown = recordTypes;
+            if (labelId >= grown.length) {
+                grown = Arrays.copyOf(grown, Math.max(labelId + 1, LabelRegistry.size()));
+            } else {
+                grown = grown.clone();
+            }
+            grown[labelId] = code + 1;
+            recordTypes = grown;
+        }
+        return code;
+    }
+}
@@ -1,39 +1,102 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Strategy for writing simulated patient data to files.
  * <p>
  * Each distinct data label is written to its own text file within
  * a specified base directory. Records are appended in a human-readable format.
+ * <p>
+ * Every label keeps one open {@link FileChannel} for the lifetime of the
+ * strategy. Records are appended to an in-memory buffer per label, and a
+ * background writer thread hands the buffers to the channels as a group
+ * once one of them is half full or the flush interval has passed. Writers
+ * are only blocked when a buffer fills up faster than the writer can drain
+ * it. {@link #close()} writes out everything still buffered.
  */
 public class FileOutputStrategy implements OutputStrategy {
 
+    /**
+     * When written data is forced to the storage device.
+     */
+    public enum FsyncPolicy {
+        /** Leave it to the operating system (the default). */
+        NEVER,
+        /** After every group of buffers the writer thread flushes. */
+        ON_FLUSH,
+        /** Once, when the strategy is closed. */
+        ON_CLOSE
+    }
+
+    /** Default size of each label's buffer in bytes. */
+    public static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+    /** Default maximum time records wait in a buffer, in milliseconds. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
     /** Base directory where output files are stored. */
     private String baseDirectory; // lower camelCase from BaseDirectory to basediretory
 
     /** Mapping from data label to its corresponding file path. */
     public final ConcurrentHashMap<String, String> file_map = new ConcurrentHashMap<>();
 
+    /** Open file and buffers per data label. */
+    private final ConcurrentHashMap<String, LabelFile> files = new ConcurrentHashMap<>();
+
+    private final FsyncPolicy fsyncPolicy;
+    private final int bufferBytes;
+    private final long flushIntervalNanos;
+    private final Thread writer;
+    private volatile boolean closed;
+
     /**
      * Creates a new FileOutputStrategy for the given directory.
      *
      * @param baseDirectory the root directory for output files
      */
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, FsyncPolicy.NEVER, DEFAULT_BUFFER_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates a new FileOutputStrategy with explicit buffering settings.
+     *
+     * @param baseDirectory       the root directory for output files
+     * @param fsyncPolicy         when written data is forced to disk
+     * @param bufferBytes         size of each label's buffer; it is flushed
+     *                            once half full
+     * @param flushIntervalMillis maximum time records wait in a buffer
+     */
+    public FileOutputStrategy(String baseDirectory, FsyncPolicy fsyncPolicy, int bufferBytes,
+                              long flushIntervalMillis) {
         this.baseDirectory = baseDirectory; // as written before to lower camelCase
+        this.fsyncPolicy = fsyncPolicy;
+        this.bufferBytes = bufferBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        try {
+            // Create the directory once; files are opened per label on first use
+            Files.createDirectories(Paths.get(baseDirectory)); // baseDirectory
+        } catch (IOException e) {
+            System.err.println("Error creating base directory: " + e.getMessage());
+        }
+        writer = new Thread(this::runWriter, "file-output-writer");
+        writer.setDaemon(true);
+        writer.start();
     }
 
     /**
-     * Outputs a data record for a specific patient to a file. Creates
-     * the base directory if it does not exist, and appends the record
-     * to a file named &lt;label&gt;.txt within it.
+     * Outputs a data record for a specific patient to a file. The record is
+     * appended to the buffer of the file named &lt;label&gt;.txt within the
+     * base directory.
      *
      * @param patientId the unique identifier of the patient
      * @param timestamp the time of the measurement (milliseconds since epoch)
@@ -42,28 +105,209 @@ public class FileOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        append(label, RecordBuffer.forCurrentThread().appendReadable(patientId, timestamp, label, data));
+    }
+
+    /**
+     * Outputs a numeric reading, formatting it straight into a reusable
+     * buffer.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time of the measurement (milliseconds since epoch)
+     * @param labelId   the data type, as a {@link LabelRegistry} ID
+     * @param value     the measured value
+     */
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        append(LabelRegistry.name(labelId),
+                RecordBuffer.forCurrentThread().appendReadable(patientId, timestamp, labelId, value));
+    }
+
+    /**
+     * Outputs a batch, appending each run of readings with the same label to
+     * its buffer in one step.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(ReadingBatch batch) {
+        int i = 0;
+        while (i < batch.size()) {
+            int labelId = batch.getLabelId(i);
+            String label = batch.getLabel(i);
+            RecordBuffer buffer = RecordBuffer.forCurrentThread();
+            for (; i < batch.size() && batch.getLabelId(i) == labelId; i++) {
+                if (batch.isNumeric(i)) {
+                    buffer.appendReadable(batch.getPatientId(i), batch.getTimestamp(i), labelId, batch.getValue(i));
+                } else {
+                    buffer.appendReadable(batch.getPatientId(i), batch.getTimestamp(i), label, batch.getText(i));
+                }
+            }
+            append(label, buffer);
+        }
+    }
+
+    /**
+     * Stops the writer thread, writes out all buffered records, forces them
+     * to disk unless the policy is {@link FsyncPolicy#NEVER} and closes the
+     * files. Records output after closing are discarded.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
         try {
-            // Create the directory
-            Files.createDirectories(Paths.get(baseDirectory)); // baseDirectory
-        } catch (IOException e) {
-            System.err.println("Error creating base directory: " + e.getMessage());
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LabelFile file : files.values()) {
+            try {
+                file.flush(false);
+                if (fsyncPolicy != FsyncPolicy.NEVER) {
+                    file.channel.force(false);
+                }
+                file.channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + file.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends formatted records to the buffer of the given label, opening
+     * its file on first use.
+     */
+    private void append(String label, RecordBuffer buffer) {
+        if (closed) {
             return;
         }
+        LabelFile file = files.computeIfAbsent(label, this::open);
+        if (file == null) {
+            return; // opening failed and was reported
+        }
+        buffer.encode();
+        try {
+            if (file.append(buffer.bytes(), buffer.length())) {
+                LockSupport.unpark(writer);
+            }
+        } catch (IOException e) {
+            if (!closed) { // a record racing close() may find the channel closed
+                System.err.println("Error writing to file " + file.path + ": " + e.getMessage()); // filePath to lower camelCase
+            }
+        }
+    }
+
+    private LabelFile open(String label) {
         // Set the FilePath variable and cahnged it to filePath because it is variable
         String filePath = file_map.computeIfAbsent(label, k ->
                 Paths.get(baseDirectory, label + ".txt").toString()
         );
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(filePath),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new LabelFile(filePath, channel, bufferBytes);
+        } catch (IOException e) {
+            System.err.println("Error opening file " + filePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Body of the writer thread: flushes every buffer once per interval, or
+     * earlier when an appender reports a half-full buffer.
+     */
+    private void runWriter() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            for (LabelFile file : files.values()) {
+                try {
+                    file.flush(fsyncPolicy == FsyncPolicy.ON_FLUSH);
+                } catch (IOException e) {
+                    System.err.println("Error writing to file " + file.path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * One label's file with a pair of buffers: appenders fill the active
+     * buffer while the other one is being written to the channel.
+     * <p>
+     * Locks are always taken in the order {@code channel} then {@code this},
+     * so buffers reach the file in the order they were filled.
+     */
+    private static final class LabelFile {
+        private final String path;
+        private final FileChannel channel;
+        private ByteBuffer active;
+        private ByteBuffer draining;
+
+        private LabelFile(String path, FileChannel channel, int bufferBytes) {
+            this.path = path;
+            this.channel = channel;
+            this.active = ByteBuffer.allocate(bufferBytes);
+            this.draining = ByteBuffer.allocate(bufferBytes);
+        }
+
+        /**
+         * Appends records to the active buffer. If it is full, the caller
+         * writes it out itself, which throttles producers that outrun the
+         * writer thread.
+         *
+         * @return true if the buffer is now at least half full
+         */
+        private boolean append(byte[] bytes, int length) throws IOException {
+            while (true) {
+                synchronized (this) {
+                    if (active.remaining() >= length) {
+                        active.put(bytes, 0, length);
+                        return active.position() >= active.capacity() / 2;
+                    }
+                }
+                if (length > active.capacity()) {
+                    // Larger than a whole buffer: write it directly, after what is buffered
+                    synchronized (channel) {
+                        flush(false);
+                        ByteBuffer direct = ByteBuffer.wrap(bytes, 0, length);
+                        while (direct.hasRemaining()) {
+                            channel.write(direct);
+                        }
+                    }
+                    return false;
+                }
+                flush(false);
+            }
+        }
 
-        // Write the data to the file
-        try (PrintWriter out = new PrintWriter(
-                Files.newBufferedWriter(
-                        Paths.get(filePath),
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.APPEND))) {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
-                    patientId, timestamp, label, data);
-        } catch (Exception e) {
-            System.err.println("Error writing to file " + filePath + ": " + e.getMessage()); // filePath to lower camelCase
+        /**
+         * Writes the active buffer to the channel, if it holds anything.
+         *
+         * @param force whether to force newly written data to disk
+         */
+        private void flush(boolean force) throws IOException {
+            synchronized (channel) {
+                ByteBuffer full;
+                synchronized (this) {
+                    if (active.position() == 0) {
+                        return;
+                    }
+                    full = active;
+                    active = draining;
+                    draining = full;
+                }
+                full.flip();
+                while (full.hasRemaining()) {
+                    channel.write(full);
+                }
+                full.clear();
+                if (force) {
+                    channel.force(false);
+                }
+            }
         }
     }
 }
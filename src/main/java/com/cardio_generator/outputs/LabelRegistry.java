@@ -0,0 +1,121 @@
+package com.cardio_generator.outputs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry that maps data labels to small integer IDs.
+ * <p>
+ * Generators pass label IDs through the typed
+ * {@link OutputStrategy#output(int, long, int, double)} path so no strings
+ * are built per reading. The registry also records the unit suffix that the
+ * textual record format appends to a label's values (e.g. {@code "%"} for
+ * saturation). IDs are only meaningful inside one JVM; formats that leave
+ * the process must carry the label names.
+ */
+public final class LabelRegistry {
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static volatile String[] units = new String[16];
+    private static int count;
+
+    public static final int ECG = register("ECG", null);
+    public static final int SATURATION = register("Saturation", "%");
+    public static final int SYSTOLIC_PRESSURE = register("SystolicPressure", null);
+    public static final int DIASTOLIC_PRESSURE = register("DiastolicPressure", null);
+    public static final int CHOLESTEROL = register("Cholesterol", null);
+    public static final int WHITE_BLOOD_CELLS = register("WhiteBloodCells", null);
+    public static final int RED_BLOOD_CELLS = register("RedBloodCells", null);
+    public static final int ALERT = register("Alert", null);
+
+    private LabelRegistry() {
+    }
+
+    /**
+     * Registers a label, or returns its existing ID if it is already known.
+     *
+     * @param name the label name, e.g. "ECG"
+     * @param unit suffix appended to formatted values, or null
+     * @return the label's ID
+     */
+    public static synchronized int register(String name, String unit) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        int id = count;
+        if (id == names.length) {
+            String[] grownUnits = Arrays.copyOf(units, id * 2);
+            String[] grownNames = Arrays.copyOf(names, id * 2);
+            units = grownUnits;
+            names = grownNames;
+        }
+        units[id] = unit;
+        names[id] = name;
+        count++;
+        // IDs are handed out through the map, which publishes the entries above
+        ids.put(name, id);
+        return id;
+    }
+
+    /**
+     * Returns the ID of a label, registering it without a unit if needed.
+     *
+     * @param name the label name
+     * @return the label's ID
+     */
+    public static int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : register(name, null);
+    }
+
+    /**
+     * Returns the ID of a label without registering it, for names that come
+     * from outside the process.
+     *
+     * @param name the label name
+     * @return the label's ID, or -1 if it is not registered
+     */
+    public static int find(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id a registered label ID
+     * @return the label's name
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @param id a registered label ID
+     * @return the unit suffix of the label's values, or null
+     */
+    public static String unit(int id) {
+        String[] current = units;
+        return id < current.length ? current[id] : null;
+    }
+
+    /**
+     * @return the number of registered labels
+     */
+    public static synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Formats a value the way the textual record format shows it, i.e.
+     * {@link Double#toString(double)} followed by the label's unit.
+     *
+     * @param id    a registered label ID
+     * @param value the value to format
+     * @return the formatted value
+     */
+    public static String format(int id, double value) {
+        String unit = unit(id);
+        return unit == null ? Double.toString(value) : Double.toString(value) + unit;
+    }
+}
@@ -17,4 +17,45 @@ public interface OutputStrategy {
      * @param data      the measurement value or alert detail as a string
      */
     void output(int patientId, long timestamp, String label, String data);
+
+    /**
+     * Outputs a numeric reading without building strings. The default
+     * implementation formats the value and forwards it to
+     * {@link #output(int, long, String, String)}; strategies should override
+     * it to format straight into reusable buffers.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the measurement timestamp in milliseconds since epoch
+     * @param labelId   the data type, as a {@link LabelRegistry} ID
+     * @param value     the measured value
+     */
+    default void output(int patientId, long timestamp, int labelId, double value) {
+        output(patientId, timestamp, LabelRegistry.name(labelId), LabelRegistry.format(labelId, value));
+    }
+
+    /**
+     * Outputs every reading of a batch. The default implementation forwards
+     * numeric readings to {@link #output(int, long, int, double)} and text
+     * readings to {@link #output(int, long, String, String)}; strategies that
+     * can write many records at once should override it. The batch must not
+     * be retained after this method returns.
+     *
+     * @param batch the readings to output
+     */
+    default void output(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isNumeric(i)) {
+                output(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabelId(i), batch.getValue(i));
+            } else {
+                output(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getText(i));
+            }
+        }
+    }
+
+    /**
+     * Releases the strategy's resources, writing out any buffered records.
+     * Strategies that write through immediately need not override it.
+     */
+    default void close() {
+    }
 }
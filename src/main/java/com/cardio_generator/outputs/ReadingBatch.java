@@ -0,0 +1,165 @@
+package com.cardio_generator.outputs;
+
+import java.util.Arrays;
+
+/**
+ * A batch of readings stored in parallel primitive columns.
+ * <p>
+ * Generators fill a batch for a whole range of patients and hand it to
+ * {@link OutputStrategy#output(ReadingBatch)} in one call. A batch is only
+ * valid for the duration of that call: strategies must copy what they need
+ * and must not keep a reference to it, which lets generators reuse one
+ * batch per thread via {@link #forCurrentThread()}.
+ */
+public class ReadingBatch {
+
+    private static final ThreadLocal<ReadingBatch> PER_THREAD =
+            ThreadLocal.withInitial(() -> new ReadingBatch(64));
+
+    private int[] patientIds;
+    private long[] timestamps;
+    private int[] labelIds;
+    private double[] values;
+    private String[] texts;
+    private int size;
+
+    /**
+     * @param capacity initial number of readings the batch can hold
+     */
+    public ReadingBatch(int capacity) {
+        patientIds = new int[capacity];
+        timestamps = new long[capacity];
+        labelIds = new int[capacity];
+        values = new double[capacity];
+        texts = new String[capacity];
+    }
+
+    /**
+     * Returns this thread's reusable batch, emptied.
+     *
+     * @return an empty batch owned by the calling thread
+     */
+    public static ReadingBatch forCurrentThread() {
+        ReadingBatch batch = PER_THREAD.get();
+        batch.clear();
+        return batch;
+    }
+
+    /**
+     * Adds a numeric reading.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the measurement timestamp in milliseconds since epoch
+     * @param labelId   the data type, as a {@link LabelRegistry} ID
+     * @param value     the measured value
+     */
+    public void add(int patientId, long timestamp, int labelId, double value) {
+        int i = append(patientId, timestamp, labelId);
+        values[i] = value;
+        texts[i] = null;
+    }
+
+    /**
+     * Adds a non-numeric reading such as an alert state.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the measurement timestamp in milliseconds since epoch
+     * @param labelId   the data type, as a {@link LabelRegistry} ID
+     * @param text      the reading's text
+     */
+    public void add(int patientId, long timestamp, int labelId, String text) {
+        int i = append(patientId, timestamp, labelId);
+        values[i] = Double.NaN;
+        texts[i] = text;
+    }
+
+    /**
+     * Removes all readings, keeping the allocated capacity.
+     */
+    public void clear() {
+        // Drop string references so a long-lived batch does not pin them
+        Arrays.fill(texts, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return the number of readings in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getPatientId(int index) {
+        return patientIds[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int getLabelId(int index) {
+        return labelIds[index];
+    }
+
+    public String getLabel(int index) {
+        return LabelRegistry.name(labelIds[index]);
+    }
+
+    /**
+     * @param index position of the reading
+     * @return the numeric value, or NaN for text readings
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index position of the reading
+     * @return true if the reading is numeric rather than text
+     */
+    public boolean isNumeric(int index) {
+        return texts[index] == null;
+    }
+
+    /**
+     * @param index position of the reading
+     * @return the text of a non-numeric reading, or null for numeric ones
+     */
+    public String getText(int index) {
+        return texts[index];
+    }
+
+    /**
+     * Formats a reading the way the single-record
+     * {@link OutputStrategy#output(int, long, String, String)} expects it.
+     *
+     * @param index position of the reading
+     * @return the reading's data as a string
+     */
+    public String getData(int index) {
+        if (texts[index] != null) {
+            return texts[index];
+        }
+        return LabelRegistry.format(labelIds[index], values[index]);
+    }
+
+    private int append(int patientId, long timestamp, int labelId) {
+        if (size == patientIds.length) {
+            grow();
+        }
+        int i = size++;
+        patientIds[i] = patientId;
+        timestamps[i] = timestamp;
+        labelIds[i] = labelId;
+        return i;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, patientIds.length * 2);
+        patientIds = Arrays.copyOf(patientIds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        labelIds = Arrays.copyOf(labelIds, capacity);
+        values = Arrays.copyOf(values, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+    }
+}
@@ -0,0 +1,159 @@
+package com.cardio_generator.outputs;
+
+/**
+ * Reusable per-thread buffer that formats records into ASCII bytes without
+ * creating intermediate strings.
+ * <p>
+ * Records are appended as text to a {@link StringBuilder} (whose
+ * {@code append(double)} matches {@link Double#toString(double)} without
+ * allocating) and then copied into a byte array that sinks write directly.
+ * Both grow on demand and are kept for the lifetime of the thread.
+ */
+final class RecordBuffer {
+
+    private static final ThreadLocal<RecordBuffer> PER_THREAD = ThreadLocal.withInitial(RecordBuffer::new);
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final StringBuilder text = new StringBuilder(256);
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    private RecordBuffer() {
+    }
+
+    /**
+     * @return the calling thread's buffer, emptied
+     */
+    static RecordBuffer forCurrentThread() {
+        RecordBuffer buffer = PER_THREAD.get();
+        buffer.text.setLength(0);
+        buffer.length = 0;
+        return buffer;
+    }
+
+    /**
+     * Appends {@code Patient ID: <id>, Timestamp: <ts>, Label: <label>, Data: <value>}
+     * and a line separator, the format read back by the data_management readers.
+     */
+    RecordBuffer appendReadable(int patientId, long timestamp, int labelId, double value) {
+        text.append("Patient ID: ").append(patientId)
+                .append(", Timestamp: ").append(timestamp)
+                .append(", Label: ").append(LabelRegistry.name(labelId))
+                .append(", Data: ");
+        appendValue(labelId, value);
+        text.append(LINE_SEPARATOR);
+        return this;
+    }
+
+    /**
+     * Appends a text record in the readable format, e.g. an alert state.
+     */
+    RecordBuffer appendReadable(int patientId, long timestamp, String label, String data) {
+        text.append("Patient ID: ").append(patientId)
+                .append(", Timestamp: ").append(timestamp)
+                .append(", Label: ").append(label)
+                .append(", Data: ").append(data)
+                .append(LINE_SEPARATOR);
+        return this;
+    }
+
+    /**
+     * Appends every reading of a batch in the readable format.
+     */
+    RecordBuffer appendReadable(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isNumeric(i)) {
+                appendReadable(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabelId(i), batch.getValue(i));
+            } else {
+                appendReadable(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getText(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends {@code <id>,<ts>,<label>,<value>} and a newline, the format of
+     * the network outputs.
+     */
+    RecordBuffer appendCsv(int patientId, long timestamp, int labelId, double value) {
+        text.append(patientId).append(',')
+                .append(timestamp).append(',')
+                .append(LabelRegistry.name(labelId)).append(',');
+        appendValue(labelId, value);
+        text.append('\n');
+        return this;
+    }
+
+    /**
+     * Appends a text record in the network format, e.g. an alert state.
+     */
+    RecordBuffer appendCsv(int patientId, long timestamp, String label, String data) {
+        text.append(patientId).append(',')
+                .append(timestamp).append(',')
+                .append(label).append(',')
+                .append(data).append('\n');
+        return this;
+    }
+
+    /**
+     * Appends every reading of a batch in the network format.
+     */
+    RecordBuffer appendCsv(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isNumeric(i)) {
+                appendCsv(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabelId(i), batch.getValue(i));
+            } else {
+                appendCsv(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getText(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the formatted text; valid until the next call on this thread
+     */
+    StringBuilder text() {
+        return text;
+    }
+
+    /**
+     * Copies the formatted text into the byte array. Non-ASCII characters,
+     * which the record formats never produce, become {@code '?'}.
+     *
+     * @return this buffer, with {@link #bytes()} and {@link #length()} set
+     */
+    RecordBuffer encode() {
+        int n = text.length();
+        if (bytes.length < n) {
+            bytes = new byte[Math.max(n, bytes.length * 2)];
+        }
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            bytes[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        length = n;
+        return this;
+    }
+
+    /**
+     * @return the encoded bytes; only the first {@link #length()} are valid
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of encoded bytes
+     */
+    int length() {
+        return length;
+    }
+
+    private void appendValue(int labelId, double value) {
+        text.append(value);
+        String unit = LabelRegistry.unit(labelId);
+        if (unit != null) {
+            text.append(unit);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.cardio_generator.outputs;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Strategy that writes each label's records in the same text format as
+ * {@link FileOutputStrategy}, but into a series of GZIP-compressed segment
+ * files instead of one ever-growing file.
+ * <p>
+ * A label's current segment {@code <label>-NNNNNN.txt.gz} is rotated when a
+ * reading's timestamp falls into a later rotation period (periods are
+ * aligned to the epoch, so hourly rotation cuts at full UTC hours of the
+ * readings' time, simulated or not) or when its uncompressed size reaches
+ * the size limit. Readings that arrive late for an earlier period stay in
+ * the current segment.
+ * <p>
+ * When a segment is completed, by rotation or by {@link #close()}, a sidecar
+ * {@code <label>-NNNNNN.idx} records its record count, uncompressed size,
+ * timestamp range and patient IDs, which lets
+ * {@code com.data_management.FileDataReader} skip segments outside a time
+ * window. A segment without a sidecar is still being written.
+ * <p>
+ * As in {@link FileOutputStrategy}, a background writer thread flushes
+ * every open segment once per flush interval, so a crash loses at most the
+ * last interval of readings: the compressor is sync-flushed, which leaves a
+ * readable GZIP stream without its trailer, and the segment is forced to
+ * disk if the policy is {@link FileOutputStrategy.FsyncPolicy#ON_FLUSH}.
+ */
+public class RotatingFileOutputStrategy implements OutputStrategy {
+
+    /** Rotation period for hourly segments, in milliseconds. */
+    public static final long HOURLY = 60 * 60 * 1000L;
+
+    private final Path baseDirectory;
+    private final long periodMillis;
+    private final long maxSegmentBytes;
+    private final FileOutputStrategy.FsyncPolicy fsyncPolicy;
+    private final long flushIntervalNanos;
+    private final ConcurrentHashMap<String, LabelSegments> labels = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a strategy that rotates hourly.
+     *
+     * @param baseDirectory the root directory for output files
+     * @throws IOException if the directory cannot be created
+     */
+    public RotatingFileOutputStrategy(String baseDirectory) throws IOException {
+        this(baseDirectory, HOURLY, 0, FileOutputStrategy.FsyncPolicy.NEVER);
+    }
+
+    /**
+     * Creates a strategy that flushes open segments every
+     * {@link FileOutputStrategy#DEFAULT_FLUSH_INTERVAL_MILLIS}.
+     *
+     * @param baseDirectory   the root directory for output files
+     * @param periodMillis    rotation period of the readings' timestamps, or
+     *                        0 to rotate by size only
+     * @param maxSegmentBytes uncompressed size that completes a segment, or
+     *                        0 to rotate by time only
+     * @param fsyncPolicy     when segments are forced to disk
+     * @throws IOException if the directory cannot be created
+     */
+    public RotatingFileOutputStrategy(String baseDirectory, long periodMillis, long maxSegmentBytes,
+                                      FileOutputStrategy.FsyncPolicy fsyncPolicy) throws IOException {
+        this(baseDirectory, periodMillis, maxSegmentBytes, fsyncPolicy,
+                FileOutputStrategy.DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param baseDirectory       the root directory for output files
+     * @param periodMillis        rotation period of the readings' timestamps,
+     *                            or 0 to rotate by size only
+     * @param maxSegmentBytes     uncompressed size that completes a segment,
+     *                            or 0 to rotate by time only
+     * @param fsyncPolicy         when segments are forced to disk
+     * @param flushIntervalMillis maximum time records wait in the open
+     *                            segment's compressor and buffer
+     * @throws IOException if the directory cannot be created
+     */
+    public RotatingFileOutputStrategy(String baseDirectory, long periodMillis, long maxSegmentBytes,
+                                      FileOutputStrategy.FsyncPolicy fsyncPolicy, long flushIntervalMillis)
+            throws IOException {
+        if (periodMillis <= 0 && maxSegmentBytes <= 0) {
+            throw new IllegalArgumentException("Rotation needs a period or a size limit");
+        }
+        this.baseDirectory = Paths.get(baseDirectory);
+        this.periodMillis = periodMillis;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        Files.createDirectories(this.baseDirectory);
+        writer = new Thread(this::runWriter, "rotating-file-output-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        append(label, patientId, timestamp, timestamp,
+                RecordBuffer.forCurrentThread().appendReadable(patientId, timestamp, label, data));
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        append(LabelRegistry.name(labelId), patientId, timestamp, timestamp,
+                RecordBuffer.forCurrentThread().appendReadable(patientId, timestamp, labelId, value));
+    }
+
+    /**
+     * Outputs a batch, appending each run of readings of one patient and
+     * label in one step.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(ReadingBatch batch) {
+        int i = 0;
+        while (i < batch.size()) {
+            int patientId = batch.getPatientId(i);
+            int labelId = batch.getLabelId(i);
+            String label = batch.getLabel(i);
+            long first = batch.getTimestamp(i);
+            long last = first;
+            RecordBuffer buffer = RecordBuffer.forCurrentThread();
+            for (; i < batch.size() && batch.getLabelId(i) == labelId && batch.getPatientId(i) == patientId; i++) {
+                last = batch.getTimestamp(i);
+                if (batch.isNumeric(i)) {
+                    buffer.appendReadable(patientId, last, labelId, batch.getValue(i));
+                } else {
+                    buffer.appendReadable(patientId, last, label, batch.getText(i));
+                }
+            }
+            append(label, patientId, first, last, buffer);
+        }
+    }
+
+    /**
+     * Stops the writer thread, completes every open segment and writes its
+     * sidecar. Records output after closing are discarded.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LabelSegments segments : labels.values()) {
+            synchronized (segments) {
+                segments.complete();
+            }
+        }
+    }
+
+    private void append(String label, int patientId, long firstTimestamp, long lastTimestamp, RecordBuffer buffer) {
+        if (closed) {
+            return;
+        }
+        LabelSegments segments = labels.computeIfAbsent(label, LabelSegments::new);
+        buffer.encode();
+        synchronized (segments) {
+            if (closed) {
+                return;
+            }
+            try {
+                segments.append(patientId, firstTimestamp, lastTimestamp, buffer.bytes(), buffer.length());
+            } catch (IOException e) {
+                System.err.println("Error writing segment of " + label + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread: flushes every open segment that was
+     * written to once per interval.
+     */
+    private void runWriter() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            for (LabelSegments segments : labels.values()) {
+                synchronized (segments) {
+                    if (closed) {
+                        return;
+                    }
+                    segments.flush(fsyncPolicy == FileOutputStrategy.FsyncPolicy.ON_FLUSH);
+                }
+            }
+        }
+    }
+
+    /**
+     * The segments of one label. Guarded by its own monitor.
+     */
+    private final class LabelSegments {
+        private final String label;
+        private int nextNumber;
+
+        // The open segment, if out != null
+        private FileOutputStream file;
+        private GZIPOutputStream out;
+        private Path path;
+        private long period;
+        private long bytes;
+        private long records;
+        private long minTimestamp;
+        private long maxTimestamp;
+        private final BitSet patients = new BitSet();
+        private boolean dirty; // written to since the last flush
+
+        private LabelSegments(String label) {
+            this.label = label;
+        }
+
+        private void append(int patientId, long firstTimestamp, long lastTimestamp, byte[] data, int length)
+                throws IOException {
+            long readingPeriod = periodMillis > 0 ? Math.floorDiv(lastTimestamp, periodMillis) : 0;
+            if (out != null && (readingPeriod > period || (maxSegmentBytes > 0 && bytes >= maxSegmentBytes))) {
+                complete();
+            }
+            if (out == null) {
+                open(readingPeriod);
+            }
+            out.write(data, 0, length);
+            dirty = true;
+            bytes += length;
+            records += countLines(data, length);
+            minTimestamp = Math.min(minTimestamp, Math.min(firstTimestamp, lastTimestamp));
+            maxTimestamp = Math.max(maxTimestamp, Math.max(firstTimestamp, lastTimestamp));
+            if (patientId >= 0) {
+                patients.set(patientId);
+            }
+        }
+
+        private void open(long readingPeriod) throws IOException {
+            do {
+                path = segmentPath(nextNumber++, ".txt.gz");
+            } while (Files.exists(path)); // continue after segments of an earlier run
+            file = new FileOutputStream(path.toFile());
+            // Sync-flushable, so the writer thread can push out whole records
+            out = new GZIPOutputStream(new BufferedOutputStream(file, 64 * 1024), 64 * 1024, true) {
+                {
+                    // Repetitive text compresses nearly as well at the fastest level
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            period = readingPeriod;
+            bytes = 0;
+            records = 0;
+            minTimestamp = Long.MAX_VALUE;
+            maxTimestamp = Long.MIN_VALUE;
+            patients.clear();
+        }
+
+        /**
+         * Writes out what the open segment's compressor and buffer hold, if
+         * anything was written since the last flush.
+         */
+        private void flush(boolean force) {
+            if (out == null || !dirty) {
+                return;
+            }
+            dirty = false;
+            try {
+                out.flush();
+                if (force) {
+                    file.getFD().sync();
+                }
+            } catch (IOException e) {
+                System.err.println("Error flushing segment " + path + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Finishes the open segment, if any, and writes its sidecar.
+         */
+        private void complete() {
+            if (out == null) {
+                return;
+            }
+            Path segment = path;
+            try {
+                out.finish();
+                out.flush();
+                if (fsyncPolicy != FileOutputStrategy.FsyncPolicy.NEVER) {
+                    file.getFD().sync();
+                }
+                out.close();
+                String index = String.format(Locale.ROOT,
+                        "records=%d%nbytes=%d%nminTimestamp=%d%nmaxTimestamp=%d%npatients=%s%n",
+                        records, bytes, minTimestamp, maxTimestamp, ranges(patients));
+                String name = segment.getFileName().toString();
+                Files.write(segment.resolveSibling(name.substring(0, name.length() - ".txt.gz".length()) + ".idx"),
+                        index.getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                System.err.println("Error completing segment " + segment + ": " + e.getMessage());
+            } finally {
+                out = null;
+                file = null;
+                dirty = false;
+            }
+        }
+
+        private Path segmentPath(int number, String extension) {
+            return baseDirectory.resolve(String.format(Locale.ROOT, "%s-%06d%s", label, number, extension));
+        }
+    }
+
+    private static int countLines(byte[] data, int length) {
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Formats a set of IDs as comma-separated ranges, e.g. {@code 1-20,35}.
+     */
+    static String ranges(BitSet ids) {
+        StringBuilder text = new StringBuilder();
+        for (int start = ids.nextSetBit(0); start >= 0; ) {
+            int end = ids.nextClearBit(start) - 1;
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(start);
+            if (end > start) {
+                text.append('-').append(end);
+            }
+            start = ids.nextSetBit(end + 1);
+        }
+        return text.toString();
+    }
+}
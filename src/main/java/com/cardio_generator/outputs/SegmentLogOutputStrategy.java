@@ -0,0 +1,305 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strategy that appends readings to fixed-size, memory-mapped segment files
+ * as fixed-width binary records, for bulk pipelines that would otherwise
+ * format and re-parse hundreds of millions of text lines.
+ * <p>
+ * The base directory holds {@code segment-NNNNNN.log} files of equal size.
+ * Each starts with a {@value #HEADER_BYTES}-byte header (magic, format
+ * version, record size, header size, record capacity and segment number)
+ * followed by {@value #RECORD_BYTES}-byte little-endian records:
+ * <pre>
+ *   int patientId, int labelId + 1, long timestamp, double value
+ * </pre>
+ * A label field of 0 marks a slot that was never written. Once a segment is
+ * full, and for the last segment on {@link #close()}, a sidecar
+ * {@code segment-NNNNNN.idx} records its record count and timestamp and
+ * patient ranges, and {@code labels.txt} maps label IDs to names.
+ * <p>
+ * Writers claim slots with one atomic increment and write them without
+ * locking. {@link #close()} stops further claims and waits for the slots
+ * already claimed to be written before sealing. Text readings such as
+ * alert states have no numeric value and are counted as skipped.
+ */
+public class SegmentLogOutputStrategy implements OutputStrategy {
+
+    /** Default segment file size: 64 MiB. */
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    static final long MAGIC = 0x3147455344524143L; // "CARDSEG1" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 24;
+
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path baseDirectory;
+    private final int capacity; // records per segment
+    private final FileOutputStrategy.FsyncPolicy fsyncPolicy;
+
+    private final AtomicLong nextRecord = new AtomicLong(); // negative once closed
+    private final ConcurrentHashMap<Long, Segment> open = new ConcurrentHashMap<>();
+    private volatile Segment current;
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong sealedRecords = new AtomicLong(); // claimed slots of indexed full segments
+    private final AtomicLong abandonedRecords = new AtomicLong(); // claimed slots whose segment failed
+    private volatile boolean closed;
+
+    /**
+     * Creates a segment log with 64 MiB segments that leaves flushing to the
+     * operating system.
+     *
+     * @param baseDirectory directory for the segment files
+     * @throws IOException if the directory cannot be created
+     */
+    public SegmentLogOutputStrategy(String baseDirectory) throws IOException {
+        this(baseDirectory, DEFAULT_SEGMENT_BYTES, FileOutputStrategy.FsyncPolicy.NEVER);
+    }
+
+    /**
+     * @param baseDirectory directory for the segment files
+     * @param segmentBytes  size of each segment file
+     * @param fsyncPolicy   when mapped segments are forced to disk
+     * @throws IOException if the directory cannot be created or already
+     *                     holds segments
+     */
+    public SegmentLogOutputStrategy(String baseDirectory, int segmentBytes,
+                                    FileOutputStrategy.FsyncPolicy fsyncPolicy) throws IOException {
+        this.baseDirectory = Paths.get(baseDirectory);
+        this.capacity = (segmentBytes - HEADER_BYTES) / RECORD_BYTES;
+        this.fsyncPolicy = fsyncPolicy;
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Segment size " + segmentBytes + " holds no records");
+        }
+        Files.createDirectories(this.baseDirectory);
+        if (Files.exists(segmentPath(0, ".log"))) {
+            throw new IOException("Directory " + baseDirectory + " already holds a segment log");
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        String number = data.endsWith("%") ? data.substring(0, data.length() - 1) : data;
+        double value;
+        try {
+            value = Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            skipped.incrementAndGet();
+            return;
+        }
+        output(patientId, timestamp, LabelRegistry.idOf(label), value);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        if (closed) {
+            return;
+        }
+        long record = nextRecord.getAndIncrement();
+        if (record < 0) {
+            return; // claimed after close() stopped claims
+        }
+        Segment segment = segmentFor(record / capacity);
+        if (segment == null) {
+            abandonedRecords.incrementAndGet();
+            return; // creating it failed and was reported
+        }
+        segment.write((int) (record % capacity), patientId, timestamp, labelId, value);
+        if (segment.written.incrementAndGet() == capacity) {
+            seal(segment);
+        }
+    }
+
+    @Override
+    public void output(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isNumeric(i)) {
+                output(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabelId(i), batch.getValue(i));
+            } else {
+                skipped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of text readings that were not written
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Stops accepting readings, waits for writers that already claimed a
+     * slot, seals the segments still open, writing their index files, and
+     * writes the label dictionary.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Later claims come out negative and are dropped; every slot below
+        // the returned value is written before its segment is sealed
+        long claimed = nextRecord.getAndSet(Long.MIN_VALUE);
+        while (finishedRecords() < claimed) {
+            Thread.yield();
+        }
+        List<Segment> remaining = new ArrayList<>(open.values());
+        for (Segment segment : remaining) {
+            seal(segment);
+        }
+        writeLabels();
+    }
+
+    /**
+     * Counts claimed slots that are written or given up on. Sealed segments
+     * are read before open ones: a segment being sealed leaves the open map
+     * before it is counted as sealed, so it can be missed for a moment but
+     * never counted twice.
+     */
+    private long finishedRecords() {
+        long finished = sealedRecords.get() + abandonedRecords.get();
+        for (Segment segment : open.values()) {
+            finished += segment.written.get();
+        }
+        return finished;
+    }
+
+    private Segment segmentFor(long number) {
+        Segment segment = current;
+        if (segment != null && segment.number == number) {
+            return segment;
+        }
+        segment = open.computeIfAbsent(number, this::createSegment);
+        if (segment != null && (current == null || current.number < number)) {
+            current = segment;
+        }
+        return segment;
+    }
+
+    private Segment createSegment(long number) {
+        Path path = segmentPath(number, ".log");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) capacity * RECORD_BYTES);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, RECORD_BYTES);
+            buffer.putInt(16, HEADER_BYTES);
+            buffer.putInt(20, capacity);
+            buffer.putLong(24, number);
+            return new Segment(number, buffer);
+        } catch (IOException e) {
+            System.err.println("Error creating segment " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index of a full or final segment and releases it. Called
+     * once per segment: by the writer that fills its last slot, or by
+     * {@link #close()}.
+     */
+    private void seal(Segment segment) {
+        if (open.remove(segment.number) == null) {
+            return; // already sealed
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int count = 0;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        int minPatient = Integer.MAX_VALUE;
+        int maxPatient = Integer.MIN_VALUE;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = HEADER_BYTES + slot * RECORD_BYTES;
+            if ((int) INT_VIEW.getAcquire(buffer, offset + 4) == 0) {
+                continue;
+            }
+            count++;
+            int patientId = buffer.getInt(offset);
+            long timestamp = buffer.getLong(offset + 8);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            minPatient = Math.min(minPatient, patientId);
+            maxPatient = Math.max(maxPatient, patientId);
+        }
+        if (fsyncPolicy != FileOutputStrategy.FsyncPolicy.NEVER) {
+            buffer.force();
+        }
+        String index = String.format(Locale.ROOT,
+                "records=%d%nminTimestamp=%d%nmaxTimestamp=%d%nminPatientId=%d%nmaxPatientId=%d%n",
+                count, minTimestamp, maxTimestamp, minPatient, maxPatient);
+        try {
+            Files.write(segmentPath(segment.number, ".idx"), index.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            System.err.println("Error writing index of segment " + segment.number + ": " + e.getMessage());
+        }
+        sealedRecords.addAndGet(segment.written.get()); // after the index, so close() also waits for it
+        writeLabels();
+    }
+
+    private synchronized void writeLabels() {
+        StringBuilder labels = new StringBuilder();
+        for (int id = 0; id < LabelRegistry.size(); id++) {
+            labels.append(id).append(' ').append(LabelRegistry.name(id)).append('\n');
+        }
+        try {
+            Files.write(baseDirectory.resolve("labels.txt"), labels.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Error writing label dictionary: " + e.getMessage());
+        }
+    }
+
+    private Path segmentPath(long number, String extension) {
+        return baseDirectory.resolve(String.format(Locale.ROOT, "segment-%06d%s", number, extension));
+    }
+
+    /**
+     * One mapped segment file and the number of its slots written so far.
+     */
+    private static final class Segment {
+        private final long number;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger written = new AtomicInteger();
+
+        private Segment(long number, MappedByteBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Fills a claimed slot. The label goes last, with release semantics,
+         * so a non-zero label means the whole record is visible.
+         */
+        private void write(int slot, int patientId, long timestamp, int labelId, double value) {
+            int offset = HEADER_BYTES + slot * RECORD_BYTES;
+            buffer.putInt(offset, patientId);
+            buffer.putLong(offset + 8, timestamp);
+            buffer.putDouble(offset + 16, value);
+            INT_VIEW.setRelease(buffer, offset + 4, labelId + 1);
+        }
+    }
+}
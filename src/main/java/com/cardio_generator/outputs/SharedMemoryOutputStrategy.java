@@ -0,0 +1,198 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strategy that publishes readings into a memory-mapped ring file, for
+ * consumers on the same host that would otherwise go through loopback TCP.
+ * <p>
+ * Layout (little-endian), see {@code SharedMemoryDataReader} for the
+ * consumer side:
+ * <pre>
+ *   0     long   magic "CARDSHM1"
+ *   8     int    version
+ *   12    int    slot size (32)
+ *   16    int    capacity in slots, a power of two
+ *   20    int    offset of the first slot ({@value #DATA_OFFSET})
+ *   64    long   cursor: number of sequence numbers claimed so far
+ *   128   label table, {@value #MAX_LABELS} entries of 32 bytes:
+ *         int name length (0 while unset), 28 bytes of UTF-8 name
+ *   4096  slots: long sequence + 1, int patientId, int labelId,
+ *         long timestamp, double value
+ * </pre>
+ * Publishing a reading claims the next sequence number by atomically
+ * incrementing the cursor, so the generator threads publish concurrently
+ * without a lock. The slot's sequence field works like a seqlock: it is
+ * cleared, the fields are written, and then it is set to the sequence
+ * number plus one with release semantics. Readers check it before and
+ * after reading the fields.
+ * <p>
+ * The ring never waits for readers: a reader that falls more than one ring
+ * behind loses the overwritten readings and skips ahead. Text readings such
+ * as alert states are not published, nor are readings whose label name is
+ * longer than {@value #MAX_LABEL_BYTES} UTF-8 bytes, since a cut-off name
+ * would make readers store them under a different record type.
+ */
+public class SharedMemoryOutputStrategy implements OutputStrategy {
+
+    /** Default ring size: 2^20 slots, 32 MiB. */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    static final long MAGIC = 0x314D485344524143L; // "CARDSHM1" read little-endian
+    static final int VERSION = 1;
+    static final int SLOT_BYTES = 32;
+    static final int CURSOR_OFFSET = 64;
+    static final int LABEL_TABLE_OFFSET = 128;
+    static final int LABEL_ENTRY_BYTES = 32;
+    static final int MAX_LABELS = 120;
+    static final int MAX_LABEL_BYTES = LABEL_ENTRY_BYTES - 4;
+    static final int DATA_OFFSET = 4096;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final MappedByteBuffer ring;
+    private final int mask;
+    private final BitSet publishedLabels = new BitSet();
+    private final BitSet rejectedLabels = new BitSet();
+    private volatile BitSet publishedSnapshot = new BitSet();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param path file to create or overwrite, e.g. {@code /dev/shm/cardio.ring}
+     * @throws IOException if the file cannot be created and mapped
+     */
+    public SharedMemoryOutputStrategy(String path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param path     file to create or overwrite
+     * @param capacity number of slots, rounded up to a power of two
+     * @throws IOException if the file cannot be created and mapped
+     */
+    public SharedMemoryOutputStrategy(String path, int capacity) throws IOException {
+        int slots = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = slots - 1;
+        Path file = Paths.get(path);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + (long) slots * SLOT_BYTES);
+        }
+        ring.order(ByteOrder.LITTLE_ENDIAN);
+        ring.putInt(8, VERSION);
+        ring.putInt(12, SLOT_BYTES);
+        ring.putInt(16, slots);
+        ring.putInt(20, DATA_OFFSET);
+        // Magic last: readers that see it see a complete header
+        LONG_VIEW.setRelease(ring, 0, MAGIC);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        String number = data.endsWith("%") ? data.substring(0, data.length() - 1) : data;
+        double value;
+        try {
+            value = Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            skipped.incrementAndGet();
+            return;
+        }
+        output(patientId, timestamp, LabelRegistry.idOf(label), value);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        if (!publishedSnapshot.get(labelId) && !publishLabel(labelId)) {
+            skipped.incrementAndGet();
+            return;
+        }
+        long sequence = (long) LONG_VIEW.getAndAdd(ring, CURSOR_OFFSET, 1L);
+        int offset = DATA_OFFSET + (int) (sequence & mask) * SLOT_BYTES;
+        LONG_VIEW.setOpaque(ring, offset, 0L); // in progress
+        VarHandle.storeStoreFence();
+        ring.putInt(offset + 8, patientId);
+        ring.putInt(offset + 12, labelId);
+        ring.putLong(offset + 16, timestamp);
+        ring.putDouble(offset + 24, value);
+        LONG_VIEW.setRelease(ring, offset, sequence + 1);
+    }
+
+    @Override
+    public void output(ReadingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isNumeric(i)) {
+                output(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabelId(i), batch.getValue(i));
+            } else {
+                skipped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of readings not published: text readings, labels
+     *         beyond the table and labels with overlong names
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * @return number of readings published so far
+     */
+    public long getPublishedCount() {
+        return (long) LONG_VIEW.getAcquire(ring, CURSOR_OFFSET);
+    }
+
+    /**
+     * Flushes the ring to its file; the mapping itself stays valid for
+     * readers.
+     */
+    @Override
+    public void close() {
+        ring.force();
+    }
+
+    /**
+     * Writes a label into the table before its first reading.
+     *
+     * @return false if the label does not fit into the table
+     */
+    private synchronized boolean publishLabel(int labelId) {
+        if (publishedLabels.get(labelId)) {
+            return true;
+        }
+        if (labelId >= MAX_LABELS || rejectedLabels.get(labelId)) {
+            return false;
+        }
+        byte[] name = LabelRegistry.name(labelId).getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_LABEL_BYTES) {
+            rejectedLabels.set(labelId);
+            System.err.println("Label '" + LabelRegistry.name(labelId) + "' is longer than " + MAX_LABEL_BYTES
+                    + " bytes; its readings are not published to shared memory");
+            return false;
+        }
+        int length = name.length;
+        int entry = LABEL_TABLE_OFFSET + labelId * LABEL_ENTRY_BYTES;
+        for (int i = 0; i < length; i++) {
+            ring.put(entry + 4 + i, name[i]);
+        }
+        INT_VIEW.setRelease(ring, entry, length);
+        publishedLabels.set(labelId);
+        publishedSnapshot = (BitSet) publishedLabels.clone();
+        return true;
+    }
+}
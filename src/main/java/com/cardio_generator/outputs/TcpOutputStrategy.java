@@ -1,51 +1,168 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Strategy for sending simulated patient data over TCP sockets.
  * <p>
- * Starts a TCP server on the specified port and broadcasts data records
- * to a connected client using a PrintWriter.
+ * Starts a non-blocking TCP server on the specified port and broadcasts
+ * data records to every connected client. Records are formatted into a
+ * per-thread buffer and appended to a shared chunk; full chunks, and
+ * partial ones every {@link #FLUSH_INTERVAL_MILLIS}, are sealed and fanned
+ * out by a single {@link Selector} thread.
+ * <p>
+ * A client that sends the line {@code mode binary} is answered with the
+ * same line and from then on receives the compact frames of
+ * {@link BinaryFrameEncoder} instead of text records. Text and binary
+ * records are batched in separate chunks, each only encoded while a client
+ * wants it.
+ * <p>
+ * Every client has its own queue of pending chunks. Clients share the chunk
+ * contents and only keep their own read position, and each queue is written
+ * with one gathering write. Once every client has written a chunk, its
+ * buffer is handed back to the producers to be filled again. A client whose queue grows beyond its limit is
+ * too slow to keep up and is disconnected, so it cannot hold back the
+ * others or exhaust memory.
  */
 public class TcpOutputStrategy implements OutputStrategy {
 
-    private ServerSocket serverSocket; // Server socket listening for incoming connections.
-    private Socket clientSocket;       // Client socket representing the connected client.
-    private PrintWriter out;           // Writer used to send messages to the client.
+    /** Default size of the shared chunk records are collected in. */
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+
+    /** Default number of bytes a client may have queued before it is dropped. */
+    public static final int DEFAULT_CLIENT_LIMIT_BYTES = 4 * 1024 * 1024;
+
+    /** Maximum time records wait in a partial chunk, in milliseconds. */
+    private static final long FLUSH_INTERVAL_MILLIS = 10;
+
+    /** Maximum number of chunks passed to one gathering write. */
+    private static final int MAX_GATHER = 64;
+
+    /** Maximum number of emptied chunk buffers kept for reuse. */
+    private static final int MAX_FREE_CHUNKS = 16;
+
+    private final int chunkBytes;
+    private final int clientLimitBytes;
+    private final ExecutorService ownedExecutor;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+
+    /** Chunk currently being filled by the producers; guarded by {@code pendingLock}. */
+    private ByteBuffer pending;
+    private final Object pendingLock = new Object();
+
+    /** Emptied chunk buffers ready to become {@code pending}; guarded by {@code pendingLock}. */
+    private final ArrayDeque<ByteBuffer> freeChunks = new ArrayDeque<>();
+
+    /** Binary frame currently being filled by the producers; guarded by {@code pendingLock}. */
+    private final BinaryFrameEncoder binaryPending;
+
+    /** Sealed chunks waiting for the selector thread to fan them out. */
+    private final ConcurrentLinkedQueue<Chunk> sealed = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Chunk> sealedBinary = new ConcurrentLinkedQueue<>();
+
+    /** Answer to a client switching to binary frames. */
+    private static final Chunk BINARY_ACK =
+            new Chunk(ByteBuffer.wrap("mode binary\n".getBytes(StandardCharsets.US_ASCII)), false);
+
+    /** Connected clients; only touched by the selector thread. */
+    private final List<Client> clients = new ArrayList<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private volatile int clientCount;
+    private volatile int binaryClientCount;
+    private volatile boolean closed;
+    private final CountDownLatch stopped = new CountDownLatch(1);
 
     /**
      * Constructs a TcpOutputStrategy and starts a server on the given port.
-     * Listens for a single client connection in a background thread.
+     * The selector loop runs on a background thread of its own.
      *
      * @param port the TCP port on which the server listens
      */
     public TcpOutputStrategy(int port) {
+        this(port, Executors.newSingleThreadExecutor(), true, DEFAULT_CHUNK_BYTES, DEFAULT_CLIENT_LIMIT_BYTES);
+    }
+
+    /**
+     * Constructs a TcpOutputStrategy whose selector loop runs on the given
+     * executor, e.g. a virtual-thread executor.
+     *
+     * @param port           the TCP port on which the server listens
+     * @param acceptExecutor executor that runs the selector loop
+     */
+    public TcpOutputStrategy(int port, ExecutorService acceptExecutor) {
+        this(port, acceptExecutor, DEFAULT_CHUNK_BYTES, DEFAULT_CLIENT_LIMIT_BYTES);
+    }
+
+    /**
+     * Constructs a TcpOutputStrategy whose selector loop runs on the given
+     * executor, optionally handing the executor over so that
+     * {@link #close()} shuts it down.
+     *
+     * @param port           the TCP port on which the server listens
+     * @param acceptExecutor executor that runs the selector loop
+     * @param ownsExecutor   whether {@link #close()} shuts the executor down
+     */
+    public TcpOutputStrategy(int port, ExecutorService acceptExecutor, boolean ownsExecutor) {
+        this(port, acceptExecutor, ownsExecutor, DEFAULT_CHUNK_BYTES, DEFAULT_CLIENT_LIMIT_BYTES);
+    }
+
+    /**
+     * Constructs a TcpOutputStrategy with explicit buffer limits.
+     *
+     * @param port             the TCP port on which the server listens
+     * @param acceptExecutor   executor that runs the selector loop
+     * @param chunkBytes       size of the chunks records are batched in
+     * @param clientLimitBytes bytes a client may have queued before it is
+     *                         disconnected
+     */
+    public TcpOutputStrategy(int port, ExecutorService acceptExecutor, int chunkBytes, int clientLimitBytes) {
+        this(port, acceptExecutor, false, chunkBytes, clientLimitBytes);
+    }
+
+    private TcpOutputStrategy(int port, ExecutorService executor, boolean ownsExecutor,
+                              int chunkBytes, int clientLimitBytes) {
+        this.chunkBytes = chunkBytes;
+        this.clientLimitBytes = clientLimitBytes;
+        this.ownedExecutor = ownsExecutor ? executor : null;
+        this.pending = ByteBuffer.allocate(chunkBytes);
+        this.binaryPending = new BinaryFrameEncoder(chunkBytes);
         try {
-            serverSocket = new ServerSocket(port);
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
             System.out.println("TCP Server started on port " + port);
 
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            // Serve clients in a new thread to not block the main thread
+            executor.submit(this::runSelector);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Outputs a data record to the connected TCP client if present.
+     * Outputs a data record to all connected TCP clients, if any.
      *
      * @param patientId the unique identifier of the patient
      * @param timestamp the measurement timestamp in milliseconds since epoch
@@ -54,9 +171,414 @@ public class TcpOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (clientCount > binaryClientCount) {
+            enqueue(RecordBuffer.forCurrentThread().appendCsv(patientId, timestamp, label, data));
+        }
+        if (binaryClientCount > 0) {
+            boolean wake;
+            synchronized (pendingLock) {
+                binaryPending.addText(patientId, timestamp, LabelRegistry.idOf(label), data);
+                wake = binaryPending.bodyLength() >= chunkBytes && sealBinary();
+            }
+            if (wake) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        if (clientCount > binaryClientCount) {
+            enqueue(RecordBuffer.forCurrentThread().appendCsv(patientId, timestamp, labelId, value));
+        }
+        if (binaryClientCount > 0) {
+            boolean wake;
+            synchronized (pendingLock) {
+                binaryPending.addNumeric(patientId, timestamp, labelId, value);
+                wake = binaryPending.bodyLength() >= chunkBytes && sealBinary();
+            }
+            if (wake) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    @Override
+    public void output(ReadingBatch batch) {
+        if (clientCount > binaryClientCount) {
+            enqueue(RecordBuffer.forCurrentThread().appendCsv(batch));
+        }
+        if (binaryClientCount > 0) {
+            boolean wake = false;
+            synchronized (pendingLock) {
+                for (int i = 0; i < batch.size(); i++) {
+                    binaryPending.add(batch, i);
+                    if (binaryPending.bodyLength() >= chunkBytes) {
+                        wake |= sealBinary();
+                    }
+                }
+            }
+            if (wake) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * @return number of currently connected clients
+     */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * Sends what is still buffered as far as the clients accept it without
+     * blocking, then closes all connections and the server.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (selector != null) {
+            selector.wakeup();
+            try {
+                stopped.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Appends formatted records to the shared chunk, sealing it first if
+     * they do not fit. Records never span two chunks.
+     */
+    private void enqueue(RecordBuffer buffer) {
+        buffer.encode();
+        int length = buffer.length();
+        boolean wake = false;
+        synchronized (pendingLock) {
+            if (pending.remaining() < length) {
+                wake = sealPending();
+            }
+            if (length > pending.capacity()) {
+                // Larger than a chunk: ship it on its own
+                sealed.add(new Chunk(ByteBuffer.wrap(buffer.bytes().clone(), 0, length), false));
+                wake = true;
+            } else {
+                pending.put(buffer.bytes(), 0, length);
+            }
+        }
+        if (wake) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Moves the pending chunk to the sealed queue; caller holds {@code pendingLock}.
+     *
+     * @return true if a chunk was sealed
+     */
+    private boolean sealPending() {
+        if (pending.position() == 0) {
+            return false;
+        }
+        pending.flip();
+        sealed.add(new Chunk(pending, true));
+        ByteBuffer free = freeChunks.poll();
+        pending = free != null ? free : ByteBuffer.allocate(chunkBytes);
+        return true;
+    }
+
+    /**
+     * Moves the pending binary frame to its sealed queue; caller holds
+     * {@code pendingLock}.
+     *
+     * @return true if a frame was sealed
+     */
+    private boolean sealBinary() {
+        if (binaryPending.records() == 0) {
+            return false;
+        }
+        ByteBuffer frame = binaryPending.finish();
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame).flip();
+        sealedBinary.add(new Chunk(copy, false));
+        binaryPending.reset();
+        return true;
+    }
+
+    /**
+     * Body of the selector thread: accepts clients, fans sealed chunks out
+     * to them and writes whatever their sockets accept.
+     */
+    private void runSelector() {
+        try {
+            while (!closed) {
+                selector.select(FLUSH_INTERVAL_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        read(client);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(client);
+                    }
+                }
+                synchronized (pendingLock) {
+                    sealPending();
+                    sealBinary();
+                }
+                distribute();
+            }
+            // Last round: hand out what is left, without waiting for slow clients
+            synchronized (pendingLock) {
+                sealPending();
+                sealBinary();
+            }
+            distribute();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (Client client : new ArrayList<>(clients)) {
+                disconnect(client, null);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            stopped.countDown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        countClients();
+        System.out.println("Client connected: " + channel.getRemoteAddress());
+    }
+
+    /**
+     * Appends every sealed chunk to every client's queue and writes the
+     * queues out.
+     */
+    private void distribute() {
+        Chunk chunk;
+        while ((chunk = sealed.poll()) != null) {
+            fanOut(chunk, false);
+        }
+        while ((chunk = sealedBinary.poll()) != null) {
+            fanOut(chunk, true);
+        }
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            write(clients.get(i));
+        }
+    }
+
+    private void fanOut(Chunk chunk, boolean binary) {
+        int length = chunk.contents.remaining();
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            Client client = clients.get(i);
+            if (client.binary != binary) {
+                continue;
+            }
+            if (client.queuedBytes + length > clientLimitBytes) {
+                disconnect(client, "exceeded its " + clientLimitBytes + " byte buffer");
+                continue;
+            }
+            client.enqueue(chunk);
+            client.queuedBytes += length;
+        }
+        if (chunk.reusable && chunk.references == 0) {
+            recycle(chunk); // nobody wanted it
+        }
+    }
+
+    /**
+     * Drops one client's reference to a chunk, returning its buffer to the
+     * producers once no client needs it any more.
+     */
+    private void release(Chunk chunk) {
+        if (chunk.reusable && --chunk.references == 0) {
+            recycle(chunk);
+        }
+    }
+
+    private void recycle(Chunk chunk) {
+        chunk.buffer.clear();
+        synchronized (pendingLock) {
+            if (freeChunks.size() < MAX_FREE_CHUNKS) {
+                freeChunks.add(chunk.buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads commands from a client. The only command is {@code mode binary};
+     * other lines are ignored.
+     */
+    private void read(Client client) {
+        try {
+            if (client.channel.read(client.input) < 0) {
+                disconnect(client, null);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(client, e.getMessage());
+            return;
+        }
+        ByteBuffer input = client.input;
+        input.flip();
+        int lineStart = 0;
+        for (int i = 0; i < input.limit(); i++) {
+            if (input.get(i) == '\n') {
+                String line = new String(input.array(), lineStart, i - lineStart, StandardCharsets.US_ASCII).trim();
+                if (line.equals("mode binary") && !client.binary) {
+                    // Everything queued so far is text; the answer marks the switch
+                    client.enqueue(BINARY_ACK);
+                    client.queuedBytes += BINARY_ACK.contents.remaining();
+                    client.binary = true;
+                    countClients();
+                    write(client);
+                }
+                lineStart = i + 1;
+            }
+        }
+        input.position(lineStart);
+        input.compact();
+        if (!input.hasRemaining()) {
+            input.clear(); // an overlong line is not a command
+        }
+    }
+
+    /**
+     * Writes as much of a client's queue as its socket accepts, and asks
+     * for a write-ready event if anything is left.
+     */
+    private void write(Client client) {
+        try {
+            while (!client.queue.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : client.queue) {
+                    gather[count++] = buffer;
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                }
+                long written = client.channel.write(gather, 0, count);
+                client.queuedBytes -= written;
+                while (!client.queue.isEmpty() && !client.queue.peek().hasRemaining()) {
+                    client.queue.poll();
+                    release(client.chunks.poll());
+                }
+                if (written == 0) {
+                    break; // socket buffer full
+                }
+            }
+            client.key.interestOps(client.queue.isEmpty()
+                    ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            disconnect(client, e.getMessage());
+        } finally {
+            Arrays.fill(gather, null);
+        }
+    }
+
+    private void disconnect(Client client, String reason) {
+        clients.remove(client);
+        Chunk chunk;
+        while ((chunk = client.chunks.poll()) != null) {
+            release(chunk);
+        }
+        client.queue.clear();
+        countClients();
+        client.key.cancel();
+        try {
+            if (reason != null) {
+                System.err.println("Disconnecting TCP client " + client.channel.getRemoteAddress() + ": " + reason);
+            }
+            client.channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    private void countClients() {
+        int binary = 0;
+        for (Client client : clients) {
+            if (client.binary) {
+                binary++;
+            }
+        }
+        binaryClientCount = binary;
+        clientCount = clients.size();
+    }
+
+    /**
+     * Sealed records shared by the clients it is fanned out to. Only
+     * reusable chunks are reference counted, and only by the selector thread.
+     */
+    private static final class Chunk {
+        private final ByteBuffer buffer;
+        private final ByteBuffer contents; // read-only view of the sealed records
+        private final boolean reusable;
+        private int references;
+
+        private Chunk(ByteBuffer buffer, boolean reusable) {
+            this.buffer = buffer;
+            this.contents = buffer.asReadOnlyBuffer();
+            this.reusable = reusable;
+        }
+    }
+
+    /**
+     * A connected subscriber and the chunks it has not received yet.
+     */
+    private static final class Client {
+        private final SocketChannel channel;
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>(); // own positions in the chunks
+        private final ArrayDeque<Chunk> chunks = new ArrayDeque<>(); // the chunks behind queue, in order
+        private long queuedBytes;
+        private SelectionKey key;
+        private boolean binary;
+        private final ByteBuffer input = ByteBuffer.allocate(256);
+
+        private Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Queues a chunk with a read position of this client's own.
+         */
+        private void enqueue(Chunk chunk) {
+            queue.add(chunk.contents.duplicate());
+            chunks.add(chunk);
+            if (chunk.reusable) {
+                chunk.references++;
+            }
         }
     }
 }
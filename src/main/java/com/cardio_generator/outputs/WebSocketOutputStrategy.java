@@ -1,48 +1,373 @@
 package com.cardio_generator.outputs;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Strategy for broadcasting simulated patient data to WebSocket clients.
+ * <p>
+ * Readings are not sent one frame at a time. Each connection collects the
+ * records it subscribed to and receives them as one text frame of
+ * newline-separated records every {@link #DEFAULT_FLUSH_MILLIS} ms, or as
+ * soon as {@link #DEFAULT_MAX_RECORDS} records are waiting.
+ * <p>
+ * A new connection receives every record. Clients narrow that down by
+ * sending {@code subscribe <patients> <labels>}, where patients is a comma
+ * separated list of IDs and ranges (e.g. {@code 1-20,35}) and labels a comma
+ * separated list of label names; {@code *} selects all. For example,
+ * {@code subscribe 1-20 ECG,Alert} follows the ECG and alerts of the first
+ * 20 patients. Patient IDs above a configured maximum and unknown labels
+ * are rejected with an {@code error:} reply, so a client cannot make the
+ * server allocate for IDs or labels that never occur.
+ * <p>
+ * Sending {@code mode binary} switches a connection to binary messages in
+ * the format of {@link BinaryFrameEncoder}, one frame per message;
+ * {@code mode text} switches back.
+ */
 public class WebSocketOutputStrategy implements OutputStrategy {
 
+    /** Default interval at which waiting records are sent, in milliseconds. */
+    public static final long DEFAULT_FLUSH_MILLIS = 20;
+
+    /** Default number of records that triggers an immediate frame. */
+    public static final int DEFAULT_MAX_RECORDS = 512;
+
+    /** Default largest patient ID a client may subscribe to. */
+    public static final int DEFAULT_MAX_PATIENT_ID = 100_000;
+
     private WebSocketServer server;
+    private final int maxRecords;
+
+    /**
+     * Open connections. Replaced as a whole when one opens or closes, so
+     * readings are offered without a lock or an allocation.
+     */
+    private volatile Subscriber[] subscribers = new Subscriber[0];
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "websocket-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public WebSocketOutputStrategy(int port) {
-        server = new SimpleWebSocketServer(new InetSocketAddress(port));
+        this(port, DEFAULT_FLUSH_MILLIS, DEFAULT_MAX_RECORDS, DEFAULT_MAX_PATIENT_ID);
+    }
+
+    /**
+     * @param port        the port the WebSocket server listens on
+     * @param flushMillis interval at which waiting records are sent
+     * @param maxRecords  number of waiting records that triggers a frame
+     */
+    public WebSocketOutputStrategy(int port, long flushMillis, int maxRecords) {
+        this(port, flushMillis, maxRecords, DEFAULT_MAX_PATIENT_ID);
+    }
+
+    /**
+     * @param port         the port the WebSocket server listens on
+     * @param flushMillis  interval at which waiting records are sent
+     * @param maxRecords   number of waiting records that triggers a frame
+     * @param maxPatientId largest patient ID a client may subscribe to,
+     *                     e.g. the number of simulated patients
+     */
+    public WebSocketOutputStrategy(int port, long flushMillis, int maxRecords, int maxPatientId) {
+        this.maxRecords = maxRecords;
+        server = new SimpleWebSocketServer(new InetSocketAddress(port), maxPatientId);
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        flusher.scheduleAtFixedRate(this::flushAll, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        offer(patientId, timestamp, LabelRegistry.idOf(label), Double.NaN, data);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int labelId, double value) {
+        offer(patientId, timestamp, labelId, value, null);
+    }
+
+    /**
+     * @return number of currently open connections
+     */
+    public int getSubscriberCount() {
+        return subscribers.length;
+    }
+
+    /**
+     * Sends waiting records, stops the flusher and shuts the server down.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flushAll();
+        try {
+            server.stop(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a reading to the pending frame of every connection subscribed to
+     * it. The text form is formatted once, and only if a text connection
+     * wants the reading.
+     *
+     * @param text the reading's text, or null for a numeric reading
+     */
+    private void offer(int patientId, long timestamp, int labelId, double value, String text) {
+        Subscriber[] current = subscribers;
+        RecordBuffer record = null;
+        for (Subscriber subscriber : current) {
+            if (!subscriber.wants(patientId, labelId)) {
+                continue;
+            }
+            WebSocket conn = subscriber.conn;
+            if (subscriber.binary) {
+                subscriber.appendBinary(conn, patientId, timestamp, labelId, value, text, maxRecords);
+                continue;
+            }
+            if (record == null) {
+                record = RecordBuffer.forCurrentThread();
+                if (text == null) {
+                    record.appendCsv(patientId, timestamp, labelId, value);
+                } else {
+                    record.appendCsv(patientId, timestamp, LabelRegistry.name(labelId), text);
+                }
+                record.encode();
+            }
+            subscriber.append(conn, record.bytes(), record.length(), maxRecords);
+        }
+    }
+
+    private void flushAll() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.flush(subscriber.conn);
         }
     }
 
-    private static class SimpleWebSocketServer extends WebSocketServer {
+    private synchronized void addSubscriber(Subscriber subscriber) {
+        Subscriber[] grown = Arrays.copyOf(subscribers, subscribers.length + 1);
+        grown[grown.length - 1] = subscriber;
+        subscribers = grown;
+    }
+
+    private synchronized void removeSubscriber(Subscriber subscriber) {
+        Subscriber[] current = subscribers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscriber) {
+                Subscriber[] shrunk = new Subscriber[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, shrunk.length - i);
+                subscribers = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * A connection's subscription and the records waiting to be sent to it.
+     */
+    private static final class Subscriber {
+        private final WebSocket conn;
+        private final int maxPatientId;
+        private volatile BitSet patients; // null selects all patients
+        private volatile BitSet labels;   // null selects all labels
+
+        private byte[] pending = new byte[4096];
+        private int length;
+        private int records;
+        private final TextFrame frame = new TextFrame();
+        private volatile boolean binary;
+        private BinaryFrameEncoder encoder;
+
+        Subscriber(WebSocket conn, int maxPatientId) {
+            this.conn = conn;
+            this.maxPatientId = maxPatientId;
+        }
+
+        boolean wants(int patientId, int labelId) {
+            BitSet p = patients;
+            BitSet l = labels;
+            return (p == null || p.get(patientId)) && (l == null || l.get(labelId));
+        }
+
+        /**
+         * Applies a {@code subscribe <patients> <labels>} command.
+         *
+         * @param command the message received from the client
+         * @throws IllegalArgumentException if the command is malformed
+         */
+        void subscribe(String command) {
+            String[] parts = command.trim().split("\\s+");
+            if (parts.length != 3 || !parts[0].equals("subscribe")) {
+                throw new IllegalArgumentException("expected 'subscribe <patients|*> <labels|*>'");
+            }
+            BitSet newPatients = parts[1].equals("*") ? null : parsePatients(parts[1]);
+            BitSet newLabels = null;
+            if (!parts[2].equals("*")) {
+                newLabels = new BitSet();
+                for (String label : parts[2].split(",")) {
+                    int id = LabelRegistry.find(label); // clients must not add labels to the registry
+                    if (id < 0) {
+                        throw new IllegalArgumentException("unknown label '" + label + "'");
+                    }
+                    newLabels.set(id);
+                }
+            }
+            patients = newPatients;
+            labels = newLabels;
+        }
+
+        private BitSet parsePatients(String list) {
+            BitSet ids = new BitSet();
+            for (String item : list.split(",")) {
+                int dash = item.indexOf('-');
+                int from;
+                int to;
+                try {
+                    from = Integer.parseInt(dash > 0 ? item.substring(0, dash) : item);
+                    to = dash > 0 ? Integer.parseInt(item.substring(dash + 1)) : from;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid patient list '" + list + "'");
+                }
+                if (from < 0 || to < from || to > maxPatientId) {
+                    throw new IllegalArgumentException("invalid patient range '" + item
+                            + "', IDs must be between 0 and " + maxPatientId);
+                }
+                ids.set(from, to + 1);
+            }
+            return ids;
+        }
+
+        /**
+         * Applies a {@code mode text|binary} command, sending what is
+         * waiting in the old format first.
+         *
+         * @throws IllegalArgumentException if the mode is unknown
+         */
+        synchronized void setMode(WebSocket conn, String command) {
+            String mode = command.trim().substring("mode".length()).trim();
+            if (!mode.equals("text") && !mode.equals("binary")) {
+                throw new IllegalArgumentException("expected 'mode text|binary'");
+            }
+            flush(conn);
+            binary = mode.equals("binary");
+            if (binary && encoder == null) {
+                encoder = new BinaryFrameEncoder(4096);
+            }
+        }
+
+        synchronized void appendBinary(WebSocket conn, int patientId, long timestamp, int labelId,
+                                       double value, String text, int maxRecords) {
+            if (!binary) {
+                // Switched back to text after the caller checked
+                RecordBuffer record = RecordBuffer.forCurrentThread();
+                if (text == null) {
+                    record.appendCsv(patientId, timestamp, labelId, value);
+                } else {
+                    record.appendCsv(patientId, timestamp, LabelRegistry.name(labelId), text);
+                }
+                record.encode();
+                append(conn, record.bytes(), record.length(), maxRecords);
+                return;
+            }
+            if (text == null) {
+                encoder.addNumeric(patientId, timestamp, labelId, value);
+            } else {
+                encoder.addText(patientId, timestamp, labelId, text);
+            }
+            if (++records >= maxRecords) {
+                flush(conn);
+            }
+        }
+
+        synchronized void append(WebSocket conn, byte[] bytes, int count, int maxRecords) {
+            if (length + count > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(length + count, pending.length * 2));
+            }
+            System.arraycopy(bytes, 0, pending, length, count);
+            length += count;
+            if (++records >= maxRecords) {
+                flush(conn);
+            }
+        }
+
+        /**
+         * Sends the waiting records as one frame. The library copies the
+         * payload before {@code sendFrame} returns, so the buffer is reused.
+         */
+        synchronized void flush(WebSocket conn) {
+            if (records == 0) {
+                return;
+            }
+            records = 0;
+            try {
+                if (binary) {
+                    ByteBuffer message = encoder.finish();
+                    encoder.reset(); // the frame stays intact until the next record is added
+                    conn.send(message);
+                    return;
+                }
+                // Records are newline-terminated; the frame drops the last newline
+                frame.setPayload(ByteBuffer.wrap(pending, 0, length - 1));
+                length = 0;
+                conn.sendFrame(frame);
+            } catch (WebsocketNotConnectedException e) {
+                // Closing; the connection leaves the subscribers shortly
+            }
+        }
+    }
+
+    private class SimpleWebSocketServer extends WebSocketServer {
+
+        private final int maxPatientId;
 
-        public SimpleWebSocketServer(InetSocketAddress address) {
+        public SimpleWebSocketServer(InetSocketAddress address, int maxPatientId) {
             super(address);
+            this.maxPatientId = maxPatientId;
         }
 
         @Override
-        public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            Subscriber subscriber = new Subscriber(conn, maxPatientId);
+            conn.setAttachment(subscriber);
+            addSubscriber(subscriber);
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            Subscriber subscriber = conn.getAttachment();
+            if (subscriber != null) {
+                removeSubscriber(subscriber);
+            }
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
         }
 
         @Override
         public void onMessage(WebSocket conn, String message) {
-            // Not used in this context
+            Subscriber subscriber = conn.getAttachment();
+            try {
+                if (message.trim().startsWith("mode")) {
+                    subscriber.setMode(conn, message);
+                } else {
+                    subscriber.subscribe(message);
+                }
+            } catch (IllegalArgumentException e) {
+                conn.send("error: " + e.getMessage());
+            }
         }
 
         @Override
@@ -0,0 +1,91 @@
+package com.cardio_generator.scheduling;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Thread-per-patient scheduler: every patient runs one plain loop that
+ * sleeps until its next reading is due and then calls the due generators.
+ * <p>
+ * Meant to be used with a virtual-thread executor, where a sleeping loop
+ * costs a few hundred bytes of heap instead of a platform thread. As in the
+ * default pool scheduler, each signal of a loop draws its own random initial
+ * delay of 0 to 4 units of the signal's time unit.
+ */
+public class PatientLoopScheduler {
+
+    private final int patientCount;
+    private final List<PeriodicSignal> signals;
+    private final OutputStrategy outputStrategy;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a scheduler for patients {@code 1..patientCount}.
+     *
+     * @param patientCount   number of simulated patients
+     * @param signals        signals to generate for every patient
+     * @param outputStrategy destination of the generated readings
+     * @param executor       executor that runs one loop per patient
+     */
+    public PatientLoopScheduler(int patientCount, List<PeriodicSignal> signals,
+                                OutputStrategy outputStrategy, ExecutorService executor) {
+        this.patientCount = patientCount;
+        this.signals = signals;
+        this.outputStrategy = outputStrategy;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts one generation loop per patient.
+     */
+    public void start() {
+        for (int patientId = 1; patientId <= patientCount; patientId++) {
+            int id = patientId;
+            executor.execute(() -> runPatient(id));
+        }
+    }
+
+    /**
+     * Interrupts all patient loops.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void runPatient(int patientId) {
+        int signalCount = signals.size();
+        long[] nextDue = new long[signalCount];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < signalCount; i++) {
+            PeriodicSignal signal = signals.get(i);
+            nextDue[i] = now + signal.getTimeUnit().toMillis(ThreadLocalRandom.current().nextInt(5));
+        }
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long earliest = Long.MAX_VALUE;
+                for (long due : nextDue) {
+                    earliest = Math.min(earliest, due);
+                }
+                long wait = earliest - System.currentTimeMillis();
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+
+                now = System.currentTimeMillis();
+                for (int i = 0; i < signalCount; i++) {
+                    if (nextDue[i] <= now) {
+                        PeriodicSignal signal = signals.get(i);
+                        signal.getGenerator().generate(patientId, outputStrategy);
+                        nextDue[i] += signal.getPeriodMillis();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
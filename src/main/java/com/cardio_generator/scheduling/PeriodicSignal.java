@@ -0,0 +1,55 @@
+package com.cardio_generator.scheduling;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+
+/**
+ * Pairs a data generator with the period at which it should be invoked for
+ * every simulated patient.
+ */
+public class PeriodicSignal {
+
+    private final PatientDataGenerator generator;
+    private final long period;
+    private final TimeUnit timeUnit;
+
+    /**
+     * @param generator the generator producing this signal
+     * @param period    interval between two readings of the same patient
+     * @param timeUnit  unit of {@code period}
+     */
+    public PeriodicSignal(PatientDataGenerator generator, long period, TimeUnit timeUnit) {
+        this.generator = generator;
+        this.period = period;
+        this.timeUnit = timeUnit;
+    }
+
+    /**
+     * @return the generator producing this signal
+     */
+    public PatientDataGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * @return interval between two readings, in {@link #getTimeUnit()} units
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return unit of {@link #getPeriod()}
+     */
+    public TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    /**
+     * @return interval between two readings in milliseconds
+     */
+    public long getPeriodMillis() {
+        return timeUnit.toMillis(period);
+    }
+}
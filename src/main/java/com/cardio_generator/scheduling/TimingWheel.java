@@ -0,0 +1,129 @@
+package com.cardio_generator.scheduling;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel keyed on abstract ticks.
+ * <p>
+ * Each level has 64 slots; a slot on level {@code L} spans {@code 64^L}
+ * ticks. Entries are placed on the lowest level whose range covers their
+ * deadline and are cascaded down one level at a time as the wheel turns, so
+ * scheduling and expiry are O(1) regardless of how many entries are pending.
+ * Deadlines beyond the top level are parked in its slots and re-placed each
+ * time they are cascaded.
+ * <p>
+ * The wheel is not thread-safe; it is meant to be driven by a single ticker
+ * thread.
+ *
+ * @param <T> the type of task stored in the wheel
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /** Slot heads per level; each slot is a singly linked list of entries. */
+    private final Entry<T>[][] slots;
+
+    /** Tick that was expired by the last call to {@link #advance(Consumer)}. */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * Creates an empty wheel positioned at tick 0.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel() {
+        slots = new Entry[LEVELS][SLOTS];
+    }
+
+    /**
+     * Schedules a task to expire at the given tick. Deadlines that are not in
+     * the future expire on the next call to {@link #advance(Consumer)}.
+     *
+     * @param deadlineTick the tick at which the task should expire
+     * @param task         the task to store
+     */
+    public void schedule(long deadlineTick, T task) {
+        place(new Entry<>(Math.max(deadlineTick, currentTick + 1), task));
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward by one tick and hands every task whose deadline
+     * is that tick to {@code expired}.
+     *
+     * @param expired receives each expired task
+     */
+    public void advance(Consumer<T> expired) {
+        currentTick++;
+        // Cascade from the top so entries moved down a level are picked up
+        // by the lower level's cascade in the same tick.
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = level * SLOT_BITS;
+            if ((currentTick & ((1L << shift) - 1)) == 0) {
+                int index = (int) (currentTick >>> shift) & SLOT_MASK;
+                Entry<T> entry = slots[level][index];
+                slots[level][index] = null;
+                while (entry != null) {
+                    Entry<T> next = entry.next;
+                    place(entry);
+                    entry = next;
+                }
+            }
+        }
+
+        int index = (int) currentTick & SLOT_MASK;
+        Entry<T> entry = slots[0][index];
+        slots[0][index] = null;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            if (entry.deadline <= currentTick) {
+                size--;
+                expired.accept(entry.task);
+            } else {
+                place(entry);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * @return the tick expired by the most recent advance
+     */
+    public long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * @return the number of tasks waiting in the wheel
+     */
+    public int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int index = (int) (entry.deadline >>> (level * SLOT_BITS)) & SLOT_MASK;
+        entry.next = slots[level][index];
+        slots[level][index] = entry;
+    }
+
+    private static final class Entry<T> {
+        private final long deadline;
+        private final T task;
+        private Entry<T> next;
+
+        private Entry(long deadline, T task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.cardio_generator.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.generators.SimulatedClock;
+import com.cardio_generator.generators.SimulationClock;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Tick-driven scheduler that runs every signal for a whole cohort from a
+ * single {@link TimingWheel} and a fixed worker pool.
+ * <p>
+ * Instead of one periodic task per patient and signal, the patient ID range
+ * is cut into a few contiguous stripes per signal. Each stripe is one wheel
+ * entry with its own phase inside the signal's period, so load is spread
+ * across the period. When a stripe is due it is split into chunks of
+ * consecutive patient IDs, each generated by a worker with one
+ * {@link PatientDataGenerator#generateBatch} call.
+ * <p>
+ * A stripe that is still running when it comes due again skips that firing,
+ * matching {@code scheduleAtFixedRate}, which never runs a task
+ * concurrently with itself. This also guarantees that a generator is never
+ * invoked for the same patient from two threads at once.
+ * <p>
+ * The wheel follows a {@link SimulationClock}. With the system clock it is
+ * driven by a ticker thread via {@link #start()}; with a
+ * {@link SimulatedClock}, {@link #runSimulated(long, double)} advances the
+ * clock itself one tick at a time, as fast as the workers allow or at a
+ * fixed multiple of real time.
+ */
+public class TimingWheelScheduler {
+
+    /** Default wheel resolution in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    /** Number of consecutive patients handed to a worker at once. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** Number of phase-shifted stripes each signal is split into. */
+    private static final int STRIPES = 5;
+
+    private final int patientCount;
+    private final List<PeriodicSignal> signals;
+    private final OutputStrategy outputStrategy;
+    private final long tickMillis;
+    private final SimulationClock clock;
+    private final TimingWheel<Stripe> wheel = new TimingWheel<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+    private final List<Stripe> due = new ArrayList<>();
+    private final AtomicLong skippedFirings = new AtomicLong();
+
+    /** Tracks chunks in flight during a simulated run so each tick can wait for them. */
+    private final Phaser inFlight = new Phaser(1);
+
+    private long startMillis;
+
+    /**
+     * Creates a scheduler for patients {@code 1..patientCount}.
+     *
+     * @param patientCount   number of simulated patients
+     * @param signals        signals to generate for every patient
+     * @param outputStrategy destination of the generated readings
+     * @param workerCount    number of worker threads
+     * @param tickMillis     wheel resolution in milliseconds
+     * @param clock          the clock the generators read their timestamps from
+     */
+    public TimingWheelScheduler(int patientCount, List<PeriodicSignal> signals,
+                                OutputStrategy outputStrategy, int workerCount, long tickMillis,
+                                SimulationClock clock) {
+        this.patientCount = patientCount;
+        this.signals = signals;
+        this.outputStrategy = outputStrategy;
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+    }
+
+    /**
+     * Places every stripe on the wheel and starts a ticker thread that
+     * follows the clock in real time.
+     */
+    public void start() {
+        scheduleStripes();
+        startMillis = clock.currentTimeMillis();
+        ticker.scheduleAtFixedRate(this::onTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the simulation on the calling thread by advancing the simulated
+     * clock one tick at a time. Every tick waits for its chunks to finish, so
+     * readings are always stamped with the tick they belong to. Returns once
+     * {@code durationMillis} of simulated time has been generated; the
+     * worker pool is shut down afterwards.
+     *
+     * @param durationMillis amount of simulated time to generate
+     * @param speed          simulated milliseconds per wall-clock millisecond,
+     *                       or {@link Double#POSITIVE_INFINITY} to run as fast
+     *                       as possible
+     * @throws IllegalArgumentException if {@code speed} is not positive
+     * @throws IllegalStateException    if the scheduler was not created with a
+     *                                  {@link SimulatedClock}
+     * @throws InterruptedException     if interrupted while pacing the run
+     */
+    public void runSimulated(long durationMillis, double speed) throws InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        if (!(clock instanceof SimulatedClock)) {
+            throw new IllegalStateException("Simulated runs require a SimulatedClock");
+        }
+        SimulatedClock simulatedClock = (SimulatedClock) clock;
+        long wallNanosPerTick = Double.isInfinite(speed) ? 0 : (long) (tickMillis * 1_000_000L / speed);
+
+        scheduleStripes();
+        long ticks = durationMillis / tickMillis;
+        long next = System.nanoTime();
+        try {
+            for (long tick = 0; tick < ticks; tick++) {
+                simulatedClock.advance(tickMillis);
+                wheel.advance(due::add);
+                fireDue();
+                inFlight.arriveAndAwaitAdvance();
+
+                if (wallNanosPerTick > 0) {
+                    next += wallNanosPerTick;
+                    long sleep = next - System.nanoTime();
+                    if (sleep > 0) {
+                        TimeUnit.NANOSECONDS.sleep(sleep);
+                    }
+                }
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private void scheduleStripes() {
+        for (PeriodicSignal signal : signals) {
+            long periodTicks = Math.max(1, signal.getPeriodMillis() / tickMillis);
+            int stripes = Math.min(STRIPES, Math.max(1, patientCount));
+            for (int s = 0; s < stripes; s++) {
+                int from = 1 + (int) ((long) patientCount * s / stripes);
+                int to = (int) ((long) patientCount * (s + 1) / stripes);
+                Stripe stripe = new Stripe(signal.getGenerator(), from, to, periodTicks);
+                stripe.deadline = periodTicks * s / stripes;
+                wheel.schedule(stripe.deadline, stripe);
+            }
+        }
+    }
+
+    /**
+     * Stops the ticker and the worker pool. Chunks already handed to the
+     * workers are allowed to finish.
+     */
+    public void shutdown() {
+        ticker.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * @return number of stripe firings skipped because the previous firing
+     *         had not finished yet
+     */
+    public long getSkippedFirings() {
+        return skippedFirings.get();
+    }
+
+    /**
+     * Advances the wheel to the current wall-clock tick, catching up on any
+     * ticks missed while the ticker thread was delayed. Errors are logged
+     * rather than thrown, since an exception would cancel the ticker.
+     */
+    private void onTick() {
+        try {
+            long target = (clock.currentTimeMillis() - startMillis) / tickMillis;
+            while (wheel.currentTick() < target) {
+                wheel.advance(due::add);
+            }
+            fireDue();
+        } catch (RuntimeException e) {
+            System.err.println("An error occurred in the scheduler tick: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void fireDue() {
+        try {
+            for (Stripe stripe : due) {
+                // Rescheduled first so a failed dispatch does not drop the stripe
+                stripe.deadline += stripe.periodTicks;
+                wheel.schedule(stripe.deadline, stripe);
+                dispatch(stripe);
+            }
+        } finally {
+            due.clear();
+        }
+    }
+
+    private void dispatch(Stripe stripe) {
+        if (stripe.pendingChunks.get() > 0) {
+            skippedFirings.incrementAndGet();
+            return;
+        }
+        int chunks = (stripe.to - stripe.from + CHUNK_SIZE) / CHUNK_SIZE;
+        stripe.pendingChunks.set(chunks);
+        for (int from = stripe.from; from <= stripe.to; from += CHUNK_SIZE) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(stripe.to, from + CHUNK_SIZE - 1);
+            inFlight.register();
+            workers.execute(() -> {
+                try {
+                    stripe.generator.generateBatch(chunkFrom, chunkTo, outputStrategy);
+                } finally {
+                    stripe.pendingChunks.decrementAndGet();
+                    inFlight.arriveAndDeregister();
+                }
+            });
+        }
+    }
+
+    /**
+     * A contiguous range of patients sharing one signal and one phase.
+     */
+    private static final class Stripe {
+        private final PatientDataGenerator generator;
+        private final int from;
+        private final int to;
+        private final long periodTicks;
+        private final AtomicInteger pendingChunks = new AtomicInteger();
+        private long deadline;
+
+        private Stripe(PatientDataGenerator generator, int from, int to, long periodTicks) {
+            this.generator = generator;
+            this.from = from;
+            this.to = to;
+            this.periodTicks = periodTicks;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cardio_generator.scheduling;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads without requiring a Java 21 compile target.
+ * <p>
+ * The project is compiled for Java 11, so the virtual-thread executor is
+ * looked up reflectively and is only available when the simulator runs on
+ * Java 21 or newer (see the {@code java21} Maven profile).
+ */
+public final class VirtualThreads {
+
+    /** {@code Executors.newVirtualThreadPerTaskExecutor()}, or null before Java 21. */
+    private static final Method NEW_EXECUTOR = findExecutorFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return a virtual-thread-per-task executor
+     * @throws UnsupportedOperationException if the JVM is older than Java 21
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    private static Method findExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.data_management;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the binary wire format of the simulator's network outputs and adds
+ * the numeric readings to a DataStorage.
+ * <p>
+ * The stream is a sequence of frames, each an unsigned LEB128 varint body
+ * length followed by the body. The body holds records that start with a
+ * tag byte:
+ * <pre>
+ *   0 LABEL    varint labelId, varint length, UTF-8 name
+ *   1 NUMERIC  varint patientId, zigzag varint timestamp delta, varint labelId,
+ *              8-byte IEEE 754 value (big-endian)
+ *   2 TEXT     varint patientId, zigzag varint timestamp delta, varint labelId,
+ *              varint length, UTF-8 text
+ * </pre>
+ * Label definitions and timestamp deltas only reach to the end of their
+ * frame. Text readings such as alert states are skipped, as the storage
+ * only holds numeric values.
+ * <p>
+ * Lengths and label IDs come from the peer, so they are checked before
+ * anything is allocated for them: a frame may be at most
+ * {@link #DEFAULT_MAX_FRAME_BYTES} long unless configured otherwise, and a
+ * label ID at most {@value #MAX_LABEL_ID}.
+ * <p>
+ * TCP clients select the format by sending {@code mode binary}, and the
+ * frames start after the server's {@code mode binary} answer line. WebSocket
+ * clients send the same command and receive one frame per binary message,
+ * which {@link #readFrame(ByteBuffer, DataStorage)} decodes.
+ */
+public class BinaryDataReader implements DataReader {
+
+    private static final int LABEL = 0;
+    private static final int NUMERIC = 1;
+    private static final int TEXT = 2;
+
+    /** Default largest frame body accepted, in bytes: 16 MiB. */
+    public static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    /** Largest label ID accepted; the simulator uses a handful. */
+    static final int MAX_LABEL_ID = 0xFFFF;
+
+    private final InputStream in;
+    private final int maxFrameBytes;
+    private byte[] body = new byte[4096];
+    private int[] recordTypes = new int[16]; // frame label ID -> RecordTypes code, -1 if undefined
+
+    /**
+     * @param in stream positioned at a frame boundary
+     */
+    public BinaryDataReader(InputStream in) {
+        this(in, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * @param in            stream positioned at a frame boundary
+     * @param maxFrameBytes largest frame body accepted; longer frames are
+     *                      rejected as malformed
+     */
+    public BinaryDataReader(InputStream in, int maxFrameBytes) {
+        this.in = in;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Reads frames until the end of the stream.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if reading fails or a frame is malformed
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return; // clean end between frames
+            }
+            int length = readVarint(first);
+            if (body.length < length) {
+                body = new byte[Math.max(length, body.length * 2)];
+            }
+            int read = 0;
+            while (read < length) {
+                int n = in.read(body, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("Stream ended inside a frame");
+                }
+                read += n;
+            }
+            decode(ByteBuffer.wrap(body, 0, length), dataStorage);
+        }
+    }
+
+    /**
+     * Decodes a single frame, including its length prefix, e.g. one
+     * WebSocket binary message.
+     *
+     * @param frame       the frame; its position is advanced past it
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the frame is malformed
+     */
+    public void readFrame(ByteBuffer frame, DataStorage dataStorage) throws IOException {
+        int length;
+        try {
+            length = readLength(frame, maxFrameBytes, "Frame length");
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed frame length", e);
+        }
+        if (length > frame.remaining()) {
+            throw new IOException("Frame length " + length + " exceeds the " + frame.remaining() + " bytes given");
+        }
+        ByteBuffer bodyView = frame.slice();
+        bodyView.limit(length);
+        frame.position(frame.position() + length);
+        decode(bodyView, dataStorage);
+    }
+
+    private void decode(ByteBuffer frame, DataStorage dataStorage) throws IOException {
+        Arrays.fill(recordTypes, -1);
+        long timestamp = 0;
+        try {
+            while (frame.hasRemaining()) {
+                int tag = frame.get();
+                if (tag == LABEL) {
+                    int id = readLength(frame, MAX_LABEL_ID, "Label ID");
+                    String name = readString(frame);
+                    if (id >= recordTypes.length) {
+                        int old = recordTypes.length;
+                        recordTypes = Arrays.copyOf(recordTypes, Math.max(id + 1, old * 2));
+                        Arrays.fill(recordTypes, old, recordTypes.length, -1);
+                    }
+                    recordTypes[id] = RecordTypes.codeOf(name);
+                    continue;
+                }
+                if (tag != NUMERIC && tag != TEXT) {
+                    throw new IOException("Unknown record tag " + tag);
+                }
+                int patientId = (int) readVarLong(frame);
+                long zigzag = readVarLong(frame);
+                timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                int labelId = readLength(frame, MAX_LABEL_ID, "Label ID");
+                if (labelId >= recordTypes.length || recordTypes[labelId] < 0) {
+                    throw new IOException("Label " + labelId + " used before its definition");
+                }
+                if (tag == NUMERIC) {
+                    double value = Double.longBitsToDouble(frame.getLong());
+                    dataStorage.addPatientData(patientId, value, recordTypes[labelId], timestamp);
+                } else {
+                    int length = readLength(frame, frame.remaining(), "Text length");
+                    frame.position(frame.position() + length); // text readings are not stored
+                }
+            }
+        } catch (RuntimeException e) {
+            // BufferUnderflowException or IllegalArgumentException from a truncated record
+            throw new IOException("Malformed frame", e);
+        }
+    }
+
+    private int readVarint(int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Stream ended inside a frame length");
+            }
+            if (shift > 28) {
+                throw new IOException("Frame length too long");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        if (value > maxFrameBytes) {
+            throw new IOException("Frame length " + value + " exceeds the limit of " + maxFrameBytes);
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    /**
+     * Reads a varint that must lie in [0, max].
+     *
+     * @param what names the field in the error message
+     */
+    private static int readLength(ByteBuffer buffer, long max, String what) throws IOException {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > max) {
+            throw new IOException(what + " " + value + " is out of range [0, " + max + "]");
+        }
+        return (int) value;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = readLength(buffer, buffer.remaining(), "String length");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
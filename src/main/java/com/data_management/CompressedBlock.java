@@ -0,0 +1,223 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed run of a series' readings in timestamp order,
+ * encoded as in Facebook's Gorilla time-series database.
+ * <p>
+ * The first reading is stored in full. After that, each timestamp is
+ * stored as the change in its distance to the previous one (delta of
+ * delta), which takes one bit at a constant sampling interval. Each value
+ * is stored as its XOR with the previous one, which takes one bit if the
+ * value repeats and only the differing middle bits otherwise.
+ */
+final class CompressedBlock {
+
+    final long firstTimestamp;
+    final long lastTimestamp;
+    final int count;
+    private final long[] bits;
+
+    private CompressedBlock(long firstTimestamp, long lastTimestamp, int count, long[] bits) {
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.count = count;
+        this.bits = bits;
+    }
+
+    /**
+     * Encodes the readings in [from, to) of a pair of columns, which must
+     * be in timestamp order and not empty.
+     */
+    static CompressedBlock encode(long[] timestamps, double[] values, int from, int to) {
+        BitWriter out = new BitWriter(to - from);
+        long previousTimestamp = timestamps[from];
+        long previousDelta = 0;
+        long previousValue = Double.doubleToRawLongBits(values[from]);
+        int leading = -1; // window of the last stored XOR, none yet
+        int trailing = 0;
+        out.write(previousTimestamp, 64);
+        out.write(previousValue, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write((0b10L << 7) | (deltaOfDelta + 63), 9);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.write((0b110L << 9) | (deltaOfDelta + 255), 12);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write((0b1110L << 12) | (deltaOfDelta + 2047), 16);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long value = Double.doubleToRawLongBits(values[i]);
+            long xor = value ^ previousValue;
+            previousValue = value;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int xorLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int xorTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && xorLeading >= leading && xorTrailing >= trailing) {
+                // Fits the previous window: store only its bits
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                leading = xorLeading;
+                trailing = xorTrailing;
+                int meaningful = 64 - leading - trailing;
+                out.write((0b11L << 11) | ((long) leading << 6) | (meaningful - 1), 13);
+                out.write(xor >>> trailing, meaningful);
+            }
+        }
+        return new CompressedBlock(timestamps[from], timestamps[to - 1], to - from, out.toArray());
+    }
+
+    /**
+     * Decodes all readings into a pair of columns of at least {@link #count}
+     * elements.
+     */
+    void decode(long[] timestamps, double[] values) {
+        Decoder decoder = decoder();
+        int i = 0;
+        do {
+            timestamps[i] = decoder.timestamp();
+            values[i] = decoder.value();
+            i++;
+        } while (decoder.advance());
+    }
+
+    /**
+     * @return a decoder positioned at the first reading
+     */
+    Decoder decoder() {
+        return new Decoder();
+    }
+
+    /**
+     * @return approximate heap size of the block in bytes
+     */
+    long bytes() {
+        return 16 + 8 + 8 + 4 + 16 + bits.length * 8L;
+    }
+
+    /**
+     * Walks the readings of a block one at a time.
+     */
+    final class Decoder {
+        private int position; // in bits
+        private int index;
+        private long timestamp;
+        private long delta;
+        private long valueBits;
+        private int leading;
+        private int trailing;
+
+        private Decoder() {
+            timestamp = read(64);
+            valueBits = read(64);
+        }
+
+        int index() {
+            return index;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        double value() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        /**
+         * Moves to the next reading.
+         *
+         * @return false if the block has no more readings
+         */
+        boolean advance() {
+            if (index + 1 >= count) {
+                return false;
+            }
+            index++;
+            long deltaOfDelta;
+            if (read(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(7) - 63;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(9) - 255;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(12) - 2047;
+            } else {
+                deltaOfDelta = read(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (read(1) != 0) {
+                if (read(1) != 0) {
+                    leading = (int) read(5);
+                    int meaningful = (int) read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                valueBits ^= read(64 - leading - trailing) << trailing;
+            }
+            return true;
+        }
+
+        /** Reads 1 to 64 bits as an unsigned number. */
+        private long read(int n) {
+            int word = position >>> 6;
+            int used = position & 63;
+            long result = (bits[word] << used) >>> (64 - n);
+            int spill = n - (64 - used);
+            if (spill > 0) {
+                result |= bits[word + 1] >>> (64 - spill);
+            }
+            position += n;
+            return result;
+        }
+    }
+
+    private static final class BitWriter {
+        private long[] words;
+        private int position; // in bits
+
+        private BitWriter(int readings) {
+            // Room for regular readings; grows for noisy ones
+            words = new long[Math.max(4, readings / 16 + 3)];
+        }
+
+        /** Writes the low {@code n} bits of a value, 1 to 64. */
+        private void write(long value, int n) {
+            if (n < 64) {
+                value &= (1L << n) - 1;
+            }
+            int word = position >>> 6;
+            int free = 64 - (position & 63);
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (n <= free) {
+                words[word] |= value << (free - n);
+            } else {
+                words[word] |= value >>> (n - free);
+                words[word + 1] = value << (64 - (n - free));
+            }
+            position += n;
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(words, (position + 63) >>> 6);
+        }
+    }
+}
@@ -1,26 +1,78 @@
 package com.data_management;
 
 import com.alerts.AlertGenerator;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Acts as the primary repository and manager of patient records. This class
  * is responsible for keeping track of all patient data and provides the
  * functionalities necessary to add, retrieve, and manage patient records.
+ * <p>
+ * The storage is thread-safe. Patients are created once through the
+ * concurrent map and each patient serializes only its own writers, so
+ * threads ingesting different patients do not contend. Reads never block
+ * and return a snapshot of the records added before the call.
+ * <p>
+ * With a {@link DeletionPolicy}, expired records are dropped as new ones
+ * arrive, and {@link #purgeOldData()} drops those of series that stopped
+ * receiving readings. It can run on a background thread, see
+ * {@link #startPurging(long)}; like any reader it never blocks ingestion of
+ * other patients, and holds each patient's lock only while moving the start
+ * of its series.
+ * <p>
+ * With a {@link WriteAheadLog} attached, every reading is logged before it
+ * is stored, and {@link #snapshot()} saves all patients so a restart only
+ * replays the log written since.
  */
 public class DataStorage {
 
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final ConcurrentHashMap<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final DeletionPolicy deletionPolicy; // null keeps everything
+    private final boolean rollups;
+    private volatile WriteAheadLog log;
+    private ScheduledExecutorService background; // purging and snapshots
+    private ScheduledFuture<?> purging;
+    private ScheduledFuture<?> snapshots;
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
      * structure.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
+        this(null);
+    }
+
+    /**
+     * Constructs a storage that keeps records only as long as a policy says.
+     *
+     * @param deletionPolicy decides how long records are kept, or null to keep
+     *                       them forever
+     */
+    public DataStorage(DeletionPolicy deletionPolicy) {
+        this(deletionPolicy, false);
+    }
+
+    /**
+     * Constructs a storage that optionally keeps rollups of its records for
+     * long-range queries, see {@link #getRollups(int, String, long, long, long)}.
+     *
+     * @param deletionPolicy decides how long records are kept, or null to keep
+     *                       them forever
+     * @param rollups        true to summarize every record type per second,
+     *                       minute and hour as records arrive
+     */
+    public DataStorage(DeletionPolicy deletionPolicy, boolean rollups) {
+        this.patientMap = new ConcurrentHashMap<>();
+        this.deletionPolicy = deletionPolicy;
+        this.rollups = rollups;
     }
 
     /**
@@ -34,12 +86,66 @@ public class DataStorage {
      * @param timestamp        the time at which the measurement was taken, in milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordTypes.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data whose record type is already dictionary-encoded, as
+     * readers do once per label rather than once per reading.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the type of record as a {@link RecordTypes} code
+     * @param timestamp        the time at which the measurement was taken, in milliseconds since the Unix epoch
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordType, long timestamp) {
+        Patient patient = patient(patientId);
+        WriteAheadLog current = log;
+        if (current == null) {
+            patient.addRecord(measurementValue, recordType, timestamp);
+            return;
+        }
+        // Logged and stored under the patient's lock, so a snapshot sees both or neither
+        synchronized (patient) {
+            current.append(patientId, recordType, timestamp, measurementValue);
+            patient.addRecord(measurementValue, recordType, timestamp);
+        }
+    }
+
+    /**
+     * Adds a run of one patient's readings of one type, taking the patient's
+     * lock once rather than once per reading, as bulk readers do.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of the readings as a {@link RecordTypes} code
+     * @param timestamps the readings' timestamps, in milliseconds since the Unix epoch
+     * @param values     the readings' values
+     * @param count      number of readings to add from the start of the arrays
+     */
+    public void addPatientData(int patientId, int recordType, long[] timestamps, double[] values, int count) {
+        Patient patient = patient(patientId);
+        WriteAheadLog current = log;
+        if (current == null) {
+            patient.addRecords(recordType, timestamps, values, count);
+            return;
+        }
+        synchronized (patient) {
+            for (int i = 0; i < count; i++) {
+                current.append(patientId, recordType, timestamps[i], values[i]);
+            }
+            patient.addRecords(recordType, timestamps, values, count);
+        }
+    }
+
+    /**
+     * @return the patient with an ID, created if it is new
+     */
+    Patient patient(int patientId) {
         Patient patient = patientMap.get(patientId);
         if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            patient = patientMap.computeIfAbsent(patientId, id -> new Patient(id, deletionPolicy, rollups));
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        return patient;
     }
 
     /**
@@ -59,6 +165,59 @@ public class DataStorage {
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Retrieves the records of one type for a specific patient, filtered by a
+     * time range. Only that type's readings are searched.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix epoch
+     * @return the matching records in timestamp order
+     */
+    public List<PatientRecord> getRecords(int patientId, String recordType, long startTime, long endTime) {
+        return getRecords(patientId, RecordTypes.codeOf(recordType), startTime, endTime);
+    }
+
+    /**
+     * Retrieves the records of one type for a specific patient, filtered by a
+     * time range.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record as a {@link RecordTypes} code
+     * @param startTime  the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix epoch
+     * @return the matching records in timestamp order
+     */
+    public List<PatientRecord> getRecords(int patientId, int recordType, long startTime, long endTime) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getRecords(recordType, startTime, endTime);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Summarizes the records of one type for a specific patient in buckets of
+     * a given resolution, e.g. a week of saturation at one bucket per hour.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the type of record, e.g., "Saturation"
+     * @param startTime        the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime          the end of the time range, in milliseconds since the Unix epoch
+     * @param resolutionMillis width of the buckets in milliseconds
+     * @return the buckets overlapping the time range, in timestamp order
+     * @see Patient#getRollups(String, long, long, long)
+     */
+    public List<Rollup> getRollups(int patientId, String recordType, long startTime, long endTime,
+            long resolutionMillis) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getRollups(recordType, startTime, endTime, resolutionMillis);
+        }
+        return new ArrayList<>();
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
@@ -68,6 +227,148 @@ public class DataStorage {
         return new ArrayList<>(patientMap.values());
     }
 
+    /**
+     * Removes expired records, measuring their age from the newest record in
+     * the storage.
+     *
+     * @return number of records removed
+     */
+    public long purgeOldData() {
+        long now = Long.MIN_VALUE;
+        for (Patient patient : patientMap.values()) {
+            now = Math.max(now, patient.getNewestTimestamp());
+        }
+        return purgeOldData(now);
+    }
+
+    /**
+     * Removes the records that have expired at a given time.
+     *
+     * @param now the current time of the readings' time line
+     * @return number of records removed
+     */
+    public long purgeOldData(long now) {
+        if (deletionPolicy == null || now == Long.MIN_VALUE) {
+            return 0;
+        }
+        long removed = 0;
+        for (Patient patient : patientMap.values()) {
+            removed += patient.purgeOldData(now);
+        }
+        return removed;
+    }
+
+    /**
+     * Runs {@link #purgeOldData()} periodically on a daemon thread until
+     * {@link #stopPurging()} is called.
+     *
+     * @param intervalMillis time between purges
+     */
+    public synchronized void startPurging(long intervalMillis) {
+        if (purging == null) {
+            purging = schedule(() -> {
+                purgeOldData();
+                return null;
+            }, "Purging old data", intervalMillis);
+        }
+    }
+
+    /**
+     * Stops the background purging started by {@link #startPurging(long)}.
+     */
+    public synchronized void stopPurging() {
+        if (purging != null) {
+            purging.cancel(false);
+            purging = null;
+        }
+    }
+
+    /**
+     * Recovers this storage from a write-ahead log, loading its newest
+     * snapshot and replaying the log after it, and then logs every reading
+     * added from now on.
+     *
+     * @param log the log to recover from and append to
+     * @return number of readings recovered
+     * @throws IOException if the log cannot be read or continued
+     */
+    public synchronized long attachLog(WriteAheadLog log) throws IOException {
+        if (this.log != null) {
+            throw new IllegalStateException("A write-ahead log is already attached");
+        }
+        long recovered = log.recover(this);
+        this.log = log;
+        return recovered;
+    }
+
+    /**
+     * Forces the readings logged so far to disk, so they survive a crash
+     * before the log's next periodic sync. Does nothing without a log.
+     *
+     * @throws IOException if writing the log fails
+     */
+    public void syncLog() throws IOException {
+        WriteAheadLog current = log;
+        if (current != null) {
+            current.sync();
+        }
+    }
+
+    /**
+     * Saves all patients to the attached log's directory, after which older
+     * log segments are deleted. Ingestion continues meanwhile.
+     *
+     * @return number of readings saved
+     * @throws IOException if writing the snapshot fails
+     */
+    public long snapshot() throws IOException {
+        WriteAheadLog current = log;
+        if (current == null) {
+            throw new IllegalStateException("No write-ahead log is attached");
+        }
+        return current.snapshot(this);
+    }
+
+    /**
+     * Runs {@link #snapshot()} periodically on a daemon thread until
+     * {@link #stopSnapshots()} is called.
+     *
+     * @param intervalMillis time between snapshots
+     */
+    public synchronized void startSnapshots(long intervalMillis) {
+        if (snapshots == null) {
+            snapshots = schedule(this::snapshot, "Writing a snapshot", intervalMillis);
+        }
+    }
+
+    /**
+     * Stops the background snapshots started by {@link #startSnapshots(long)}.
+     */
+    public synchronized void stopSnapshots() {
+        if (snapshots != null) {
+            snapshots.cancel(false);
+            snapshots = null;
+        }
+    }
+
+    private ScheduledFuture<?> schedule(Callable<?> task, String what, long intervalMillis) {
+        if (background == null) {
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "storage-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return background.scheduleWithFixedDelay(() -> {
+            try {
+                task.call();
+            } catch (Exception e) {
+                System.err.println(what + " failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * The main method for the DataStorage class.
      * Initializes the system, reads data into storage, and continuously monitors
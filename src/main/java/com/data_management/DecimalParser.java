@@ -0,0 +1,211 @@
+package com.data_management;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses decimal numbers straight from ASCII bytes, with the same result
+ * as {@link Double#parseDouble(String)} but without creating a String.
+ * <p>
+ * Numbers with up to 19 significant digits, which includes everything
+ * {@link Double#toString(double)} writes, are converted exactly: small ones
+ * with one floating-point multiplication or division, the others with the
+ * Eisel-Lemire algorithm (as in Go's strconv and the fast_float library),
+ * which multiplies the digits by a 128-bit approximation of the power of
+ * ten. In the rare cases that approximation cannot decide the rounding, and
+ * for other inputs such as {@code NaN}, the bytes are handed to
+ * {@link Double#parseDouble(String)}.
+ */
+final class DecimalParser {
+
+    private static final int MIN_EXPONENT = -342; // smaller powers round any 19 digits to 0
+    private static final int MAX_EXPONENT = 308;  // larger ones overflow
+
+    /** Powers of ten that doubles hold exactly. */
+    private static final double[] EXACT_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** High and low 64 bits of the normalized 128-bit mantissas of 10^q. */
+    private static final long[] POWER_HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    private static final long[] POWER_LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+    static {
+        // Truncated for positive powers, rounded up for negative ones, as fast_float's table
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+            BigInteger mantissa;
+            if (q >= 0) {
+                BigInteger power = BigInteger.valueOf(5).pow(q);
+                int shift = 128 - power.bitLength();
+                mantissa = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                BigInteger power = BigInteger.valueOf(5).pow(-q);
+                int z = power.subtract(BigInteger.ONE).bitLength(); // least z with 2^z >= 5^-q
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                mantissa = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                while (mantissa.compareTo(two128) >= 0) {
+                    mantissa = mantissa.shiftRight(1);
+                }
+            }
+            POWER_HIGH[q - MIN_EXPONENT] = mantissa.shiftRight(64).longValue();
+            POWER_LOW[q - MIN_EXPONENT] = mantissa.longValue();
+        }
+    }
+
+    private DecimalParser() {
+    }
+
+    /**
+     * Parses the bytes in [from, to) of a buffer.
+     *
+     * @throws NumberFormatException if they are not a number
+     */
+    static double parse(ByteBuffer in, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (in.get(i) == '-' || in.get(i) == '+')) {
+            negative = in.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0; // unsigned, up to 19 digits
+        int digits = 0;    // significant digits in the mantissa
+        int exponent = 0;
+        boolean seen = false;
+        for (; i < to; i++) {
+            int d = in.get(i) - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            seen = true;
+            if (digits == 19) {
+                return slowly(in, from, to);
+            }
+            if (mantissa != 0 || d != 0) {
+                mantissa = mantissa * 10 + d;
+                digits++;
+            }
+        }
+        if (i < to && in.get(i) == '.') {
+            for (i++; i < to; i++) {
+                int d = in.get(i) - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                seen = true;
+                if (digits == 19) {
+                    return slowly(in, from, to);
+                }
+                if (mantissa != 0 || d != 0) {
+                    mantissa = mantissa * 10 + d;
+                    digits++;
+                }
+                exponent--;
+            }
+        }
+        if (!seen) {
+            return slowly(in, from, to);
+        }
+        if (i < to && (in.get(i) == 'E' || in.get(i) == 'e')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (in.get(i) == '-' || in.get(i) == '+')) {
+                negativeExponent = in.get(i) == '-';
+                i++;
+            }
+            int written = 0;
+            int start = i;
+            for (; i < to && i - start < 5; i++) {
+                int d = in.get(i) - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                written = written * 10 + d;
+            }
+            if (i == start || (i < to && in.get(i) >= '0' && in.get(i) <= '9')) {
+                return slowly(in, from, to);
+            }
+            exponent += negativeExponent ? -written : written;
+        }
+        if (i != to) {
+            return slowly(in, from, to);
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (mantissa > 0 && mantissa <= 1L << 53 && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact, so the one rounding is the correct one
+            double value = exponent < 0 ? mantissa / EXACT_POWERS[-exponent] : mantissa * EXACT_POWERS[exponent];
+            return negative ? -value : value;
+        }
+        double value = eiselLemire(mantissa, exponent, negative);
+        return Double.isNaN(value) ? slowly(in, from, to) : value;
+    }
+
+    /**
+     * Computes mantissa * 10^exponent rounded to the nearest double.
+     *
+     * @param mantissa a non-zero unsigned number
+     * @return the result, or NaN if it cannot be decided this way
+     */
+    private static double eiselLemire(long mantissa, int exponent, boolean negative) {
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            return Double.NaN;
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= leadingZeros;
+        long binaryExponent = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros; // 217706 / 2^16 ~ log2(10)
+        long powerHigh = POWER_HIGH[exponent - MIN_EXPONENT];
+        long powerLow = POWER_LOW[exponent - MIN_EXPONENT];
+
+        long high = unsignedMultiplyHigh(mantissa, powerHigh);
+        long low = mantissa * powerHigh;
+        if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + mantissa, mantissa) < 0) {
+            // The truncated bits could carry into the result: take the next 64 bits of the power
+            long nextHigh = unsignedMultiplyHigh(mantissa, powerLow);
+            long nextLow = mantissa * powerLow;
+            long mergedHigh = high;
+            long mergedLow = low + nextHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow == -1
+                    && Long.compareUnsigned(nextLow + mantissa, mantissa) < 0) {
+                return Double.NaN;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+
+        long topBit = high >>> 63;
+        long result = high >>> (topBit + 9); // 54 bits
+        binaryExponent -= 1 ^ topBit;
+        if (low == 0 && (high & 0x1FF) == 0 && (result & 3) == 1) {
+            return Double.NaN; // exactly halfway between two doubles
+        }
+        result += result & 1;
+        result >>>= 1;
+        if ((result >>> 53) > 0) {
+            result >>>= 1;
+            binaryExponent++;
+        }
+        if (binaryExponent <= 0 || binaryExponent >= 0x7FF) {
+            return Double.NaN; // subnormal or infinite
+        }
+        long bits = binaryExponent << 52 | (result & 0x000F_FFFF_FFFF_FFFFL);
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    private static double slowly(ByteBuffer in, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (in.get(from + i) & 0xFF);
+        }
+        return Double.parseDouble(new String(chars));
+    }
+}
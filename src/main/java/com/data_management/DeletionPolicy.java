@@ -0,0 +1,100 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Decides how long the storage keeps readings, per record type.
+ * <p>
+ * A reading expires once it is older than its type's retention period,
+ * measured from the newest reading of the same type and patient when
+ * readings arrive, and from the storage's newest reading when
+ * {@link DataStorage#purgeOldData()} runs. Retention therefore follows the
+ * readings' own time line, simulated or not. Types without a retention of
+ * their own use the default, which keeps readings forever unless set.
+ */
+public class DeletionPolicy {
+
+    /** Retention that never expires a reading. */
+    public static final long KEEP_FOREVER = Long.MAX_VALUE;
+
+    private final long defaultRetentionMillis;
+    private volatile long[] retentionByType = new long[0]; // RecordTypes code -> millis, 0 for the default
+
+    /**
+     * Creates a policy that keeps everything until retention periods are set.
+     */
+    public DeletionPolicy() {
+        this(KEEP_FOREVER);
+    }
+
+    /**
+     * @param defaultRetentionMillis retention of types without one of their own
+     */
+    public DeletionPolicy(long defaultRetentionMillis) {
+        if (defaultRetentionMillis <= 0) {
+            throw new IllegalArgumentException("Retention must be positive: " + defaultRetentionMillis);
+        }
+        this.defaultRetentionMillis = defaultRetentionMillis;
+    }
+
+    /**
+     * Sets the retention of one record type, e.g. 10 minutes for "ECG".
+     *
+     * @param recordType      the record type
+     * @param retentionMillis how long its readings are kept
+     * @return this policy
+     */
+    public DeletionPolicy setRetention(String recordType, long retentionMillis) {
+        return setRetention(RecordTypes.codeOf(recordType), retentionMillis);
+    }
+
+    /**
+     * Sets the retention of one record type.
+     *
+     * @param recordType      the record type as a {@link RecordTypes} code
+     * @param retentionMillis how long its readings are kept
+     * @return this policy
+     */
+    public synchronized DeletionPolicy setRetention(int recordType, long retentionMillis) {
+        if (retentionMillis <= 0) {
+            throw new IllegalArgumentException("Retention must be positive: " + retentionMillis);
+        }
+        long[] grown = Arrays.copyOf(retentionByType, Math.max(retentionByType.length, recordType + 1));
+        grown[recordType] = retentionMillis;
+        retentionByType = grown;
+        return this;
+    }
+
+    /**
+     * @param recordType the record type as a {@link RecordTypes} code
+     * @return how long readings of that type are kept, in milliseconds
+     */
+    public long getRetention(int recordType) {
+        long[] current = retentionByType;
+        long retention = recordType < current.length ? current[recordType] : 0;
+        return retention != 0 ? retention : defaultRetentionMillis;
+    }
+
+    /**
+     * @param recordType the record type as a {@link RecordTypes} code
+     * @param now        the current time of the readings' time line
+     * @return the oldest timestamp still kept, or Long.MIN_VALUE if the
+     *         type's readings never expire
+     */
+    public long cutoff(int recordType, long now) {
+        long retention = getRetention(recordType);
+        if (retention == KEEP_FOREVER || now == Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return now - retention;
+    }
+
+    /**
+     * @param record the record to check
+     * @param now    the current time of the readings' time line
+     * @return true if the record is older than its type's retention
+     */
+    public boolean isExpired(PatientRecord record, long now) {
+        return record.getTimestamp() < cutoff(record.getRecordTypeCode(), now);
+    }
+}
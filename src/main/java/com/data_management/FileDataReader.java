@@ -1,8 +1,16 @@
 package com.data_management;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.Properties;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Reads all “<label>.txt” files from a base directory, parses each
@@ -11,20 +19,41 @@ import java.util.stream.Stream;
  *   Patient ID: <id>, Timestamp: <ts>, Label: <label>, Data: <value>
  *
  * and adds it into the supplied DataStorage.
+ *
+ * GZIP-compressed segments “<label>-NNNNNN.txt.gz” written by the rotating
+ * file output are read as well. With a time window, a segment whose
+ * “.idx” sidecar shows no overlap with the window is not opened at all.
  */
 public class FileDataReader implements DataReader {
     private final Path baseDir;
+    private final long startTime;
+    private final long endTime;
     private DataStorage storage;  // holds the DataStorage instance during a read
+    private String lastLabel;     // files hold one label each, so its code is looked up once per file
+    private int lastRecordType;
 
     /**
      * @param baseDirectory the directory where the simulator wrote its .txt files
      */
     public FileDataReader(String baseDirectory) {
+        this(baseDirectory, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the records within a time window.
+     *
+     * @param baseDirectory the directory where the simulator wrote its files
+     * @param startTime     start of the window, inclusive
+     * @param endTime       end of the window, inclusive
+     */
+    public FileDataReader(String baseDirectory, long startTime, long endTime) {
         this.baseDir = Paths.get(baseDirectory); //
+        this.startTime = startTime;
+        this.endTime = endTime;
     }
 
     /**
-     * Walks through every .txt file in baseDir, parses each line
+     * Walks through every .txt and .txt.gz file in baseDir, parses each line
      * and calls storage.addPatientData(...)
      */
     @Override
@@ -34,7 +63,9 @@ public class FileDataReader implements DataReader {
 
         try (Stream<Path> files = Files.list(baseDir)) {
             files
-                    .filter(p -> p.toString().endsWith(".txt"))
+                    .filter(p -> p.toString().endsWith(".txt") || p.toString().endsWith(".txt.gz"))
+                    .sorted()
+                    .filter(this::overlapsWindow)
                     .forEach(this::processFile);
         } catch (IOException e) {
             throw new RuntimeException("Failed to list files in " + baseDir, e);
@@ -42,6 +73,10 @@ public class FileDataReader implements DataReader {
     }
 
     private void processFile(Path file) {
+        if (file.toString().endsWith(".gz")) {
+            processSegment(file);
+            return;
+        }
         try (Stream<String> lines = Files.lines(file)) {
             lines.forEach(this::parseAndStore);
         } catch (IOException e) {
@@ -49,12 +84,51 @@ public class FileDataReader implements DataReader {
         }
     }
 
+    private void processSegment(Path file) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new OpenSegmentInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                parseAndStore(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + file, e);
+        }
+    }
+
+    /**
+     * Checks a segment's sidecar; plain files and segments without one are
+     * always read.
+     */
+    private boolean overlapsWindow(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(".txt.gz") || (startTime == Long.MIN_VALUE && endTime == Long.MAX_VALUE)) {
+            return true;
+        }
+        Path index = file.resolveSibling(name.substring(0, name.length() - ".txt.gz".length()) + ".idx");
+        if (!Files.exists(index)) {
+            return true;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(index)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + index, e);
+        }
+        long min = Long.parseLong(properties.getProperty("minTimestamp"));
+        long max = Long.parseLong(properties.getProperty("maxTimestamp"));
+        return max >= startTime && min <= endTime;
+    }
+
     private void parseAndStore(String line) {
         // Expected format:
         //   Patient ID: 1, Timestamp: 12345, Label: Foo, Data: 3.14
         String[] parts = line.split(",\\s*");
         int patientId    = Integer.parseInt(parts[0].split(":\\s*")[1]);
         long timestamp   = Long.parseLong(parts[1].split(":\\s*")[1]);
+        if (timestamp < startTime || timestamp > endTime) {
+            return;
+        }
         String label     = parts[2].split(":\\s*")[1];
         String dataStr   = parts[3].split(":\\s*")[1].replace("%", "");
 
@@ -66,7 +140,32 @@ public class FileDataReader implements DataReader {
             value = Double.parseDouble(dataStr);
         }
 
+        if (!label.equals(lastLabel)) {
+            lastLabel = label;
+            lastRecordType = RecordTypes.codeOf(label);
+        }
+
         // now that `this.storage` is set, we can store the parsed record
-        this.storage.addPatientData(patientId, value, label, timestamp);
+        this.storage.addPatientData(patientId, value, lastRecordType, timestamp);
+    }
+
+    /**
+     * Reads a GZIP segment, taking the end of a segment that is still being
+     * written, which has no GZIP trailer yet, as the end of the stream. The
+     * records decoded before it are kept.
+     */
+    private static final class OpenSegmentInputStream extends GZIPInputStream {
+        private OpenSegmentInputStream(InputStream in) throws IOException {
+            super(in, 64 * 1024);
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            try {
+                return super.read(buf, off, len);
+            } catch (EOFException e) {
+                return -1;
+            }
+        }
     }
 }
@@ -0,0 +1,326 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the same “<label>.txt” files as {@link FileDataReader}, for large
+ * amounts of simulator output.
+ * <p>
+ * Each file is memory-mapped in chunks that end at a line break, and the
+ * chunks are parsed in parallel on a fork-join pool. Fields are parsed
+ * straight from the mapped bytes by a {@link RecordLineParser}, so no
+ * String is created per line. Each chunk groups its readings by
+ * patient and type, and the groups are added to the storage in batches.
+ * <p>
+ * Chunks are processed a window at a time: the window's chunks are parsed
+ * in parallel, then its patients are stored in parallel, each patient's
+ * batches in file order, so a series receives its readings in the order
+ * they were written and memory stays bounded by the window.
+ * <p>
+ * Lines whose data is not a number, such as alert states, are skipped and
+ * counted, as are malformed lines. Compressed segments are not read; use
+ * {@link FileDataReader} for those.
+ */
+public class MappedFileDataReader implements DataReader {
+
+    private static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    private final Path baseDir;
+    private final long startTime;
+    private final long endTime;
+    private final int parallelism;
+    private final int chunkBytes;
+    private final AtomicLong skippedLines = new AtomicLong();
+
+    /**
+     * @param baseDirectory the directory where the simulator wrote its .txt files
+     */
+    public MappedFileDataReader(String baseDirectory) {
+        this(baseDirectory, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the records within a time window.
+     *
+     * @param baseDirectory the directory where the simulator wrote its files
+     * @param startTime     start of the window, inclusive
+     * @param endTime       end of the window, inclusive
+     */
+    public MappedFileDataReader(String baseDirectory, long startTime, long endTime) {
+        this(baseDirectory, startTime, endTime, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads only the records within a time window, on a given number of
+     * threads.
+     *
+     * @param baseDirectory the directory where the simulator wrote its files
+     * @param startTime     start of the window, inclusive
+     * @param endTime       end of the window, inclusive
+     * @param parallelism   number of threads parsing and storing
+     */
+    public MappedFileDataReader(String baseDirectory, long startTime, long endTime, int parallelism) {
+        this(baseDirectory, startTime, endTime, parallelism, DEFAULT_CHUNK_BYTES);
+    }
+
+    MappedFileDataReader(String baseDirectory, long startTime, long endTime, int parallelism, int chunkBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.baseDir = Paths.get(baseDirectory);
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.parallelism = parallelism;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Reads every .txt file in the base directory into a storage.
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(baseDir)) {
+            paths = files.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        List<FileChannel> channels = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Chunk> chunks = new ArrayList<>();
+            for (Path path : paths) {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                channels.add(channel);
+                split(path, channel, chunks);
+            }
+            int window = parallelism * 4;
+            for (int from = 0; from < chunks.size(); from += window) {
+                List<Chunk> parsed = chunks.subList(from, Math.min(chunks.size(), from + window));
+                await(pool.invokeAll(parsed));
+                await(pool.invokeAll(storeTasks(parsed, dataStorage)));
+                for (Chunk chunk : parsed) {
+                    skippedLines.addAndGet(chunk.skipped);
+                    chunk.batches = null; // parsed readings are stored, let them go
+                }
+            }
+        } finally {
+            pool.shutdown();
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @return number of lines skipped so far because they held no numeric
+     *         reading
+     */
+    public long getSkippedLines() {
+        return skippedLines.get();
+    }
+
+    /**
+     * Cuts a file into chunks of about {@link #chunkBytes} that each end
+     * just after a line break, or at the end of the file.
+     */
+    private void split(Path path, FileChannel channel, List<Chunk> chunks) throws IOException {
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(512);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkBytes);
+            while (end < size) {
+                probe.clear();
+                int n = channel.read(probe, end);
+                int newline = -1;
+                for (int i = 0; i < n && newline < 0; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += n;
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException(path + " has a line longer than 2 GiB");
+            }
+            chunks.add(new Chunk(path, channel, start, (int) (end - start)));
+            start = end;
+        }
+    }
+
+    /**
+     * Makes the tasks storing a window's readings: one group of patients
+     * per task, each patient's batches in chunk order.
+     */
+    private List<Callable<Void>> storeTasks(List<Chunk> chunks, DataStorage dataStorage) {
+        Map<Integer, List<Batch>> byPatient = new LinkedHashMap<>();
+        for (Chunk chunk : chunks) {
+            for (Batch batch : chunk.batches) {
+                byPatient.computeIfAbsent(batch.patientId, id -> new ArrayList<>()).add(batch);
+            }
+        }
+        List<List<Batch>> patients = new ArrayList<>(byPatient.values());
+        int tasks = Math.min(patients.size(), parallelism * 4);
+        List<Callable<Void>> result = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            List<List<Batch>> group = patients.subList(t * patients.size() / tasks, (t + 1) * patients.size() / tasks);
+            result.add(() -> {
+                for (List<Batch> batches : group) {
+                    for (Batch batch : batches) {
+                        dataStorage.addPatientData(batch.patientId, batch.recordType,
+                                batch.timestamps, batch.values, batch.size);
+                    }
+                }
+                return null;
+            });
+        }
+        return result;
+    }
+
+    private static void await(List<? extends Future<?>> futures) throws IOException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * A line-aligned part of a file, parsed into batches of readings.
+     */
+    private final class Chunk implements Callable<Void> {
+        private final Path path;
+        private final FileChannel channel;
+        private final long offset;
+        private final int length;
+        private List<Batch> batches = new ArrayList<>();
+        private Batch[] table = new Batch[64]; // open addressing by patient and type
+        private int skipped;
+
+        private Chunk(Path path, FileChannel channel, long offset, int length) {
+            this.path = path;
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            RecordLineParser parser = new RecordLineParser(startTime, endTime);
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                while (end < length && buffer.get(end) != '\n') {
+                    end++;
+                }
+                int last = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+                if (last > start) {
+                    int result = parser.parse(buffer, start, last);
+                    if (result == RecordLineParser.READING) {
+                        batch(parser.patientId, parser.recordType).add(parser.timestamp, parser.value);
+                    } else if (result == RecordLineParser.SKIPPED) {
+                        skipped++;
+                    }
+                }
+                start = end + 1;
+            }
+            table = null;
+            return null;
+        }
+
+        private Batch batch(int patientId, int recordType) {
+            int mask = table.length - 1;
+            int i = slot(patientId, recordType) & mask;
+            for (Batch batch; (batch = table[i]) != null; i = (i + 1) & mask) {
+                if (batch.patientId == patientId && batch.recordType == recordType) {
+                    return batch;
+                }
+            }
+            Batch batch = new Batch(patientId, recordType);
+            table[i] = batch;
+            batches.add(batch);
+            if (batches.size() * 2 > table.length) {
+                table = new Batch[table.length * 2];
+                for (Batch b : batches) {
+                    int j = slot(b.patientId, b.recordType) & (table.length - 1);
+                    while (table[j] != null) {
+                        j = (j + 1) & (table.length - 1);
+                    }
+                    table[j] = b;
+                }
+            }
+            return batch;
+        }
+
+        private int slot(int patientId, int recordType) {
+            int hash = (patientId * 0x9E3779B9) ^ recordType;
+            return hash ^ (hash >>> 16);
+        }
+
+        @Override
+        public String toString() {
+            return path + "@" + offset;
+        }
+    }
+
+    /**
+     * One patient's readings of one type from a chunk, in file order.
+     */
+    private static final class Batch {
+        private final int patientId;
+        private final int recordType;
+        private long[] timestamps = new long[64];
+        private double[] values = new double[64];
+        private int size;
+
+        private Batch(int patientId, int recordType) {
+            this.patientId = patientId;
+            this.recordType = recordType;
+        }
+
+        private void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+    }
+}
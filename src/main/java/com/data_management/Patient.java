@@ -1,16 +1,33 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Represents a single patient and holds all of their recorded vitals.
+ * <p>
+ * Readings are kept per record type in a {@link TimeSeries}: primitive
+ * timestamp and value columns in time order for recent readings, and
+ * compressed blocks for older ones, so range queries are binary searches
+ * and a reading costs 16 bytes at most. {@link PatientRecord} objects are
+ * only created when a returned list is read. Series are found by their
+ * {@link RecordTypes} code with an array lookup.
+ * <p>
+ * Writers add records one at a time under the patient's monitor; readers
+ * never lock and get snapshots of the records published before the call.
+ * With a {@link DeletionPolicy}, each added record also drops the expired
+ * records of its type, so a series only holds its retention window.
+ * With rollups enabled, each series also keeps 1-second, 1-minute and
+ * 1-hour summaries for {@link #getRollups(int, long, long, long)}.
  */
 public class Patient {
     private final int patientId;
-    private final List<PatientRecord> records = new ArrayList<>();
+    private final DeletionPolicy deletionPolicy; // null keeps everything
+    private final boolean rollups;
+    private volatile TimeSeries[] series = new TimeSeries[0]; // in order of first reading
+    private volatile TimeSeries[] byType = new TimeSeries[8]; // indexed by record type code
 
     /**
      * Constructs a new Patient with the given ID.
@@ -18,7 +35,33 @@ public class Patient {
      * @param patientId the unique identifier of this patient
      */
     public Patient(int patientId) {
+        this(patientId, null);
+    }
+
+    /**
+     * Constructs a new Patient whose records expire according to a policy.
+     *
+     * @param patientId      the unique identifier of this patient
+     * @param deletionPolicy decides how long records are kept, or null to
+     *                       keep them forever
+     */
+    public Patient(int patientId, DeletionPolicy deletionPolicy) {
+        this(patientId, deletionPolicy, false);
+    }
+
+    /**
+     * Constructs a new Patient that optionally keeps rollups of its records.
+     *
+     * @param patientId      the unique identifier of this patient
+     * @param deletionPolicy decides how long records are kept, or null to
+     *                       keep them forever
+     * @param rollups        true to summarize each record type per second,
+     *                       minute and hour as records arrive
+     */
+    public Patient(int patientId, DeletionPolicy deletionPolicy, boolean rollups) {
         this.patientId = patientId;
+        this.deletionPolicy = deletionPolicy;
+        this.rollups = rollups;
     }
 
     /**
@@ -29,17 +72,98 @@ public class Patient {
      * @param timestamp        the time at which the measurement was taken (ms since epoch)
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        // PatientRecord’s constructor is (patientId, measurementValue, recordType, timestamp)
-        records.add(new PatientRecord(patientId, measurementValue, recordType, timestamp));
+        addRecord(measurementValue, RecordTypes.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new measurement record with a dictionary-encoded record type.
+     *
+     * @param measurementValue the numeric value of the measurement
+     * @param recordType       the type of the measurement as a {@link RecordTypes} code
+     * @param timestamp        the time at which the measurement was taken (ms since epoch)
+     */
+    public synchronized void addRecord(double measurementValue, int recordType, long timestamp) {
+        addUnderLock(measurementValue, recordType, timestamp);
+    }
+
+    /**
+     * Adds a run of records of one type under a single lock, as when
+     * loading a snapshot or reading a file in bulk.
+     */
+    synchronized void addRecords(int recordType, long[] timestamps, double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            addUnderLock(values[i], recordType, timestamps[i]);
+        }
+    }
+
+    private void addUnderLock(double measurementValue, int recordType, long timestamp) {
+        TimeSeries target = find(recordType);
+        if (target == null) {
+            target = new TimeSeries(patientId, recordType, rollups);
+            // Always a copy: lock-free readers only see the new series
+            // through the volatile write of a fresh array
+            TimeSeries[] index = Arrays.copyOf(byType, Math.max(recordType + 1, byType.length));
+            index[recordType] = target;
+            byType = index;
+            TimeSeries[] grown = Arrays.copyOf(series, series.length + 1);
+            grown[grown.length - 1] = target;
+            series = grown;
+        }
+        target.add(timestamp, measurementValue);
+        if (deletionPolicy != null) {
+            target.removeBefore(deletionPolicy.cutoff(recordType, target.newestTimestamp()));
+        }
+    }
+
+    /**
+     * Removes the records that have expired at a given time, including those
+     * of types that no longer receive readings.
+     *
+     * @param now the current time of the readings' time line
+     * @return number of records removed
+     */
+    public synchronized int purgeOldData(long now) {
+        if (deletionPolicy == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (TimeSeries s : series) {
+            removed += s.removeBefore(deletionPolicy.cutoff(s.recordType(), now));
+        }
+        return removed;
+    }
+
+    /**
+     * @return timestamp of this patient's newest record, or Long.MIN_VALUE if
+     *         there is none
+     */
+    public long getNewestTimestamp() {
+        long newest = Long.MIN_VALUE;
+        for (TimeSeries s : series) {
+            newest = Math.max(newest, s.newestTimestamp());
+        }
+        return newest;
+    }
+
+    /**
+     * @return number of records currently held
+     */
+    public int getRecordCount() {
+        int count = 0;
+        for (TimeSeries s : series) {
+            count += s.size();
+        }
+        return count;
     }
 
     /**
-     * Returns an unmodifiable view of all records for this patient.
+     * Returns an unmodifiable snapshot of all records for this patient.
+     * Records added later are not part of it.
      *
-     * @return all measurement records in insertion order
+     * @return all measurement records in timestamp order
      */
     public List<PatientRecord> getAllRecords() {
-        return Collections.unmodifiableList(records);
+        return getRecords(Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     /**
@@ -48,12 +172,155 @@ public class Patient {
      *
      * @param startTime inclusive lower bound of timestamp
      * @param endTime   inclusive upper bound of timestamp
-     * @return list of PatientRecord objects in the given time window, in insertion order
+     * @return unmodifiable list of PatientRecord objects in the given time window, in timestamp order
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        return records.stream()
-                .filter(r -> r.getTimestamp() >= startTime && r.getTimestamp() <= endTime)
-                .collect(Collectors.toList());
+        TimeSeries[] all = series;
+        if (all.length == 1) {
+            return all[0].range(startTime, endTime);
+        }
+        List<TimeSeries.Range> ranges = new ArrayList<>(all.length);
+        for (TimeSeries s : all) {
+            TimeSeries.Range range = s.range(startTime, endTime);
+            if (!range.isEmpty()) {
+                ranges.add(range);
+            }
+        }
+        if (ranges.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ranges.size() == 1 ? ranges.get(0) : new TimeSeries.Merged(patientId, ranges);
+    }
+
+    /**
+     * Returns the records of several types whose timestamps are in the
+     * inclusive range [startTime, endTime], merged as
+     * {@link #getRecords(long, long)} would merge them, without touching the
+     * series of other types.
+     *
+     * @param recordTypes the types of the measurements as {@link RecordTypes} codes
+     * @param startTime   inclusive lower bound of timestamp
+     * @param endTime     inclusive upper bound of timestamp
+     * @return unmodifiable list of the matching records, in timestamp order
+     */
+    public List<PatientRecord> getRecords(int[] recordTypes, long startTime, long endTime) {
+        List<TimeSeries.Range> ranges = new ArrayList<>(recordTypes.length);
+        for (TimeSeries s : series) { // in series order, so ties break as in the full merge
+            for (int type : recordTypes) {
+                if (s.recordType() == type) {
+                    TimeSeries.Range range = s.range(startTime, endTime);
+                    if (!range.isEmpty()) {
+                        ranges.add(range);
+                    }
+                    break;
+                }
+            }
+        }
+        if (ranges.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ranges.size() == 1 ? ranges.get(0) : new TimeSeries.Merged(patientId, ranges);
+    }
+
+    /**
+     * Returns the records of one type whose timestamps are in the inclusive
+     * range [startTime, endTime].
+     *
+     * @param recordType the type or label of the measurement
+     * @param startTime  inclusive lower bound of timestamp
+     * @param endTime    inclusive upper bound of timestamp
+     * @return unmodifiable list of the matching records, in timestamp order
+     */
+    public List<PatientRecord> getRecords(String recordType, long startTime, long endTime) {
+        return getRecords(RecordTypes.codeOf(recordType), startTime, endTime);
+    }
+
+    /**
+     * Returns the records of one type whose timestamps are in the inclusive
+     * range [startTime, endTime].
+     *
+     * @param recordType the type of the measurement as a {@link RecordTypes} code
+     * @param startTime  inclusive lower bound of timestamp
+     * @param endTime    inclusive upper bound of timestamp
+     * @return unmodifiable list of the matching records, in timestamp order
+     */
+    public List<PatientRecord> getRecords(int recordType, long startTime, long endTime) {
+        TimeSeries s = find(recordType);
+        return s == null ? Collections.emptyList() : s.range(startTime, endTime);
+    }
+
+    /**
+     * Summarizes the records of one type in buckets of a given resolution,
+     * e.g. one per minute for a week-long trend. Every bucket overlapping
+     * [startTime, endTime] is returned whole, oldest first, and empty
+     * buckets are left out.
+     * <p>
+     * With rollups enabled, the coarsest tier whose width divides the
+     * resolution is read, so a week at hourly resolution touches 168
+     * buckets. Otherwise, or for resolutions finer than a second, the
+     * records themselves are summarized.
+     *
+     * @param recordType       the type or label of the measurement
+     * @param startTime        inclusive lower bound of timestamp
+     * @param endTime          inclusive upper bound of timestamp
+     * @param resolutionMillis width of the buckets in milliseconds
+     * @return the buckets in timestamp order
+     */
+    public List<Rollup> getRollups(String recordType, long startTime, long endTime, long resolutionMillis) {
+        return getRollups(RecordTypes.codeOf(recordType), startTime, endTime, resolutionMillis);
+    }
+
+    /**
+     * Summarizes the records of one type in buckets of a given resolution.
+     *
+     * @param recordType       the type of the measurement as a {@link RecordTypes} code
+     * @param startTime        inclusive lower bound of timestamp
+     * @param endTime          inclusive upper bound of timestamp
+     * @param resolutionMillis width of the buckets in milliseconds
+     * @return the buckets in timestamp order
+     * @see #getRollups(String, long, long, long)
+     */
+    public List<Rollup> getRollups(int recordType, long startTime, long endTime, long resolutionMillis) {
+        if (resolutionMillis <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolutionMillis);
+        }
+        TimeSeries s = find(recordType);
+        if (s == null) {
+            return Collections.emptyList();
+        }
+        if (!s.hasRollups()) {
+            return s.rollups(startTime, endTime, resolutionMillis); // reads a snapshot, no lock needed
+        }
+        synchronized (this) {
+            return s.rollups(startTime, endTime, resolutionMillis);
+        }
+    }
+
+    /**
+     * @return the record types this patient has readings of
+     */
+    public List<String> getRecordTypes() {
+        List<String> types = new ArrayList<>();
+        for (TimeSeries s : series) {
+            types.add(RecordTypes.name(s.recordType()));
+        }
+        return types;
+    }
+
+    /**
+     * @return snapshots of all series, for callers that copy the patient
+     */
+    List<TimeSeries.Range> allSeries() {
+        List<TimeSeries.Range> ranges = new ArrayList<>();
+        for (TimeSeries s : series) {
+            ranges.add(s.range(Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        return ranges;
+    }
+
+    private TimeSeries find(int recordType) {
+        TimeSeries[] index = byType;
+        return recordType < index.length ? index[recordType] : null;
     }
 
     /**
@@ -11,7 +11,7 @@ package com.data_management;
  */
 public class PatientRecord {
     private int patientId;
-    private String recordType; // Example: ECG, blood pressure, etc.
+    private int recordType; // Example: ECG, blood pressure, etc., as a RecordTypes code
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
@@ -26,6 +26,19 @@ public class PatientRecord {
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, RecordTypes.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Constructs a new patient record with a dictionary-encoded record type.
+     *
+     * @param patientId        the unique identifier for the patient
+     * @param measurementValue the numerical value of the recorded measurement
+     * @param recordType       the type of measurement as a {@link RecordTypes} code
+     * @param timestamp        the time at which the measurement was recorded, in
+     *                         milliseconds since epoch
+     */
+    public PatientRecord(int patientId, double measurementValue, int recordType, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
         this.recordType = recordType;
@@ -65,6 +78,15 @@ public class PatientRecord {
      * @return the record type
      */
     public String getRecordType() {
+        return RecordTypes.name(recordType);
+    }
+
+    /**
+     * Returns the type of record as a {@link RecordTypes} code.
+     *
+     * @return the record type code
+     */
+    public int getRecordTypeCode() {
         return recordType;
     }
 }
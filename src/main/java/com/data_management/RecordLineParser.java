@@ -0,0 +1,148 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses lines of the simulator's file output,
+ * {@code Patient ID: <id>, Timestamp: <ts>, Label: <label>, Data: <value>},
+ * straight from bytes. The fields of the last reading parsed are left in
+ * the parser; the label's record type is looked up only when it differs
+ * from the previous line's. Not thread-safe; use one per thread.
+ */
+final class RecordLineParser {
+
+    /** The line holds a reading within the window. */
+    static final int READING = 0;
+    /** The line holds a reading outside the window; its label and data were not parsed. */
+    static final int OUTSIDE_WINDOW = 1;
+    /** The line is malformed or its data is not a number, like an alert state. */
+    static final int SKIPPED = 2;
+
+    private final long startTime;
+    private final long endTime;
+    private byte[] label = new byte[0]; // label of the previous reading and its code
+    private int labelType;
+    private long number; // result of parseInteger
+
+    int patientId;
+    long timestamp;
+    int recordType;
+    double value;
+
+    /**
+     * @param startTime start of the window, inclusive
+     * @param endTime   end of the window, inclusive
+     */
+    RecordLineParser(long startTime, long endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Parses the line in [from, to) of a buffer, without its line break.
+     *
+     * @return {@link #READING}, {@link #OUTSIDE_WINDOW} or {@link #SKIPPED}
+     */
+    int parse(ByteBuffer line, int from, int to) {
+        int i = afterColon(line, from, to);
+        if (i < 0) {
+            return SKIPPED;
+        }
+        i = parseInteger(line, i, to);
+        if (i < 0 || number != (int) number) {
+            return SKIPPED;
+        }
+        int patient = (int) number;
+
+        i = afterColon(line, i, to);
+        if (i < 0 || (i = parseInteger(line, i, to)) < 0) {
+            return SKIPPED;
+        }
+        long time = number;
+        if (time < startTime || time > endTime) {
+            return OUTSIDE_WINDOW;
+        }
+
+        int labelStart = afterColon(line, i, to);
+        if (labelStart < 0) {
+            return SKIPPED;
+        }
+        int labelEnd = labelStart;
+        while (labelEnd < to && line.get(labelEnd) != ',') {
+            labelEnd++;
+        }
+        int valueStart = afterColon(line, labelEnd, to);
+        if (valueStart < 0) {
+            return SKIPPED;
+        }
+        int valueEnd = to;
+        while (valueEnd > valueStart && (line.get(valueEnd - 1) == ' ' || line.get(valueEnd - 1) == '%')) {
+            valueEnd--;
+        }
+        try {
+            value = DecimalParser.parse(line, valueStart, valueEnd);
+        } catch (NumberFormatException e) {
+            return SKIPPED;
+        }
+        patientId = patient;
+        timestamp = time;
+        recordType = recordType(line, labelStart, labelEnd);
+        return READING;
+    }
+
+    /**
+     * Parses an integer of up to 18 digits into {@link #number}.
+     *
+     * @return the position after it, or -1 if there is none
+     */
+    private int parseInteger(ByteBuffer line, int from, int to) {
+        int i = from;
+        boolean negative = i < to && line.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        int digitsFrom = i;
+        long result = 0;
+        for (int d; i < to && (d = line.get(i) - '0') >= 0 && d <= 9; i++) {
+            result = result * 10 + d;
+        }
+        if (i == digitsFrom || i - digitsFrom > 18) {
+            return -1;
+        }
+        number = negative ? -result : result;
+        return i;
+    }
+
+    /**
+     * @return the position after the next colon and any spaces, or -1
+     */
+    private static int afterColon(ByteBuffer line, int from, int to) {
+        int i = from;
+        while (i < to && line.get(i) != ':') {
+            i++;
+        }
+        if (i == to) {
+            return -1;
+        }
+        for (i++; i < to && line.get(i) == ' '; i++) {
+            // skip
+        }
+        return i;
+    }
+
+    private int recordType(ByteBuffer line, int from, int to) {
+        boolean same = to - from == label.length;
+        for (int i = 0; same && i < label.length; i++) {
+            same = line.get(from + i) == label[i];
+        }
+        if (!same) {
+            label = new byte[to - from];
+            for (int i = 0; i < label.length; i++) {
+                label[i] = line.get(from + i);
+            }
+            labelType = RecordTypes.codeOf(new String(label, StandardCharsets.UTF_8));
+        }
+        return labelType;
+    }
+}
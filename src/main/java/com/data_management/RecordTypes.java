@@ -0,0 +1,82 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary that maps record types to small integer codes.
+ * <p>
+ * Readers translate a record type to its code once at ingest, and the
+ * storage and alert checks work with codes from then on, comparing ints
+ * instead of strings. The types the simulator produces have fixed codes
+ * that can be used in {@code switch} statements; other types get the next
+ * free code when first seen. Codes are only meaningful inside one JVM.
+ */
+public final class RecordTypes {
+
+    public static final int ECG = 0;
+    public static final int SATURATION = 1;
+    public static final int SYSTOLIC_PRESSURE = 2;
+    public static final int DIASTOLIC_PRESSURE = 3;
+    public static final int CHOLESTEROL = 4;
+    public static final int WHITE_BLOOD_CELLS = 5;
+    public static final int RED_BLOOD_CELLS = 6;
+
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int count;
+
+    static {
+        // In the order of the constants above
+        for (String name : new String[] {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure",
+                "Cholesterol", "WhiteBloodCells", "RedBloodCells"}) {
+            register(name);
+        }
+    }
+
+    private RecordTypes() {
+    }
+
+    /**
+     * Returns the code of a record type, assigning the next free one to a
+     * type seen for the first time.
+     *
+     * @param name the record type, e.g. "Saturation"
+     * @return the type's code
+     */
+    public static int codeOf(String name) {
+        Integer code = codes.get(name);
+        return code != null ? code : register(name);
+    }
+
+    /**
+     * @param code a code returned by {@link #codeOf(String)}
+     * @return the record type's name
+     */
+    public static String name(int code) {
+        return names[code];
+    }
+
+    /**
+     * @return the number of known record types
+     */
+    public static synchronized int size() {
+        return count;
+    }
+
+    private static synchronized int register(String name) {
+        Integer existing = codes.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        int code = count;
+        if (code == names.length) {
+            names = Arrays.copyOf(names, code * 2);
+        }
+        names[code] = name;
+        count++;
+        // Codes are handed out through the map, which publishes the name above
+        codes.put(name, code);
+        return code;
+    }
+}
@@ -0,0 +1,78 @@
+package com.data_management;
+
+/**
+ * Summary of one record type's readings within a fixed, aligned time
+ * bucket: [startTime, startTime + duration).
+ */
+public class Rollup {
+    private final long startTime;
+    private final long duration;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final long count;
+    private final double last;
+
+    /**
+     * @param startTime start of the bucket, a multiple of its duration
+     * @param duration  length of the bucket in milliseconds
+     * @param min       smallest value in the bucket
+     * @param max       largest value in the bucket
+     * @param sum       sum of the values in the bucket
+     * @param count     number of readings in the bucket
+     * @param last      value of the newest reading in the bucket
+     */
+    public Rollup(long startTime, long duration, double min, double max, double sum, long count, double last) {
+        this.startTime = startTime;
+        this.duration = duration;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+        this.last = last;
+    }
+
+    /**
+     * @return start of the bucket in milliseconds since epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return length of the bucket in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return value of the newest reading in the bucket
+     */
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * @return mean of the values in the bucket
+     */
+    public double getAverage() {
+        return sum / count;
+    }
+}
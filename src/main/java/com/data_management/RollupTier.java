@@ -0,0 +1,221 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-width buckets summarizing one series' readings, updated as readings
+ * are added: min, max, sum, count and last value per bucket, in columns.
+ * <p>
+ * Unlike {@link TimeSeries}, buckets change in place, so the owning
+ * {@link Patient}'s monitor guards both writes and reads.
+ */
+final class RollupTier {
+
+    /** Bucket widths of the tiers a series keeps: 1 second, 1 minute, 1 hour. */
+    static final long[] WIDTHS = {1000L, 60_000L, 3_600_000L};
+
+    private final long width;
+    private long[] starts = new long[16];
+    private double[] mins = new double[16];
+    private double[] maxs = new double[16];
+    private double[] sums = new double[16];
+    private long[] counts = new long[16];
+    private double[] lasts = new double[16];
+    private long[] lastTimestamps = new long[16];
+    private int first; // buckets before it have expired
+    private int size;
+
+    RollupTier(long width) {
+        this.width = width;
+    }
+
+    long width() {
+        return width;
+    }
+
+    int size() {
+        return size - first;
+    }
+
+    /**
+     * Adds a reading to its bucket, creating the bucket if needed.
+     */
+    void add(long timestamp, double value) {
+        int i;
+        long newest = size > first ? starts[size - 1] : Long.MAX_VALUE;
+        long offset = timestamp - newest;
+        long bucket;
+        if (offset >= 0 && offset < width) {
+            i = size - 1; // the common case: the newest bucket, found without a division
+        } else if ((bucket = Math.floorDiv(timestamp, width) * width) == newest) {
+            i = size - 1;
+        } else if (size == first || starts[size - 1] < bucket) {
+            i = insert(size, bucket);
+        } else {
+            i = Arrays.binarySearch(starts, first, size, bucket);
+            if (i < 0) {
+                i = insert(-i - 1, bucket);
+            }
+        }
+        if (value < mins[i]) {
+            mins[i] = value;
+        }
+        if (value > maxs[i]) {
+            maxs[i] = value;
+        }
+        sums[i] += value;
+        counts[i]++;
+        if (timestamp >= lastTimestamps[i]) {
+            lasts[i] = value;
+            lastTimestamps[i] = timestamp;
+        }
+    }
+
+    /**
+     * Drops the buckets that end before a cutoff.
+     */
+    void removeBefore(long cutoff) {
+        if (cutoff == Long.MIN_VALUE) {
+            return;
+        }
+        // A bucket is expired once its last millisecond is
+        int keep = Arrays.binarySearch(starts, first, size, cutoff - width + 1);
+        first = keep < 0 ? -keep - 1 : keep;
+    }
+
+    /**
+     * Adds the buckets starting in [startTime, endTime] to a builder, whose
+     * resolution must be a multiple of this tier's width.
+     */
+    void query(long startTime, long endTime, Builder into) {
+        int from = Arrays.binarySearch(starts, first, size, startTime);
+        from = from < 0 ? -from - 1 : from;
+        for (int i = from; i < size && starts[i] <= endTime; i++) {
+            into.add(starts[i], mins[i], maxs[i], sums[i], counts[i], lasts[i], lastTimestamps[i]);
+        }
+    }
+
+    private int insert(int position, long bucket) {
+        if (size == starts.length) {
+            // Drop expired buckets while copying, sizing for the live ones as TimeSeries does
+            int live = size - first;
+            int capacity = Math.max(16, Math.min(starts.length * 2, (live + 1) * 2));
+            starts = compact(starts, capacity);
+            mins = compact(mins, capacity);
+            maxs = compact(maxs, capacity);
+            sums = compact(sums, capacity);
+            counts = compact(counts, capacity);
+            lasts = compact(lasts, capacity);
+            lastTimestamps = compact(lastTimestamps, capacity);
+            position -= first;
+            size = live;
+            first = 0;
+        }
+        int moved = size - position;
+        if (moved > 0) {
+            System.arraycopy(starts, position, starts, position + 1, moved);
+            System.arraycopy(mins, position, mins, position + 1, moved);
+            System.arraycopy(maxs, position, maxs, position + 1, moved);
+            System.arraycopy(sums, position, sums, position + 1, moved);
+            System.arraycopy(counts, position, counts, position + 1, moved);
+            System.arraycopy(lasts, position, lasts, position + 1, moved);
+            System.arraycopy(lastTimestamps, position, lastTimestamps, position + 1, moved);
+        }
+        starts[position] = bucket;
+        mins[position] = Double.POSITIVE_INFINITY;
+        maxs[position] = Double.NEGATIVE_INFINITY;
+        sums[position] = 0;
+        counts[position] = 0;
+        lastTimestamps[position] = Long.MIN_VALUE;
+        size++;
+        return position;
+    }
+
+    private long[] compact(long[] column, int capacity) {
+        long[] copy = new long[capacity];
+        System.arraycopy(column, first, copy, 0, size - first);
+        return copy;
+    }
+
+    private double[] compact(double[] column, int capacity) {
+        double[] copy = new double[capacity];
+        System.arraycopy(column, first, copy, 0, size - first);
+        return copy;
+    }
+
+    /**
+     * Merges time-ordered readings or buckets into rollups of one resolution.
+     */
+    static final class Builder {
+        private final long resolution;
+        private final List<Rollup> rollups = new ArrayList<>();
+        private long bucket;
+        private double min;
+        private double max;
+        private double sum;
+        private long count;
+        private double last;
+        private long lastTimestamp;
+
+        Builder(long resolution) {
+            this.resolution = resolution;
+        }
+
+        void add(long time, double value) {
+            long offset = time - bucket;
+            if (count == 0 || offset < 0 || offset >= resolution) {
+                add(time, value, value, value, 1, value, time);
+                return;
+            }
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            sum += value;
+            count++;
+            if (time >= lastTimestamp) {
+                last = value;
+                lastTimestamp = time;
+            }
+        }
+
+        void add(long time, double min, double max, double sum, long count, double last, long lastTimestamp) {
+            long offset = time - bucket;
+            if (this.count == 0 || offset < 0 || offset >= resolution) {
+                flush();
+                bucket = Math.floorDiv(time, resolution) * resolution;
+                this.min = min;
+                this.max = max;
+                this.sum = sum;
+                this.count = count;
+                this.last = last;
+                this.lastTimestamp = lastTimestamp;
+                return;
+            }
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.sum += sum;
+            this.count += count;
+            if (lastTimestamp >= this.lastTimestamp) {
+                this.last = last;
+                this.lastTimestamp = lastTimestamp;
+            }
+        }
+
+        List<Rollup> build() {
+            flush();
+            return rollups;
+        }
+
+        private void flush() {
+            if (count > 0) {
+                rollups.add(new Rollup(bucket, resolution, min, max, sum, count, last));
+                count = 0;
+            }
+        }
+    }
+}
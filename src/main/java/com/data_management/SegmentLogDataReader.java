@@ -0,0 +1,152 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the memory-mapped segment log written by the simulator's
+ * {@code segments:<dir>} output and adds its readings to a DataStorage.
+ * <p>
+ * Every {@code segment-NNNNNN.log} file is mapped read-only and its
+ * fixed-width records (int patientId, int labelId + 1, long timestamp,
+ * double value, little-endian, after a 64-byte header) are read in place;
+ * nothing is parsed from text except the label dictionary
+ * {@code labels.txt}. A slot whose label field is 0 was never written and
+ * is skipped.
+ * <p>
+ * With a time window, segments whose {@code .idx} file shows no overlap
+ * with the window are not mapped at all.
+ */
+public class SegmentLogDataReader implements DataReader {
+
+    private static final long MAGIC = 0x3147455344524143L; // "CARDSEG1"
+    private static final int RECORD_BYTES = 24;
+
+    private final Path baseDir;
+    private final long startTime;
+    private final long endTime;
+
+    /**
+     * @param baseDirectory the directory the simulator wrote its segments to
+     */
+    public SegmentLogDataReader(String baseDirectory) {
+        this(baseDirectory, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the readings within a time window.
+     *
+     * @param baseDirectory the directory the simulator wrote its segments to
+     * @param startTime     start of the window, inclusive
+     * @param endTime       end of the window, inclusive
+     */
+    public SegmentLogDataReader(String baseDirectory, long startTime, long endTime) {
+        this.baseDir = Paths.get(baseDirectory);
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        int[] recordTypes = readLabels();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(baseDir)) {
+            segments = files
+                    .filter(p -> p.getFileName().toString().matches("segment-\\d+\\.log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path segment : segments) {
+            if (overlapsWindow(segment)) {
+                readSegment(segment, recordTypes, dataStorage);
+            }
+        }
+    }
+
+    private void readSegment(Path segment, int[] recordTypes, DataStorage dataStorage) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < 64 || buffer.getLong(0) != MAGIC || buffer.getInt(12) != RECORD_BYTES) {
+            throw new IOException(segment + " is not a segment log file");
+        }
+        int headerBytes = buffer.getInt(16);
+        int capacity = buffer.getInt(20);
+        if (headerBytes + (long) capacity * RECORD_BYTES > buffer.capacity()) {
+            throw new IOException(segment + " is shorter than its header claims");
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = headerBytes + slot * RECORD_BYTES;
+            int label = buffer.getInt(offset + 4);
+            if (label == 0) {
+                continue; // never written
+            }
+            long timestamp = buffer.getLong(offset + 8);
+            if (timestamp < startTime || timestamp > endTime) {
+                continue;
+            }
+            if (label > recordTypes.length || recordTypes[label - 1] < 0) {
+                throw new IOException(segment + " uses label " + (label - 1) + " missing from labels.txt");
+            }
+            dataStorage.addPatientData(buffer.getInt(offset), buffer.getDouble(offset + 16),
+                    recordTypes[label - 1], timestamp);
+        }
+    }
+
+    /**
+     * Checks a segment's index; segments without one are always read.
+     */
+    private boolean overlapsWindow(Path segment) throws IOException {
+        if (startTime == Long.MIN_VALUE && endTime == Long.MAX_VALUE) {
+            return true;
+        }
+        String name = segment.getFileName().toString();
+        Path index = segment.resolveSibling(name.substring(0, name.length() - 4) + ".idx");
+        if (!Files.exists(index)) {
+            return true;
+        }
+        Properties properties = new Properties();
+        try (java.io.Reader in = Files.newBufferedReader(index)) {
+            properties.load(in);
+        }
+        long min = Long.parseLong(properties.getProperty("minTimestamp"));
+        long max = Long.parseLong(properties.getProperty("maxTimestamp"));
+        return max >= startTime && min <= endTime;
+    }
+
+    /**
+     * Reads the label dictionary as an array from label ID to record type
+     * code, -1 for IDs it does not name.
+     */
+    private int[] readLabels() throws IOException {
+        int[] recordTypes = new int[16];
+        Arrays.fill(recordTypes, -1);
+        for (String line : Files.readAllLines(baseDir.resolve("labels.txt"))) {
+            int space = line.indexOf(' ');
+            if (space < 0) {
+                continue;
+            }
+            int id = Integer.parseInt(line.substring(0, space));
+            if (id >= recordTypes.length) {
+                int old = recordTypes.length;
+                recordTypes = Arrays.copyOf(recordTypes, Math.max(id + 1, old * 2));
+                Arrays.fill(recordTypes, old, recordTypes.length, -1);
+            }
+            recordTypes[id] = RecordTypes.codeOf(line.substring(space + 1));
+        }
+        return recordTypes;
+    }
+}
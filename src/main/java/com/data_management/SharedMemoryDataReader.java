@@ -0,0 +1,210 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Consumes the shared-memory ring written by the simulator's
+ * {@code shm:<path>} output and adds its readings to a DataStorage.
+ * <p>
+ * The ring file is mapped read-only, so any number of readers, in this or
+ * other processes, follow the producer independently. Each reader keeps its
+ * own position, the sequence number of the next reading it expects. A slot
+ * holds a sequence field (sequence number + 1 once written, 0 while being
+ * written) followed by int patientId, int labelId, long timestamp and double
+ * value, little-endian; a reading is taken only if the sequence field
+ * matches before and after its fields are read.
+ * <p>
+ * The producer never waits: if this reader falls more than one ring behind,
+ * the overwritten readings are counted as lost and reading resumes at the
+ * oldest reading still in the ring.
+ */
+public class SharedMemoryDataReader implements DataReader {
+
+    private static final long MAGIC = 0x314D485344524143L; // "CARDSHM1"
+    private static final int SLOT_BYTES = 32;
+    private static final int CURSOR_OFFSET = 64;
+    private static final int LABEL_TABLE_OFFSET = 128;
+    private static final int LABEL_ENTRY_BYTES = 32;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final MappedByteBuffer ring;
+    private final int capacity;
+    private final int mask;
+    private final int dataOffset;
+    private final int[] recordTypes; // ring label ID -> RecordTypes code, -1 until read
+    private long next;
+    private long lost;
+
+    /**
+     * Opens a ring and starts at the oldest reading it still holds.
+     *
+     * @param path the ring file the simulator publishes to
+     * @throws IOException if the file is missing or not a ring
+     */
+    public SharedMemoryDataReader(String path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * @param path       the ring file the simulator publishes to
+     * @param fromLatest true to skip the readings already in the ring and
+     *                   only read those published from now on
+     * @throws IOException if the file is missing or not a ring
+     */
+    public SharedMemoryDataReader(String path, boolean fromLatest) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ring = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ring.order(ByteOrder.LITTLE_ENDIAN);
+        if (ring.capacity() < 128 || (long) LONG_VIEW.getAcquire(ring, 0) != MAGIC
+                || ring.getInt(12) != SLOT_BYTES) {
+            throw new IOException(path + " is not a shared-memory ring");
+        }
+        capacity = ring.getInt(16);
+        dataOffset = ring.getInt(20);
+        if (Integer.bitCount(capacity) != 1 || dataOffset + (long) capacity * SLOT_BYTES > ring.capacity()) {
+            throw new IOException(path + " is shorter than its header claims");
+        }
+        mask = capacity - 1;
+        recordTypes = new int[(dataOffset - LABEL_TABLE_OFFSET) / LABEL_ENTRY_BYTES];
+        Arrays.fill(recordTypes, -1);
+        long cursor = cursor();
+        next = fromLatest ? cursor : Math.max(0, cursor - capacity);
+    }
+
+    /**
+     * Reads every reading published so far and returns.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if a reading uses a label missing from the ring
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        while (poll(dataStorage, Integer.MAX_VALUE) > 0) {
+            // drain until caught up
+        }
+    }
+
+    /**
+     * Reads until a number of readings arrived or none arrived for a while,
+     * spinning briefly and then parking between polls.
+     *
+     * @param dataStorage       the storage where data will be stored
+     * @param count             number of readings to wait for
+     * @param idleTimeoutMillis how long to wait without a new reading
+     * @return number of readings read
+     * @throws IOException if a reading uses a label missing from the ring
+     */
+    public long readData(DataStorage dataStorage, long count, long idleTimeoutMillis) throws IOException {
+        long read = 0;
+        long idleSince = System.nanoTime();
+        int spins = 0;
+        while (read < count) {
+            int n = poll(dataStorage, (int) Math.min(Integer.MAX_VALUE, count - read));
+            if (n > 0) {
+                read += n;
+                idleSince = System.nanoTime();
+                spins = 0;
+            } else if (System.nanoTime() - idleSince > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+                break;
+            } else if (++spins < 1000) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads the readings available right now, up to a limit.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @param max         largest number of readings to read
+     * @return number of readings read
+     * @throws IOException if a reading uses a label missing from the ring
+     */
+    public int poll(DataStorage dataStorage, int max) throws IOException {
+        int read = 0;
+        long cursor = cursor();
+        while (read < max && next < cursor) {
+            int offset = dataOffset + (int) (next & mask) * SLOT_BYTES;
+            long sequence = (long) LONG_VIEW.getAcquire(ring, offset);
+            if (sequence == next + 1) {
+                int patientId = ring.getInt(offset + 8);
+                int labelId = ring.getInt(offset + 12);
+                long timestamp = ring.getLong(offset + 16);
+                double value = ring.getDouble(offset + 24);
+                VarHandle.loadLoadFence();
+                if ((long) LONG_VIEW.getOpaque(ring, offset) == sequence) {
+                    dataStorage.addPatientData(patientId, value, recordType(labelId), timestamp);
+                    next++;
+                    read++;
+                    continue;
+                }
+                // overwritten while reading
+            } else if (sequence <= next && cursor - next <= capacity) {
+                break; // claimed but not yet written
+            }
+            cursor = cursor();
+            long oldest = Math.max(next + 1, cursor - capacity);
+            lost += oldest - next;
+            next = oldest;
+        }
+        return read;
+    }
+
+    /**
+     * @return sequence number of the next reading this reader expects
+     */
+    public long getPosition() {
+        return next;
+    }
+
+    /**
+     * @return number of readings overwritten before this reader got to them
+     */
+    public long getLostCount() {
+        return lost;
+    }
+
+    private long cursor() {
+        return (long) LONG_VIEW.getAcquire(ring, CURSOR_OFFSET);
+    }
+
+    private int recordType(int labelId) throws IOException {
+        if (labelId >= 0 && labelId < recordTypes.length) {
+            int code = recordTypes[labelId];
+            if (code >= 0) {
+                return code;
+            }
+            int entry = LABEL_TABLE_OFFSET + labelId * LABEL_ENTRY_BYTES;
+            int length = (int) INT_VIEW.getAcquire(ring, entry);
+            if (length > 0 && length <= LABEL_ENTRY_BYTES - 4) {
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = ring.get(entry + 4 + i);
+                }
+                code = RecordTypes.codeOf(new String(bytes, StandardCharsets.UTF_8));
+                recordTypes[labelId] = code;
+                return code;
+            }
+        }
+        throw new IOException("Label " + labelId + " is missing from the ring's label table");
+    }
+}
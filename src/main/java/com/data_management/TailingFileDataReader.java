@@ -0,0 +1,402 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Follows the “<label>.txt” files the simulator is writing and adds each
+ * line to a DataStorage as soon as it is complete.
+ * <p>
+ * The reader keeps an open channel and a byte offset per file, and each
+ * poll parses only the bytes appended since the previous one, straight
+ * from a reusable buffer with a {@link RecordLineParser}. A final line
+ * without its line break is left for the next poll. Files are followed
+ * through changes underneath the reader:
+ * <ul>
+ *   <li>a file that shrank below the offset was truncated and is read again
+ *       from its start;</li>
+ *   <li>a file whose name now refers to another file (a new inode) was
+ *       rotated: the old file is read to its end through the open channel,
+ *       then the new one from its start;</li>
+ *   <li>a file that disappeared is read to its end and forgotten.</li>
+ * </ul>
+ * With an offsets file, the offsets are saved after every poll that read
+ * something and when the reader is closed, and a new reader resumes where
+ * the last one stopped unless the file was replaced in between. Before
+ * saving, the storage's {@link WriteAheadLog}, if it has one, is forced to
+ * disk with {@link DataStorage#syncLog()}, so saved offsets never cover
+ * readings a crash could still lose. After a crash between that sync and
+ * the save, the readings since the previous save are read again.
+ * <p>
+ * {@link #start(DataStorage)} polls on a background thread, woken by a
+ * {@link WatchService} when the directory changes and at least once per
+ * poll interval, which covers file systems that report no events.
+ * Lines whose data is not a number, such as alert states, are skipped and
+ * counted.
+ */
+public class TailingFileDataReader implements DataReader, AutoCloseable {
+
+    /** Default longest wait between polls, in milliseconds. */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 100;
+
+    private final Path baseDir;
+    private final Path offsetsFile; // null keeps offsets in memory only
+    private final long pollIntervalMillis;
+    private final Map<String, Tail> tails = new TreeMap<>();
+    private final Map<String, String[]> saved = new HashMap<>(); // file name -> offset, file key
+    private final RecordLineParser parser = new RecordLineParser(Long.MIN_VALUE, Long.MAX_VALUE);
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+    private long skippedLines;
+    private DataStorage target; // storage of the last poll, synced before offsets are saved
+    private Thread follower;
+    private WatchService watcher;
+    private volatile boolean closed;
+
+    /**
+     * Follows the files of a directory, keeping offsets in memory.
+     *
+     * @param baseDirectory the directory the simulator writes its .txt files to
+     * @throws IOException not thrown without an offsets file
+     */
+    public TailingFileDataReader(String baseDirectory) throws IOException {
+        this(baseDirectory, null, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param baseDirectory      the directory the simulator writes its .txt files to
+     * @param offsetsFile        file to keep offsets in across restarts, or null
+     * @param pollIntervalMillis longest wait between polls of the background thread
+     * @throws IOException if an existing offsets file cannot be read
+     */
+    public TailingFileDataReader(String baseDirectory, String offsetsFile, long pollIntervalMillis)
+            throws IOException {
+        this.baseDir = Paths.get(baseDirectory);
+        this.offsetsFile = offsetsFile == null ? null : Paths.get(offsetsFile);
+        this.pollIntervalMillis = pollIntervalMillis;
+        if (this.offsetsFile != null && Files.exists(this.offsetsFile)) {
+            Properties properties = new Properties();
+            try (Reader in = Files.newBufferedReader(this.offsetsFile)) {
+                properties.load(in);
+            }
+            for (String name : properties.stringPropertyNames()) {
+                if (!name.endsWith(".key")) {
+                    saved.put(name, new String[] {properties.getProperty(name), properties.getProperty(name + ".key")});
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads everything appended since the previous call and returns.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if a file cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        poll(dataStorage);
+    }
+
+    /**
+     * Reads the complete lines appended to every file since the previous
+     * poll, then saves the offsets if anything was read.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @return number of readings added
+     * @throws IOException if a file cannot be read or the offsets saved
+     */
+    public synchronized int poll(DataStorage dataStorage) throws IOException {
+        if (closed || !Files.isDirectory(baseDir)) {
+            return 0; // the simulator may not have created it yet
+        }
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(baseDir)) {
+            paths = files.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        target = dataStorage;
+        int read = 0;
+        Set<String> present = new HashSet<>();
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            Object key;
+            try {
+                key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            } catch (NoSuchFileException e) {
+                continue; // deleted since the listing
+            }
+            present.add(name);
+            Tail tail = tails.get(name);
+            if (tail != null && key != null && !key.equals(tail.key)) {
+                read += readNew(tail, dataStorage); // rotated: finish the old file
+                tail.channel.close();
+                tails.remove(name);
+                saved.remove(name);
+                tail = null;
+            }
+            if (tail == null) {
+                tail = open(path, name, key);
+                if (tail == null) {
+                    continue;
+                }
+                tails.put(name, tail);
+            }
+            if (tail.channel.size() < tail.offset) {
+                tail.offset = 0; // truncated
+            }
+            read += readNew(tail, dataStorage);
+        }
+        for (Iterator<Tail> it = tails.values().iterator(); it.hasNext(); ) {
+            Tail tail = it.next();
+            if (!present.contains(tail.name)) {
+                read += readNew(tail, dataStorage); // renamed or deleted: finish it
+                tail.channel.close();
+                it.remove();
+            }
+        }
+        if (read > 0) {
+            dataStorage.syncLog(); // the offsets must not get ahead of what the storage has made durable
+            saveOffsets();
+        }
+        return read;
+    }
+
+    /**
+     * Starts following the files on a daemon thread until {@link #close()}.
+     *
+     * @param dataStorage the storage where data will be stored
+     */
+    public synchronized void start(DataStorage dataStorage) {
+        if (follower != null || closed) {
+            return;
+        }
+        try {
+            watcher = baseDir.getFileSystem().newWatchService();
+            baseDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | UnsupportedOperationException e) {
+            watcher = null; // poll on the interval alone
+        }
+        follower = new Thread(() -> follow(dataStorage), "file-tail");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /**
+     * Stops the background thread, saves the offsets and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            thread = follower;
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+        if (thread != null) {
+            // Woken rather than interrupted, as an interrupt would close the channel it reads
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (target != null) {
+                target.syncLog();
+            }
+            saveOffsets();
+            for (Tail tail : tails.values()) {
+                tail.channel.close();
+            }
+            tails.clear();
+        }
+    }
+
+    /**
+     * @param fileName the name of a followed file, e.g. {@code ECG.txt}
+     * @return the offset up to which the file has been read, or -1 if it is
+     *         not being followed
+     */
+    public synchronized long getOffset(String fileName) {
+        Tail tail = tails.get(fileName);
+        return tail == null ? -1 : tail.offset;
+    }
+
+    /**
+     * @return number of lines skipped so far because they held no numeric
+     *         reading
+     */
+    public synchronized long getSkippedLines() {
+        return skippedLines;
+    }
+
+    private void follow(DataStorage dataStorage) {
+        while (!closed) {
+            try {
+                poll(dataStorage);
+                if (watcher == null) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis));
+                    continue;
+                }
+                WatchKey key = watcher.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents(); // any change leads to a full poll
+                    key.reset();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    System.err.println("Error following " + baseDir + ": " + e.getMessage());
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis));
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a file, at its saved offset if it is the file the offset was
+     * saved for.
+     *
+     * @return the new tail, or null if the file is gone
+     */
+    private Tail open(Path path, String name, Object key) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        Tail tail = new Tail(name, channel, key);
+        String[] offset = saved.remove(name);
+        if (offset != null && (key == null || key.toString().equals(offset[1]))) {
+            long value = Long.parseLong(offset[0]);
+            tail.offset = value <= channel.size() ? value : 0;
+        }
+        return tail;
+    }
+
+    /**
+     * Adds the complete lines between a file's offset and its current end,
+     * and moves the offset past them.
+     */
+    private int readNew(Tail tail, DataStorage dataStorage) throws IOException {
+        int read = 0;
+        long size = tail.channel.size();
+        while (tail.offset < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - tail.offset));
+            int n = tail.channel.read(buffer, tail.offset);
+            if (n <= 0) {
+                break;
+            }
+            int end = n - 1;
+            while (end >= 0 && buffer.get(end) != '\n') {
+                end--;
+            }
+            if (end < 0) {
+                if (n < buffer.capacity()) {
+                    break; // only a partial line, wait for the rest
+                }
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2); // a line longer than the buffer
+                continue;
+            }
+            int start = 0;
+            while (start <= end) {
+                int lineEnd = start;
+                while (buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int last = lineEnd > start && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                if (last > start) {
+                    if (parser.parse(buffer, start, last) == RecordLineParser.READING) {
+                        dataStorage.addPatientData(parser.patientId, parser.value, parser.recordType,
+                                parser.timestamp);
+                        read++;
+                    } else {
+                        skippedLines++;
+                    }
+                }
+                start = lineEnd + 1;
+            }
+            tail.offset += end + 1;
+        }
+        return read;
+    }
+
+    /**
+     * Writes the offsets to a temporary file and moves it into place, so a
+     * crash leaves either the old or the new offsets.
+     */
+    private void saveOffsets() throws IOException {
+        if (offsetsFile == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        for (Map.Entry<String, String[]> entry : saved.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue()[0]); // files not seen yet keep theirs
+            if (entry.getValue()[1] != null) {
+                properties.setProperty(entry.getKey() + ".key", entry.getValue()[1]);
+            }
+        }
+        for (Tail tail : tails.values()) {
+            properties.setProperty(tail.name, Long.toString(tail.offset));
+            if (tail.key != null) {
+                properties.setProperty(tail.name + ".key", tail.key.toString());
+            }
+        }
+        Path temporary = offsetsFile.resolveSibling(offsetsFile.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary)) {
+            properties.store(out, "TailingFileDataReader offsets of " + baseDir);
+        }
+        Files.move(temporary, offsetsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A followed file: its open channel, identity and read offset.
+     */
+    private static final class Tail {
+        private final String name;
+        private final FileChannel channel;
+        private final Object key;
+        private long offset;
+
+        private Tail(String name, FileChannel channel, Object key) {
+            this.name = name;
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package com.data_management;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The readings of one record type for one patient, in timestamp order.
+ * <p>
+ * Recent readings live in an uncompressed head: a pair of primitive
+ * columns, 16 bytes per reading, appended in place. Once the head holds
+ * {@link #BLOCK_SIZE} readings it is sealed into an immutable
+ * {@link CompressedBlock} and a new head is started, so older history costs
+ * a few bits per reading for regular signals. Queries decode only the
+ * blocks they touch, one at a time as the returned view is read.
+ * <p>
+ * A reading that arrives earlier than the last one is inserted at its
+ * position in a copy of the head, or of the sealed block it belongs to.
+ * Purging expired readings only advances the start of the live part and
+ * drops whole blocks; whenever the head is copied it is sized for the live
+ * readings, so a series under a retention policy stays bounded.
+ * <p>
+ * Writers are serialized by the owning {@link Patient}; readers never lock.
+ * Slots are never overwritten once published, so a reader always sees a
+ * consistent, sorted run of the series, and the views it gets are
+ * snapshots.
+ * <p>
+ * A series can also keep {@link RollupTier}s, updated with every reading,
+ * so queries over long windows read a few buckets instead of every reading.
+ */
+final class TimeSeries {
+
+    /** Number of readings the head holds before it is sealed into a block. */
+    static final int BLOCK_SIZE = 1024;
+
+    private static final CompressedBlock[] NO_BLOCKS = new CompressedBlock[0];
+
+    private final int patientId;
+    private final int recordType;
+    private volatile Columns columns = new Columns(16, NO_BLOCKS, 0);
+    private CompressedBlock.Decoder trimCursor; // at the oldest live reading of blocks[0] once it was purged into
+    private final RollupTier[] tiers; // finest first, null without rollups
+
+    TimeSeries(int patientId, int recordType) {
+        this(patientId, recordType, false);
+    }
+
+    TimeSeries(int patientId, int recordType, boolean rollups) {
+        this.patientId = patientId;
+        this.recordType = recordType;
+        if (rollups) {
+            tiers = new RollupTier[RollupTier.WIDTHS.length];
+            for (int i = 0; i < tiers.length; i++) {
+                tiers[i] = new RollupTier(RollupTier.WIDTHS[i]);
+            }
+        } else {
+            tiers = null;
+        }
+    }
+
+    /**
+     * @return the series' record type as a {@link RecordTypes} code
+     */
+    int recordType() {
+        return recordType;
+    }
+
+    /**
+     * Adds a reading. Callers serialize writes.
+     */
+    void add(long timestamp, double value) {
+        if (tiers != null) {
+            for (RollupTier tier : tiers) {
+                tier.add(timestamp, value);
+            }
+        }
+        Columns c = columns;
+        int n = c.size;
+        int first = c.start;
+        CompressedBlock[] blocks = c.blocks;
+        if (blocks.length > 0 && timestamp < blocks[blocks.length - 1].lastTimestamp) {
+            insertIntoBlock(c, timestamp, value);
+        } else if (n > first && timestamp < c.timestamps[n - 1]) {
+            // Out of order: insert into a copy so current views stay intact
+            int position = upperBound(c.timestamps, first, n, timestamp);
+            Columns copy = new Columns(capacityFor(n - first + 1, c), blocks, c.blockSkip);
+            int before = position - first;
+            System.arraycopy(c.timestamps, first, copy.timestamps, 0, before);
+            System.arraycopy(c.values, first, copy.values, 0, before);
+            copy.timestamps[before] = timestamp;
+            copy.values[before] = value;
+            System.arraycopy(c.timestamps, position, copy.timestamps, before + 1, n - position);
+            System.arraycopy(c.values, position, copy.values, before + 1, n - position);
+            copy.size = n - first + 1;
+            columns = copy;
+        } else if (n == c.timestamps.length) {
+            int live = n - first;
+            Columns next;
+            if (n >= BLOCK_SIZE) {
+                // Full head: seal its live part and start a new one
+                CompressedBlock[] sealed = blocks;
+                if (live > 0) {
+                    sealed = Arrays.copyOf(blocks, blocks.length + 1);
+                    sealed[blocks.length] = CompressedBlock.encode(c.timestamps, c.values, first, n);
+                }
+                next = new Columns(BLOCK_SIZE, sealed, blocks.length > 0 ? c.blockSkip : 0);
+                live = 0;
+            } else {
+                // Copy the live part into arrays sized for it, dropping purged readings
+                next = new Columns(capacityFor(live + 1, c), blocks, c.blockSkip);
+                System.arraycopy(c.timestamps, first, next.timestamps, 0, live);
+                System.arraycopy(c.values, first, next.values, 0, live);
+            }
+            next.timestamps[live] = timestamp;
+            next.values[live] = value;
+            next.size = live + 1;
+            columns = next;
+        } else {
+            c.timestamps[n] = timestamp;
+            c.values[n] = value;
+            c.size = n + 1; // publishes the new slot
+        }
+    }
+
+    /**
+     * Inserts a reading older than the newest sealed one by re-encoding the
+     * block it belongs to. Rare, since readings mostly arrive in order.
+     */
+    private void insertIntoBlock(Columns c, long timestamp, double value) {
+        CompressedBlock[] blocks = c.blocks;
+        int k = blocks.length - 1;
+        while (k > 0 && blocks[k].firstTimestamp > timestamp) {
+            k--;
+        }
+        CompressedBlock block = blocks[k];
+        int skip = k == 0 ? c.blockSkip : 0;
+        long[] timestamps = new long[block.count + 1];
+        double[] values = new double[block.count + 1];
+        block.decode(timestamps, values);
+        // Drop purged readings and make room for the new one
+        int position = upperBound(timestamps, skip, block.count, timestamp);
+        System.arraycopy(timestamps, position, timestamps, position + 1, block.count - position);
+        System.arraycopy(values, position, values, position + 1, block.count - position);
+        timestamps[position] = timestamp;
+        values[position] = value;
+        CompressedBlock[] copy = blocks.clone();
+        copy[k] = CompressedBlock.encode(timestamps, values, skip, block.count + 1);
+        if (k == 0) {
+            trimCursor = null;
+        }
+        columns = new Columns(c, copy, k == 0 ? 0 : c.blockSkip);
+    }
+
+    /**
+     * Drops the readings older than a cutoff. Only the start of the live part
+     * moves, so views taken earlier stay intact; the space is reclaimed the
+     * next time the columns are copied, or at once if the series expired
+     * entirely. Callers serialize writes.
+     *
+     * @param cutoff the oldest timestamp to keep
+     * @return number of readings dropped
+     */
+    int removeBefore(long cutoff) {
+        Columns c = columns;
+        int removed = 0;
+        if (c.blocks.length > 0) {
+            long oldest = c.blockSkip == 0 ? c.blocks[0].firstTimestamp : trimCursor.timestamp();
+            if (oldest >= cutoff) {
+                return 0; // the common case on every append: nothing has expired
+            }
+            removed = removeBlocksBefore(c, cutoff);
+            c = columns;
+        }
+        int first = c.start;
+        int n = c.size;
+        if (c.blocks.length == 0 && first < n && c.timestamps[first] < cutoff) {
+            int keep = lowerBound(c.timestamps, first, n, cutoff);
+            if (keep == n && n == c.timestamps.length) {
+                columns = new Columns(16, NO_BLOCKS, 0); // all expired and full: release the arrays now
+            } else {
+                c.start = keep;
+            }
+            removed += keep - first;
+        }
+        if (removed > 0 && tiers != null) {
+            for (RollupTier tier : tiers) {
+                tier.removeBefore(cutoff);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drops the sealed blocks that expired entirely and hides the expired
+     * readings of the oldest remaining one, stepping a decoder through it
+     * so each reading is decoded once however often the cutoff moves.
+     */
+    private int removeBlocksBefore(Columns c, long cutoff) {
+        CompressedBlock[] blocks = c.blocks;
+        int skip = c.blockSkip;
+        int removed = 0;
+        int expired = 0;
+        while (expired < blocks.length && blocks[expired].lastTimestamp < cutoff) {
+            removed += blocks[expired].count - (expired == 0 ? skip : 0);
+            expired++;
+        }
+        if (expired > 0) {
+            blocks = Arrays.copyOfRange(blocks, expired, blocks.length);
+            skip = 0;
+            trimCursor = null;
+            c = new Columns(c, blocks, 0);
+            columns = c;
+        }
+        if (blocks.length > 0 && blocks[0].firstTimestamp < cutoff) {
+            if (trimCursor == null) {
+                trimCursor = blocks[0].decoder();
+            }
+            while (trimCursor.timestamp() < cutoff) {
+                trimCursor.advance(); // stops in the block, as its last reading is kept
+            }
+            removed += trimCursor.index() - skip;
+            c.blockSkip = trimCursor.index();
+        }
+        return removed;
+    }
+
+    /**
+     * @return number of readings
+     */
+    int size() {
+        Columns c = columns;
+        int size = c.size - c.start - c.blockSkip;
+        for (CompressedBlock block : c.blocks) {
+            size += block.count;
+        }
+        return size;
+    }
+
+    /**
+     * @return timestamp of the newest reading, or Long.MIN_VALUE if empty
+     */
+    long newestTimestamp() {
+        Columns c = columns;
+        int n = c.size;
+        if (n > c.start) {
+            return c.timestamps[n - 1];
+        }
+        return c.blocks.length > 0 ? c.blocks[c.blocks.length - 1].lastTimestamp : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return number of readings the series has room for, including those
+     *         already purged but not yet reclaimed
+     */
+    int capacity() {
+        Columns c = columns;
+        int capacity = c.timestamps.length;
+        for (CompressedBlock block : c.blocks) {
+            capacity += block.count;
+        }
+        return capacity;
+    }
+
+    /**
+     * @return approximate heap size of the readings in bytes
+     */
+    long bytes() {
+        Columns c = columns;
+        long bytes = c.timestamps.length * 16L;
+        for (CompressedBlock block : c.blocks) {
+            bytes += block.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the readings with timestamps in [startTime, endTime], found by
+     * binary search.
+     *
+     * @return a view that creates each record on access
+     */
+    Range range(long startTime, long endTime) {
+        Columns c = columns;
+        CompressedBlock[] blocks = c.blocks;
+        List<CompressedBlock> parts = new ArrayList<>(0);
+        List<int[]> bounds = new ArrayList<>(0);
+        // Skip the blocks that end before the range
+        int low = 0;
+        int high = blocks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].lastTimestamp < startTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int k = low; k < blocks.length && blocks[k].firstTimestamp <= endTime; k++) {
+            CompressedBlock block = blocks[k];
+            int from = k == 0 ? c.blockSkip : 0;
+            int to = block.count;
+            if (block.firstTimestamp < startTime || block.lastTimestamp > endTime) {
+                // Only partly in range: decode to find the bounds
+                long[] timestamps = new long[block.count];
+                block.decode(timestamps, new double[block.count]);
+                from = Math.max(from, lowerBound(timestamps, 0, block.count, startTime));
+                to = upperBound(timestamps, 0, block.count, endTime);
+            }
+            if (to > from) {
+                parts.add(block);
+                bounds.add(new int[] {from, to});
+            }
+        }
+        int first = c.start;
+        int n = c.size;
+        int from = lowerBound(c.timestamps, first, n, startTime);
+        int to = upperBound(c.timestamps, first, n, endTime);
+        if (to > from || parts.isEmpty()) {
+            parts.add(null);
+            bounds.add(new int[] {from, Math.max(from, to)});
+        }
+        return new Range(c, parts, bounds);
+    }
+
+    /**
+     * Summarizes the readings in buckets of a resolution, covering every
+     * bucket that overlaps [startTime, endTime]. Reads the coarsest rollup
+     * tier whose width divides the resolution, or the readings themselves
+     * if none does. Callers hold the owning patient's monitor when the
+     * series has rollups.
+     */
+    List<Rollup> rollups(long startTime, long endTime, long resolution) {
+        long from = Math.floorDiv(startTime, resolution) * resolution;
+        long lastBucket = Math.floorDiv(endTime, resolution) * resolution;
+        long to = lastBucket > Long.MAX_VALUE - resolution ? Long.MAX_VALUE : lastBucket + resolution - 1;
+        RollupTier.Builder builder = new RollupTier.Builder(resolution);
+        if (tiers != null) {
+            for (int i = tiers.length - 1; i >= 0; i--) {
+                if (resolution % tiers[i].width() == 0) {
+                    tiers[i].query(from, to, builder);
+                    return builder.build();
+                }
+            }
+        }
+        Range range = range(from, to);
+        if (range.isEmpty()) {
+            return Collections.emptyList();
+        }
+        for (int i = 0; i < range.size(); i++) {
+            builder.add(range.timestampAt(i), range.valueAt(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return whether the series keeps rollup tiers
+     */
+    boolean hasRollups() {
+        return tiers != null;
+    }
+
+    /**
+     * Doubles the live size, so appends stay amortized O(1), but never keeps
+     * more than twice the live readings once old ones have been purged.
+     */
+    private static int capacityFor(int live, Columns current) {
+        return Math.max(16, Math.min(current.timestamps.length * 2, live * 2));
+    }
+
+    /** First index in [low, n) whose timestamp is at least {@code key}. */
+    private static int lowerBound(long[] timestamps, int low, int n, long key) {
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** First index in [low, n) whose timestamp is greater than {@code key}. */
+    private static int upperBound(long[] timestamps, int low, int n, long key) {
+        return key == Long.MAX_VALUE ? n : lowerBound(timestamps, low, n, key + 1);
+    }
+
+    private static final class Columns {
+        private final long[] timestamps; // the head
+        private final double[] values;
+        private final CompressedBlock[] blocks; // sealed readings, oldest first
+        private volatile int blockSkip; // readings of blocks[0] that have been purged
+        private volatile int start; // head readings before it have been purged
+        private volatile int size;
+
+        private Columns(int capacity, CompressedBlock[] blocks, int blockSkip) {
+            timestamps = new long[capacity];
+            values = new double[capacity];
+            this.blocks = blocks;
+            this.blockSkip = blockSkip;
+        }
+
+        /** Shares the head of another Columns, which is no longer written. */
+        private Columns(Columns head, CompressedBlock[] blocks, int blockSkip) {
+            timestamps = head.timestamps;
+            values = head.values;
+            this.blocks = blocks;
+            this.blockSkip = blockSkip;
+            start = head.start;
+            size = head.size;
+        }
+    }
+
+    /**
+     * A contiguous run of a series, read as {@link PatientRecord}s. The run
+     * is made of segments, a slice of a sealed block or of the head each;
+     * a block is decoded when a reading in it is first accessed, and the
+     * view keeps the last decoded segment.
+     */
+    final class Range extends AbstractList<PatientRecord> implements RandomAccess {
+        private final long[] headTimestamps;
+        private final double[] headValues;
+        private final CompressedBlock[] blocks; // per segment, null for the head
+        private final int[] offsets; // per segment, index of its first reading in its block or the head
+        private final int[] ends; // per segment, index after its last reading in this range
+        private Segment current;
+
+        private Range(Columns columns, List<CompressedBlock> parts, List<int[]> bounds) {
+            this.headTimestamps = columns.timestamps;
+            this.headValues = columns.values;
+            this.blocks = parts.toArray(new CompressedBlock[0]);
+            this.offsets = new int[blocks.length];
+            this.ends = new int[blocks.length];
+            int end = 0;
+            for (int k = 0; k < blocks.length; k++) {
+                offsets[k] = bounds.get(k)[0];
+                end += bounds.get(k)[1] - offsets[k];
+                ends[k] = end;
+            }
+            if (blocks.length == 1 && blocks[0] == null) {
+                current = new Segment(0, end, offsets[0], headTimestamps, headValues);
+            }
+        }
+
+        @Override
+        public PatientRecord get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return new PatientRecord(patientId, valueAt(index), recordType, timestampAt(index));
+        }
+
+        @Override
+        public int size() {
+            return ends[ends.length - 1];
+        }
+
+        long timestampAt(int index) {
+            Segment s = segment(index);
+            return s.timestamps[s.offset + index - s.base];
+        }
+
+        double valueAt(int index) {
+            Segment s = segment(index);
+            return s.values[s.offset + index - s.base];
+        }
+
+        int recordType() {
+            return recordType;
+        }
+
+        private Segment segment(int index) {
+            Segment s = current;
+            if (s != null && index >= s.base && index < s.end) {
+                return s;
+            }
+            int k = 0;
+            int high = ends.length - 1;
+            while (k < high) {
+                int mid = (k + high) >>> 1;
+                if (ends[mid] <= index) {
+                    k = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            int base = k == 0 ? 0 : ends[k - 1];
+            CompressedBlock block = blocks[k];
+            if (block == null) {
+                s = new Segment(base, ends[k], offsets[k], headTimestamps, headValues);
+            } else {
+                long[] timestamps = new long[block.count];
+                double[] values = new double[block.count];
+                block.decode(timestamps, values);
+                s = new Segment(base, ends[k], offsets[k], timestamps, values);
+            }
+            current = s; // immutable, so safe to share between threads
+            return s;
+        }
+    }
+
+    /** One segment of a {@link Range}, with its readings decoded. */
+    private static final class Segment {
+        private final int base;
+        private final int end;
+        private final int offset;
+        private final long[] timestamps;
+        private final double[] values;
+
+        private Segment(int base, int end, int offset, long[] timestamps, double[] values) {
+            this.base = base;
+            this.end = end;
+            this.offset = offset;
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Several ranges merged in timestamp order. The order is computed once,
+     * six bytes per reading; records are created on access.
+     */
+    static final class Merged extends AbstractList<PatientRecord> implements RandomAccess {
+        private final int patientId;
+        private final Range[] ranges;
+        private final short[] rangeOf;
+        private final int[] indexIn;
+
+        Merged(int patientId, List<Range> parts) {
+            this.patientId = patientId;
+            this.ranges = parts.toArray(new Range[0]);
+            int total = 0;
+            for (Range range : ranges) {
+                total += range.size();
+            }
+            rangeOf = new short[total];
+            indexIn = new int[total];
+            int[] next = new int[ranges.length];
+            for (int out = 0; out < total; out++) {
+                int best = -1;
+                for (int r = 0; r < ranges.length; r++) {
+                    if (next[r] < ranges[r].size()
+                            && (best < 0 || ranges[r].timestampAt(next[r]) < ranges[best].timestampAt(next[best]))) {
+                        best = r;
+                    }
+                }
+                rangeOf[out] = (short) best;
+                indexIn[out] = next[best]++;
+            }
+        }
+
+        @Override
+        public PatientRecord get(int index) {
+            Range range = ranges[rangeOf[index]];
+            int i = indexIn[index];
+            return new PatientRecord(patientId, range.valueAt(i), range.recordType(), range.timestampAt(i));
+        }
+
+        @Override
+        public int size() {
+            return indexIn.length;
+        }
+    }
+}
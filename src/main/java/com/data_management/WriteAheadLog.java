@@ -0,0 +1,576 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Makes a {@link DataStorage} durable: every reading is appended to a
+ * binary log before it is stored, and snapshots of all patients let a
+ * restart skip most of the log.
+ * <p>
+ * The directory holds {@code wal-NNNNNN.log} segments and
+ * {@code snapshot-NNNNNN.snap} files, little-endian:
+ * <pre>
+ *   segment:  long magic, int version, int 0, long first sequence number, long 0
+ *             then batches of: int length, int CRC32C, length bytes of frames
+ *   frame:    int recordType, int patientId, long timestamp, double value
+ *             or, before a type's first reading in the segment:
+ *             int -(recordType + 1), short nameLength, name in UTF-8
+ * </pre>
+ * Appends go into a buffer that is written as one batch when it fills and
+ * forced to disk every sync interval, so a crash loses at most that
+ * interval and a torn last batch fails its checksum and is ignored.
+ * <p>
+ * Each reading has a sequence number, its position in the log. A snapshot
+ * starts a new segment and then copies the patients one at a time; for each
+ * it records the sequence number at the time of the copy, so recovery loads
+ * the newest snapshot and replays only the readings the copy missed. Older
+ * segments and snapshots are deleted once a snapshot is complete.
+ * <p>
+ * Typical use: {@code storage.attachLog(new WriteAheadLog(dir))}, which
+ * recovers and then logs; see {@link DataStorage#attachLog(WriteAheadLog)}.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    /** Default time between forcing the log to disk. */
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+
+    static final long SEGMENT_MAGIC = 0x314C415744524143L; // "CARDWAL1" read little-endian
+    static final long SNAPSHOT_MAGIC = 0x31504E5344524143L; // "CARDSNP1"
+    static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 32;
+    private static final int BATCH_HEADER_BYTES = 8;
+    private static final int FRAME_BYTES = 24;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int SNAPSHOT_CHUNK = 1 << 16; // readings per column chunk
+
+    private final Path directory;
+    private final long syncIntervalMillis;
+    private final long maxSegmentBytes;
+    private final Object snapshotLock = new Object();
+
+    // Guarded by this
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private FileChannel channel;
+    private Path segmentPath;
+    private long segmentNumber;
+    private long nextSequence;
+    private boolean[] defined = new boolean[16]; // record types named in the current segment
+    private boolean closed;
+
+    private ScheduledExecutorService syncer;
+
+    /**
+     * Opens a log that is forced to disk every
+     * {@value #DEFAULT_SYNC_INTERVAL_MILLIS} ms.
+     *
+     * @param directory directory for the segments and snapshots
+     * @throws IOException if the directory cannot be created
+     */
+    public WriteAheadLog(String directory) throws IOException {
+        this(directory, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param directory          directory for the segments and snapshots
+     * @param syncIntervalMillis time between forcing the log to disk, the
+     *                           most a crash can lose; 0 to only force on
+     *                           {@link #sync()} and {@link #close()}
+     * @throws IOException if the directory cannot be created
+     */
+    public WriteAheadLog(String directory, long syncIntervalMillis) throws IOException {
+        this(directory, syncIntervalMillis, MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param maxSegmentBytes size after which a new segment is started
+     */
+    WriteAheadLog(String directory, long syncIntervalMillis, long maxSegmentBytes) throws IOException {
+        this.directory = Paths.get(directory);
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * Loads the newest snapshot and replays the log after it into a
+     * storage, then starts a new segment for the readings that follow.
+     * Must be called once, before anything is logged.
+     *
+     * @param storage the storage to fill, normally empty and not logging yet
+     * @return number of readings loaded
+     * @throws IOException if reading the files or starting a segment fails
+     */
+    public synchronized long recover(DataStorage storage) throws IOException {
+        if (channel != null || closed) {
+            throw new IllegalStateException("The log has already been recovered");
+        }
+        List<Long> snapshots = numbered("snapshot-", ".snap");
+        List<Long> segments = numbered("wal-", ".log");
+        long loaded = 0;
+        long firstSegment = 0;
+        Map<Integer, Long> copiedUpTo = new HashMap<>();
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+            loaded += loadSnapshot(snapshotPath(firstSegment), storage, copiedUpTo);
+        }
+        long filterUntil = Long.MIN_VALUE; // no reading at or after it was copied
+        for (long sequence : copiedUpTo.values()) {
+            filterUntil = Math.max(filterUntil, sequence);
+        }
+        long sequence = 0;
+        for (long number : segments) {
+            if (number >= firstSegment) {
+                long[] result = replay(segmentPath(number), storage, copiedUpTo, filterUntil);
+                loaded += result[0];
+                sequence = Math.max(sequence, result[1]);
+            }
+        }
+        long lastSegment = Math.max(firstSegment, segments.isEmpty() ? 0 : segments.get(segments.size() - 1));
+        nextSequence = Math.max(sequence, filterUntil);
+        openSegment(lastSegment + 1);
+        if (syncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(() -> {
+                try {
+                    sync();
+                } catch (IOException e) {
+                    System.err.println("Forcing the write-ahead log to disk failed: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return loaded;
+    }
+
+    /**
+     * Appends a reading. Callers hold the patient's monitor while appending
+     * and storing, which is what lets snapshots be copied consistently.
+     */
+    synchronized void append(int patientId, int recordType, long timestamp, double value) {
+        if (channel == null) {
+            throw new IllegalStateException(closed ? "The log is closed" : "Recover the log before appending");
+        }
+        try {
+            // Room for the name and the frame together, so no rotation falls between them
+            byte[] name = isDefined(recordType) ? null : nameOf(recordType);
+            ensureRoom(FRAME_BYTES + (name == null ? 0 : 6 + name.length));
+            if (!isDefined(recordType)) { // a rotation just now starts a segment that names no types
+                if (name == null) {
+                    name = nameOf(recordType);
+                }
+                buffer.putInt(-(recordType + 1)).putShort((short) name.length).put(name);
+                if (recordType >= defined.length) {
+                    defined = Arrays.copyOf(defined, Math.max(recordType + 1, defined.length * 2));
+                }
+                defined[recordType] = true;
+            }
+            buffer.putInt(recordType).putInt(patientId).putLong(timestamp).putDouble(value);
+            nextSequence++;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + segmentPath, e);
+        }
+    }
+
+    /**
+     * Writes the buffered readings and forces them to disk.
+     *
+     * @throws IOException if writing fails
+     */
+    public void sync() throws IOException {
+        FileChannel target;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            writeBatch();
+            target = channel;
+        }
+        try {
+            target.force(false); // outside the lock, so appends continue meanwhile
+        } catch (ClosedChannelException e) {
+            // rotated or closed meanwhile, which forced it already
+        }
+    }
+
+    /**
+     * Writes a snapshot of a storage, then deletes the segments and
+     * snapshots it makes obsolete. Appends continue while it runs; each
+     * patient is only held while its series are captured.
+     *
+     * @param storage the storage this log belongs to
+     * @return number of readings in the snapshot
+     * @throws IOException if writing the snapshot fails
+     */
+    public long snapshot(DataStorage storage) throws IOException {
+        synchronized (snapshotLock) {
+            long startSegment;
+            synchronized (this) {
+                if (channel == null) {
+                    throw new IllegalStateException("The log is not open");
+                }
+                rotate();
+                startSegment = segmentNumber;
+            }
+            Path target = snapshotPath(startSegment);
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            long written = 0;
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer data = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                data.putLong(SNAPSHOT_MAGIC).putInt(VERSION).putInt(0);
+                for (Patient patient : storage.getAllPatients()) {
+                    long copiedUpTo;
+                    List<TimeSeries.Range> series;
+                    synchronized (patient) {
+                        synchronized (this) {
+                            copiedUpTo = nextSequence;
+                        }
+                        series = patient.allSeries();
+                    }
+                    room(out, data, 17);
+                    data.put((byte) 1).putInt(patient.getPatientId()).putLong(copiedUpTo).putInt(series.size());
+                    for (TimeSeries.Range range : series) {
+                        written += writeSeries(out, data, range);
+                    }
+                }
+                room(out, data, 17);
+                data.put((byte) 0).putLong(written).putLong(SNAPSHOT_MAGIC);
+                drain(out, data);
+                out.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (long number : numbered("snapshot-", ".snap")) {
+                if (number < startSegment) {
+                    Files.deleteIfExists(snapshotPath(number));
+                }
+            }
+            for (long number : numbered("wal-", ".log")) {
+                if (number < startSegment) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Forces the log to disk and closes it. Appending afterwards fails.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            // Not shutdownNow: interrupting a thread in force() closes the channel
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null) {
+                writeBatch();
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+            closed = true;
+        }
+    }
+
+    /**
+     * @return sequence number the next appended reading will get
+     */
+    public synchronized long getSequence() {
+        return nextSequence;
+    }
+
+    // ---- writing ----
+
+    private boolean isDefined(int recordType) {
+        return recordType < defined.length && defined[recordType];
+    }
+
+    private static byte[] nameOf(int recordType) {
+        return RecordTypes.name(recordType).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            writeBatch();
+        }
+    }
+
+    /** Writes the buffered frames as one checksummed batch. */
+    private void writeBatch() throws IOException {
+        int length = buffer.position() - BATCH_HEADER_BYTES;
+        if (length <= 0) {
+            return;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), BATCH_HEADER_BYTES, length);
+        buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear().position(BATCH_HEADER_BYTES);
+        if (channel.position() >= maxSegmentBytes) {
+            rotate();
+        }
+    }
+
+    private void rotate() throws IOException {
+        writeBatch();
+        channel.force(false);
+        channel.close();
+        openSegment(segmentNumber + 1);
+    }
+
+    private void openSegment(long number) throws IOException {
+        segmentNumber = number;
+        segmentPath = segmentPath(number);
+        channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(SEGMENT_MAGIC).putInt(VERSION).putInt(0).putLong(nextSequence).putLong(0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        Arrays.fill(defined, false);
+        buffer.clear().position(BATCH_HEADER_BYTES);
+    }
+
+    private static long writeSeries(FileChannel out, ByteBuffer data, TimeSeries.Range range) throws IOException {
+        byte[] name = RecordTypes.name(range.recordType()).getBytes(StandardCharsets.UTF_8);
+        room(out, data, 2 + name.length);
+        data.putShort((short) name.length).put(name);
+        int n = range.size();
+        for (int from = 0; from < n; from += SNAPSHOT_CHUNK) {
+            int to = Math.min(n, from + SNAPSHOT_CHUNK);
+            room(out, data, 4);
+            data.putInt(to - from);
+            for (int i = from; i < to; i++) {
+                room(out, data, 8);
+                data.putLong(range.timestampAt(i));
+            }
+            for (int i = from; i < to; i++) {
+                room(out, data, 8);
+                data.putDouble(range.valueAt(i));
+            }
+        }
+        room(out, data, 4);
+        data.putInt(0);
+        return n;
+    }
+
+    private static void room(FileChannel out, ByteBuffer data, int bytes) throws IOException {
+        if (data.remaining() < bytes) {
+            drain(out, data);
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer data) throws IOException {
+        data.flip();
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+        data.clear();
+    }
+
+    // ---- recovery ----
+
+    private long loadSnapshot(Path path, DataStorage storage, Map<Integer, Long> copiedUpTo) throws IOException {
+        long loaded = 0;
+        long[] timestamps = new long[SNAPSHOT_CHUNK];
+        double[] values = new double[SNAPSHOT_CHUNK];
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            data.flip();
+            fill(in, data, 16, path);
+            if (data.getLong() != SNAPSHOT_MAGIC || data.getInt() != VERSION) {
+                throw new IOException(path + " is not a snapshot");
+            }
+            data.getInt();
+            while (true) {
+                fill(in, data, 1, path);
+                if (data.get() == 0) {
+                    break;
+                }
+                fill(in, data, 16, path);
+                Patient patient = storage.patient(data.getInt());
+                long sequence = data.getLong();
+                copiedUpTo.put(patient.getPatientId(), sequence);
+                int seriesCount = data.getInt();
+                for (int s = 0; s < seriesCount; s++) {
+                    fill(in, data, 2, path);
+                    byte[] name = new byte[data.getShort()];
+                    fill(in, data, name.length, path);
+                    data.get(name);
+                    int recordType = RecordTypes.codeOf(new String(name, StandardCharsets.UTF_8));
+                    while (true) {
+                        fill(in, data, 4, path);
+                        int n = data.getInt();
+                        if (n == 0) {
+                            break;
+                        }
+                        readLongs(in, data, timestamps, n, path);
+                        readDoubles(in, data, values, n, path);
+                        patient.addRecords(recordType, timestamps, values, n);
+                        loaded += n;
+                    }
+                }
+            }
+            fill(in, data, 16, path);
+            if (data.getLong() != loaded || data.getLong() != SNAPSHOT_MAGIC) {
+                throw new IOException(path + " is incomplete");
+            }
+        }
+        return loaded;
+    }
+
+    private static void fill(FileChannel in, ByteBuffer data, int bytes, Path path) throws IOException {
+        if (data.remaining() >= bytes) {
+            return;
+        }
+        data.compact();
+        while (data.position() < bytes) {
+            if (in.read(data) < 0) {
+                throw new IOException(path + " ends unexpectedly");
+            }
+        }
+        data.flip();
+    }
+
+    private static void readLongs(FileChannel in, ByteBuffer data, long[] into, int n, Path path)
+            throws IOException {
+        for (int done = 0; done < n; ) {
+            fill(in, data, 8, path);
+            int count = Math.min(n - done, data.remaining() / 8);
+            data.asLongBuffer().get(into, done, count);
+            data.position(data.position() + count * 8);
+            done += count;
+        }
+    }
+
+    private static void readDoubles(FileChannel in, ByteBuffer data, double[] into, int n, Path path)
+            throws IOException {
+        for (int done = 0; done < n; ) {
+            fill(in, data, 8, path);
+            int count = Math.min(n - done, data.remaining() / 8);
+            data.asDoubleBuffer().get(into, done, count);
+            data.position(data.position() + count * 8);
+            done += count;
+        }
+    }
+
+    /**
+     * Replays a segment up to its last intact batch.
+     *
+     * @return readings stored, and the sequence number after the segment
+     */
+    private static long[] replay(Path path, DataStorage storage, Map<Integer, Long> copiedUpTo, long filterUntil)
+            throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < SEGMENT_HEADER_BYTES || data.getLong(0) != SEGMENT_MAGIC || data.getInt(8) != VERSION) {
+            throw new IOException(path + " is not a write-ahead log segment");
+        }
+        long sequence = data.getLong(16);
+        long stored = 0;
+        int[] recordTypes = new int[16]; // code in the segment + 1 -> RecordTypes code + 1
+        CRC32C crc = new CRC32C();
+        int position = SEGMENT_HEADER_BYTES;
+        while (position + BATCH_HEADER_BYTES <= data.limit()) {
+            int length = data.getInt(position);
+            int end = position + BATCH_HEADER_BYTES + length;
+            if (length <= 0 || end > data.limit()) {
+                break; // torn write at the end of the log
+            }
+            crc.reset();
+            crc.update(data.duplicate().position(position + BATCH_HEADER_BYTES).limit(end));
+            if ((int) crc.getValue() != data.getInt(position + 4)) {
+                break;
+            }
+            int frame = position + BATCH_HEADER_BYTES;
+            while (frame < end) {
+                int type = data.getInt(frame);
+                if (type < 0) {
+                    int code = -type - 1;
+                    int nameLength = data.getShort(frame + 4);
+                    byte[] name = new byte[nameLength];
+                    data.position(frame + 6);
+                    data.get(name);
+                    if (code + 1 >= recordTypes.length) {
+                        recordTypes = Arrays.copyOf(recordTypes, Math.max(code + 2, recordTypes.length * 2));
+                    }
+                    recordTypes[code + 1] = RecordTypes.codeOf(new String(name, StandardCharsets.UTF_8)) + 1;
+                    frame += 6 + nameLength;
+                    continue;
+                }
+                int patientId = data.getInt(frame + 4);
+                if (sequence >= filterUntil || sequence >= copiedUpTo.getOrDefault(patientId, Long.MIN_VALUE)) {
+                    int recordType = type + 1 < recordTypes.length ? recordTypes[type + 1] - 1 : -1;
+                    if (recordType < 0) {
+                        throw new IOException(path + " uses record type " + type + " before naming it");
+                    }
+                    storage.addPatientData(patientId, data.getDouble(frame + 16), recordType, data.getLong(frame + 8));
+                    stored++;
+                }
+                sequence++;
+                frame += FRAME_BYTES;
+            }
+            position = end;
+        }
+        return new long[] {stored, sequence};
+    }
+
+    private List<Long> numbered(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("wal-%06d.log", number));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%06d.snap", number));
+    }
+}
@@ -5,10 +5,15 @@ import com.data_management.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
- * Unit tests for {@link AlertGenerator#evaluateData(Patient)}.
+ * Unit tests for {@link AlertGenerator#evaluateData(Patient)} and
+ * {@link AlertGenerator#evaluateReading(int, String, double, long)}.
  * <p>
  * These tests verify that calling evaluateData with various critical
  * conditions does not throw exceptions and (in a real system) would
@@ -55,4 +60,49 @@ class AlertGeneratorTest {
         // No exception thrown indicates that evaluateData handled it gracefully
         assertTrue(true, "evaluateData should handle low oxygen saturation");
     }
+
+    /**
+     * Test that a reading evaluated on arrival sees the patient's
+     * stored readings of the last minute.
+     */
+    @Test
+    void testEvaluateReadingUsesStoredHistory() {
+        storage.addPatientData(3, 90.0, "Saturation", 10_000L);
+        generator.evaluateReading(3, "Saturation", 90.0, 10_000L);
+        assertEquals(1, generator.getAlertCount());
+
+        storage.addPatientData(3, 85.0, "SystolicPressure", 40_000L);
+        generator.evaluateReading(3, "SystolicPressure", 85.0, 40_000L);
+        // critical pressure, plus hypotensive hypoxemia from the stored saturation
+        assertEquals(3, generator.getAlertCount());
+
+        storage.addPatientData(3, 85.0, "SystolicPressure", 100_000L);
+        generator.evaluateReading(3, "SystolicPressure", 85.0, 100_000L);
+        // the saturation reading is now more than a minute old
+        assertEquals(4, generator.getAlertCount());
+    }
+
+    /**
+     * Test that evaluateData raises alerts in timestamp order across
+     * record types, and ignores types without conditions.
+     */
+    @Test
+    void testEvaluateDataRaisesAlertsInTimestampOrder() {
+        List<Long> alertTimes = new ArrayList<>();
+        AlertGenerator recording = new AlertGenerator(storage) {
+            @Override
+            protected void triggerAlert(Alert alert) {
+                alertTimes.add(alert.getTimestamp());
+            }
+        };
+        Patient patient = new Patient(4);
+        patient.addRecord(90.0, "Saturation", 3_000L);
+        patient.addRecord(200.0, "SystolicPressure", 1_000L);
+        patient.addRecord(0.5, "ECG", 2_000L);
+        patient.addRecord(91.0, "Saturation", 5_000L);
+        patient.addRecord(190.0, "SystolicPressure", 4_000L);
+        recording.evaluateData(patient);
+
+        assertEquals(Arrays.asList(1_000L, 3_000L, 4_000L, 5_000L), alertTimes);
+    }
 }
@@ -0,0 +1,208 @@
+package com.cardio_generator.outputs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncOutputStrategy}: delivery from many producers and
+ * the three overflow policies.
+ */
+class AsyncOutputStrategyTest {
+
+    /**
+     * Collects the patient IDs it receives; optionally holds the consumer
+     * until released so the ring can be filled.
+     */
+    private static class Collector implements OutputStrategy {
+        final List<Integer> patientIds = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        final CountDownLatch gate;
+        final CountDownLatch entered = new CountDownLatch(1);
+        boolean closed;
+
+        Collector(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, String label, String data) {
+            hold();
+            patientIds.add(patientId);
+            texts.add(label + "=" + data);
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, int labelId, double value) {
+            hold();
+            patientIds.add(patientId);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private void hold() {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * With the blocking policy every reading from every producer arrives,
+     * in order per producer, even through a small ring.
+     */
+    @Test
+    void blockingPolicyDeliversEverything() throws InterruptedException {
+        Collector collector = new Collector(new CountDownLatch(0));
+        AsyncOutputStrategy async = new AsyncOutputStrategy(collector, 16, AsyncOutputStrategy.OverflowPolicy.BLOCK);
+
+        int producers = 4;
+        int perProducer = 10_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    async.output(base + i, i, LabelRegistry.ECG, i);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        async.close();
+
+        assertTrue(collector.closed);
+        assertEquals(producers * perProducer, collector.patientIds.size());
+        assertEquals(producers * perProducer, async.getQueuedCount());
+        assertEquals(0, async.getDroppedCount());
+        int[] last = new int[producers];
+        java.util.Arrays.fill(last, -1);
+        for (int id : collector.patientIds) {
+            int producer = id / perProducer;
+            assertTrue(id > last[producer], "readings of one producer must stay in order");
+            last[producer] = id;
+        }
+    }
+
+    /**
+     * Dropping the newest keeps the readings that were queued first.
+     */
+    @Test
+    void dropNewestDiscardsIncomingReadings() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        Collector collector = new Collector(gate);
+        AsyncOutputStrategy async = new AsyncOutputStrategy(collector, 8,
+                AsyncOutputStrategy.OverflowPolicy.DROP_NEWEST);
+
+        async.output(0, 0, LabelRegistry.ECG, 0);
+        collector.entered.await(); // the consumer now holds reading 0
+        for (int i = 1; i <= 20; i++) {
+            async.output(i, i, LabelRegistry.ECG, i);
+        }
+        gate.countDown();
+        async.close();
+
+        assertEquals(12, async.getDroppedCount());
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8), collector.patientIds);
+    }
+
+    /**
+     * Dropping the oldest keeps the most recent readings, text included.
+     */
+    @Test
+    void dropOldestKeepsLatestReadings() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        Collector collector = new Collector(gate);
+        AsyncOutputStrategy async = new AsyncOutputStrategy(collector, 8,
+                AsyncOutputStrategy.OverflowPolicy.DROP_OLDEST);
+
+        async.output(0, 0, LabelRegistry.ECG, 0);
+        collector.entered.await();
+        for (int i = 1; i < 20; i++) {
+            async.output(i, i, LabelRegistry.ECG, i);
+        }
+        async.output(20, 20, "Alert", "triggered");
+        gate.countDown();
+        async.close();
+
+        assertEquals(12, async.getDroppedCount());
+        assertEquals(List.of(0, 13, 14, 15, 16, 17, 18, 19, 20), collector.patientIds);
+        assertEquals(List.of("Alert=triggered"), collector.texts);
+    }
+
+    /**
+     * A producer blocked on a full ring gives up and counts its reading as
+     * dropped once the strategy is closed, instead of waiting for a slot.
+     */
+    @Test
+    void closingReleasesBlockedProducers() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        Collector collector = new Collector(gate);
+        AsyncOutputStrategy async = new AsyncOutputStrategy(collector, 4, AsyncOutputStrategy.OverflowPolicy.BLOCK);
+
+        async.output(0, 0, LabelRegistry.ECG, 0);
+        collector.entered.await();
+        int capacity = async.getCapacity();
+        for (int i = 1; i <= capacity; i++) {
+            async.output(i, i, LabelRegistry.ECG, i);
+        }
+        Thread producer = new Thread(() -> async.output(capacity + 1, 0, LabelRegistry.ECG, 0));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "the ring is full, so the producer should block");
+
+        Thread closer = new Thread(async::close);
+        closer.start();
+        producer.join(10_000);
+        assertFalse(producer.isAlive(), "the producer should give up once closed");
+        gate.countDown();
+        closer.join();
+
+        assertEquals(1, async.getDroppedCount());
+        assertEquals(List.of(0, 1, 2, 3, 4), collector.patientIds);
+        assertTrue(collector.closed);
+    }
+
+    /**
+     * Producers racing close() either have their reading delivered or
+     * counted as dropped; nothing is counted as queued and then lost.
+     */
+    @Test
+    void readingsRacingCloseAreDeliveredOrDropped() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            Collector collector = new Collector(new CountDownLatch(0));
+            AsyncOutputStrategy async = new AsyncOutputStrategy(collector, 64,
+                    AsyncOutputStrategy.OverflowPolicy.BLOCK);
+            int perProducer = 2_000;
+            Thread[] producers = new Thread[4];
+            for (int p = 0; p < producers.length; p++) {
+                producers[p] = new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        async.output(i, i, LabelRegistry.ECG, i);
+                    }
+                });
+                producers[p].start();
+            }
+            Thread.sleep(round % 3);
+            async.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertEquals(async.getQueuedCount(), collector.patientIds.size(), "round " + round);
+            assertEquals(producers.length * perProducer, async.getQueuedCount() + async.getDroppedCount());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cardio_generator.outputs;
+
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Readings flowing from {@link DataStorageOutputStrategy} into storage and
+ * alert evaluation.
+ */
+class DataStorageOutputStrategyTest {
+
+    @Test
+    void storesReadingsAndEvaluatesAlertsOnArrival() throws Exception {
+        DataStorage storage = new DataStorage();
+        AlertGenerator alerts = new AlertGenerator(storage);
+        DataStorageOutputStrategy output = new DataStorageOutputStrategy(storage, alerts);
+
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            int patientId = w + 1;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    output.output(patientId, 1000L + i, LabelRegistry.ECG, i);
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(0, alerts.getAlertCount());
+
+        output.output(5, 2000L, "Saturation", "91.0%");
+        assertEquals(1, alerts.getAlertCount());
+        output.output(5, 2010L, LabelRegistry.SYSTOLIC_PRESSURE, 85.0);
+        assertEquals(3, alerts.getAlertCount()); // critical pressure and hypotensive hypoxemia
+        output.output(5, 2020L, "Alert", "triggered");
+
+        assertEquals(4002, output.getStoredCount());
+        assertEquals(1, output.getSkippedCount());
+        for (int patientId = 1; patientId <= 4; patientId++) {
+            assertEquals(1000, storage.getRecords(patientId, 0, Long.MAX_VALUE).size());
+        }
+        List<PatientRecord> saturation = storage.getRecords(5, 2000L, 2000L);
+        assertEquals(91.0, saturation.get(0).getMeasurementValue());
+    }
+}
@@ -0,0 +1,85 @@
+package com.cardio_generator.outputs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Buffering and closing of {@link FileOutputStrategy} under concurrent
+ * writers.
+ */
+class FileOutputStrategyTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void everyRecordFromConcurrentWritersArrivesExactlyOnce() throws Exception {
+        // Small buffers so writers regularly flush them themselves
+        FileOutputStrategy output = new FileOutputStrategy(tempDir.toString(),
+                FileOutputStrategy.FsyncPolicy.NEVER, 1024, 5);
+        int perWriter = 5_000;
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            int patientId = w + 1;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    if (i % 2 == 0) {
+                        output.output(patientId, i, LabelRegistry.ECG, i);
+                    } else {
+                        output.output(patientId, i, "Alert", "triggered");
+                    }
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        output.close();
+
+        List<String> ecg = Files.readAllLines(tempDir.resolve("ECG.txt"));
+        List<String> alerts = Files.readAllLines(tempDir.resolve("Alert.txt"));
+        assertEquals(writers.length * perWriter / 2, ecg.size());
+        assertEquals(writers.length * perWriter / 2, alerts.size());
+
+        Set<String> keys = new HashSet<>();
+        for (String line : ecg) {
+            assertTrue(line.startsWith("Patient ID: ") && line.contains(", Label: ECG, Data: "), line);
+            assertTrue(keys.add(line.substring(0, line.indexOf(", Label:"))), "duplicate " + line);
+        }
+        for (String line : alerts) {
+            assertTrue(line.endsWith(", Label: Alert, Data: triggered"), line);
+            assertTrue(keys.add(line.substring(0, line.indexOf(", Label:"))), "duplicate " + line);
+        }
+        for (int patientId = 1; patientId <= writers.length; patientId++) {
+            for (int i = 0; i < perWriter; i++) {
+                assertTrue(keys.contains("Patient ID: " + patientId + ", Timestamp: " + i),
+                        "missing patient " + patientId + " at " + i);
+            }
+        }
+    }
+
+    @Test
+    void recordsOutputAfterCloseAreDropped() throws Exception {
+        FileOutputStrategy output = new FileOutputStrategy(tempDir.toString());
+        output.output(1, 1000L, LabelRegistry.ECG, 0.5);
+        output.close();
+
+        output.output(1, 2000L, LabelRegistry.ECG, 0.75);
+        output.output(2, 2000L, "Saturation", "97.0%");
+        output.close();
+
+        List<String> ecg = Files.readAllLines(tempDir.resolve("ECG.txt"));
+        assertEquals(1, ecg.size());
+        assertTrue(ecg.get(0).startsWith("Patient ID: 1, Timestamp: 1000,"), ecg.get(0));
+        assertFalse(Files.exists(tempDir.resolve("Saturation.txt")));
+    }
+}
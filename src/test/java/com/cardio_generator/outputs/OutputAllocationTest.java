@@ -0,0 +1,171 @@
+package com.cardio_generator.outputs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the typed {@link OutputStrategy#output(int, long, int, double)}
+ * path: records must match the string-based format, and writing them must
+ * not allocate per reading once the buffers have warmed up.
+ */
+class OutputAllocationTest {
+
+    private static final int WARMUP_RECORDS = 200_000;
+    private static final int MEASURED_RECORDS = 100_000;
+
+    /**
+     * The typed overload prints exactly what the string overload prints.
+     */
+    @Test
+    void typedOutputMatchesStringOutput() {
+        ByteArrayOutputStream typed = new ByteArrayOutputStream();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ConsoleOutputStrategy typedOut = new ConsoleOutputStrategy(new PrintStream(typed));
+        ConsoleOutputStrategy textOut = new ConsoleOutputStrategy(new PrintStream(text));
+
+        typedOut.output(7, 1700000000000L, LabelRegistry.SATURATION, 97.0);
+        textOut.output(7, 1700000000000L, "Saturation", "97.0%");
+        typedOut.output(3, 1700000000500L, LabelRegistry.ECG, -0.123456789);
+        textOut.output(3, 1700000000500L, "ECG", Double.toString(-0.123456789));
+
+        assertEquals(text.toString(), typed.toString());
+        assertTrue(typed.toString().startsWith("Patient ID: 7, Timestamp: 1700000000000, Label: Saturation, Data: 97.0%"));
+    }
+
+    /**
+     * Batches are printed in the same format as single readings.
+     */
+    @Test
+    void batchOutputMatchesSingleOutput() {
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        ByteArrayOutputStream batched = new ByteArrayOutputStream();
+        ConsoleOutputStrategy singleOut = new ConsoleOutputStrategy(new PrintStream(single));
+        ConsoleOutputStrategy batchOut = new ConsoleOutputStrategy(new PrintStream(batched));
+
+        ReadingBatch batch = new ReadingBatch(4);
+        batch.add(1, 1000L, LabelRegistry.SYSTOLIC_PRESSURE, 120.0);
+        batch.add(1, 1000L, LabelRegistry.DIASTOLIC_PRESSURE, 80.0);
+        batch.add(2, 1000L, LabelRegistry.ALERT, "triggered");
+        batchOut.output(batch);
+
+        singleOut.output(1, 1000L, LabelRegistry.SYSTOLIC_PRESSURE, 120.0);
+        singleOut.output(1, 1000L, LabelRegistry.DIASTOLIC_PRESSURE, 80.0);
+        singleOut.output(2, 1000L, "Alert", "triggered");
+
+        assertEquals(single.toString(), batched.toString());
+    }
+
+    /**
+     * After warm-up, printing numeric readings allocates nothing beyond what
+     * the JDK's own double-to-text conversion needs. That conversion is
+     * allocation-free up to Java 17; newer JDKs allocate a small scratch
+     * buffer per value, which is measured separately and subtracted.
+     */
+    @Test
+    void typedOutputDoesNotAllocatePerReading() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        StringBuilder scratch = new StringBuilder(64);
+        appendValues(scratch, WARMUP_RECORDS);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        appendValues(scratch, MEASURED_RECORDS);
+        long conversion = threads.getThreadAllocatedBytes(threadId) - before;
+
+        OutputStrategy out = new ConsoleOutputStrategy(new PrintStream(OutputStream.nullOutputStream()));
+        writeReadings(out, WARMUP_RECORDS);
+        before = threads.getThreadAllocatedBytes(threadId);
+        writeReadings(out, MEASURED_RECORDS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // The formatted strings alone would be well over 100 bytes per record
+        double perRecord = (double) (allocated - conversion) / MEASURED_RECORDS;
+        assertTrue(perRecord < 1.0, "allocated " + perRecord + " bytes per record");
+    }
+
+    /**
+     * Sealing TCP chunks, including the timed flushes of partial ones,
+     * reuses chunk buffers once a client has written them instead of
+     * allocating a fresh one per chunk.
+     */
+    @Test
+    void tcpOutputReusesChunkBuffers() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        StringBuilder scratch = new StringBuilder(64);
+        appendValues(scratch, WARMUP_RECORDS);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        appendValues(scratch, MEASURED_RECORDS);
+        long conversion = threads.getThreadAllocatedBytes(threadId) - before;
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        TcpOutputStrategy tcp = new TcpOutputStrategy(port, Executors.newSingleThreadExecutor(), true);
+        try (Socket client = new Socket("localhost", port)) {
+            Thread reader = new Thread(() -> discard(client));
+            reader.start();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (tcp.getClientCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            writeReadings(tcp, WARMUP_RECORDS);
+            before = threads.getThreadAllocatedBytes(threadId);
+            writeReadings(tcp, MEASURED_RECORDS);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+            // A fresh 64 KiB chunk per chunk sealed would be over 40 bytes per record
+            double perRecord = (double) (allocated - conversion) / MEASURED_RECORDS;
+            assertTrue(perRecord < 8.0, "allocated " + perRecord + " bytes per record");
+        } finally {
+            tcp.close();
+        }
+    }
+
+    private static void discard(Socket socket) {
+        try (InputStream in = socket.getInputStream()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            // Connection closed
+        }
+    }
+
+    private static void appendValues(StringBuilder scratch, int count) {
+        for (int i = 0; i < count; i++) {
+            scratch.setLength(0);
+            scratch.append(Math.sin(i * 0.01));
+            scratch.setLength(0);
+            scratch.append(95.0 + i % 5);
+        }
+    }
+
+    private static void writeReadings(OutputStrategy out, int count) {
+        for (int i = 0; i < count; i++) {
+            int patientId = 1 + i % 1000;
+            out.output(patientId, 1700000000000L + i, LabelRegistry.ECG, Math.sin(i * 0.01));
+            out.output(patientId, 1700000000000L + i, LabelRegistry.SATURATION, 95.0 + i % 5);
+        }
+    }
+}
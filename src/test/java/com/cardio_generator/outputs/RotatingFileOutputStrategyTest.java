@@ -0,0 +1,113 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rotation, sidecars and windowed reading of {@link RotatingFileOutputStrategy}.
+ */
+class RotatingFileOutputStrategyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final long HOUR = RotatingFileOutputStrategy.HOURLY;
+    private static final long START = 1_700_000_000_000L / HOUR * HOUR;
+
+    @Test
+    void rotatesHourlyAndReaderSkipsSegmentsOutsideWindow() throws Exception {
+        RotatingFileOutputStrategy output = new RotatingFileOutputStrategy(tempDir.toString(), HOUR, 0,
+                FileOutputStrategy.FsyncPolicy.NEVER);
+        // Three hours of readings, one per minute, for patients 1-3 and 7
+        for (long t = START; t < START + 3 * HOUR; t += 60_000) {
+            for (int patientId : new int[] {1, 2, 3, 7}) {
+                output.output(patientId, t, LabelRegistry.ECG, 0.5);
+            }
+        }
+        output.output(1, START + 3 * HOUR - 1, "Saturation", "97.0%");
+        output.close();
+
+        for (int n = 0; n < 3; n++) {
+            assertTrue(Files.exists(tempDir.resolve("ECG-00000" + n + ".txt.gz")));
+        }
+        assertFalse(Files.exists(tempDir.resolve("ECG-000003.txt.gz")));
+        Properties index = load(tempDir.resolve("ECG-000001.idx"));
+        assertEquals("240", index.getProperty("records"));
+        assertEquals(Long.toString(START + HOUR), index.getProperty("minTimestamp"));
+        assertEquals(Long.toString(START + 2 * HOUR - 60_000), index.getProperty("maxTimestamp"));
+        assertEquals("1-3,7", index.getProperty("patients"));
+
+        // Window inside the second hour: the first and third ECG segments are not opened
+        Files.write(tempDir.resolve("ECG-000000.txt.gz"), new byte[] {1, 2, 3});
+        Files.write(tempDir.resolve("ECG-000002.txt.gz"), new byte[] {1, 2, 3});
+        DataStorage storage = new DataStorage();
+        new FileDataReader(tempDir.toString(), START + HOUR, START + HOUR + 10 * 60_000).readData(storage);
+        List<PatientRecord> records = storage.getRecords(7, 0, Long.MAX_VALUE);
+        assertEquals(11, records.size());
+        assertEquals(START + HOUR, records.get(0).getTimestamp());
+    }
+
+    @Test
+    void rotatesBySize() throws Exception {
+        RotatingFileOutputStrategy output = new RotatingFileOutputStrategy(tempDir.toString(), 0, 4096,
+                FileOutputStrategy.FsyncPolicy.ON_CLOSE);
+        for (int i = 0; i < 1000; i++) {
+            output.output(1, START + i, LabelRegistry.ECG, i);
+        }
+        output.close();
+
+        long segments;
+        try (java.util.stream.Stream<Path> files = Files.list(tempDir)) {
+            segments = files.filter(p -> p.toString().endsWith(".txt.gz")).count();
+        }
+        assertTrue(segments > 10, "expected many 4 KiB segments, got " + segments);
+        DataStorage storage = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(storage);
+        assertEquals(1000, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void openSegmentIsReadableAfterTheFlushInterval() throws Exception {
+        RotatingFileOutputStrategy output = new RotatingFileOutputStrategy(tempDir.toString(), HOUR, 0,
+                FileOutputStrategy.FsyncPolicy.ON_FLUSH, 20);
+        try {
+            for (int i = 0; i < 100; i++) {
+                output.output(1, START + i, LabelRegistry.ECG, i);
+            }
+            // Without close(), the records only reach the file through the writer thread
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            int read;
+            do {
+                Thread.sleep(20);
+                DataStorage storage = new DataStorage();
+                new FileDataReader(tempDir.toString()).readData(storage);
+                read = storage.getRecords(1, 0, Long.MAX_VALUE).size();
+            } while (read < 100 && System.nanoTime() < deadline);
+            assertEquals(100, read);
+            assertFalse(Files.exists(tempDir.resolve("ECG-000000.idx")));
+        } finally {
+            output.close();
+        }
+        assertTrue(Files.exists(tempDir.resolve("ECG-000000.idx")));
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}
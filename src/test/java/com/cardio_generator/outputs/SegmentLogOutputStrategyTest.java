@@ -0,0 +1,164 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.SegmentLogDataReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trip through {@link SegmentLogOutputStrategy} and
+ * {@link SegmentLogDataReader}.
+ */
+class SegmentLogOutputStrategyTest {
+
+    @TempDir
+    Path tempDir;
+
+    /** Room for exactly 100 records per segment. */
+    private static final int SEGMENT_BYTES = SegmentLogOutputStrategy.HEADER_BYTES
+            + 100 * SegmentLogOutputStrategy.RECORD_BYTES;
+
+    @Test
+    void readingsFromManyThreadsAreReadBack() throws Exception {
+        SegmentLogOutputStrategy log = new SegmentLogOutputStrategy(tempDir.toString(), SEGMENT_BYTES,
+                FileOutputStrategy.FsyncPolicy.ON_CLOSE);
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            int patientId = w + 1;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 60; i++) {
+                    log.output(patientId, 1000L + i, LabelRegistry.ECG, patientId + i / 100.0);
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        log.output(1, 5000L, "Saturation", "97.0%");
+        log.output(1, 5000L, "Alert", "triggered");
+        log.close();
+
+        // 241 records fill two segments and start a third
+        assertTrue(Files.exists(tempDir.resolve("segment-000002.log")));
+        assertTrue(Files.exists(tempDir.resolve("segment-000002.idx")));
+        assertEquals(1, log.getSkippedCount());
+
+        DataStorage storage = new DataStorage();
+        new SegmentLogDataReader(tempDir.toString()).readData(storage);
+        for (int patientId = 1; patientId <= 4; patientId++) {
+            assertEquals(patientId == 1 ? 61 : 60, storage.getRecords(patientId, 0, Long.MAX_VALUE).size());
+        }
+        List<PatientRecord> saturation = storage.getRecords(1, 5000L, 5000L);
+        assertEquals(1, saturation.size());
+        assertEquals("Saturation", saturation.get(0).getRecordType());
+        assertEquals(97.0, saturation.get(0).getMeasurementValue());
+    }
+
+    @Test
+    void closeWaitsForWritersThatClaimedSlots() throws Exception {
+        // Writers are still running when close() is called; repeated since
+        // the race only shows when a writer is preempted mid-record
+        for (int round = 0; round < 20; round++) {
+            closeWhileWriting(Files.createDirectory(tempDir.resolve("round-" + round)));
+        }
+    }
+
+    private static void closeWhileWriting(Path dir) throws Exception {
+        SegmentLogOutputStrategy log = new SegmentLogOutputStrategy(dir.toString(), SEGMENT_BYTES,
+                FileOutputStrategy.FsyncPolicy.NEVER);
+        AtomicLong attempted = new AtomicLong();
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            int patientId = w + 1;
+            writers[w] = new Thread(() -> {
+                for (long i = 0; i < 1_000_000; i++) {
+                    log.output(patientId, i, LabelRegistry.ECG, 0.5);
+                    attempted.incrementAndGet();
+                }
+            });
+            writers[w].start();
+        }
+        while (attempted.get() < 10_000) {
+            Thread.sleep(1);
+        }
+        log.close();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // Every segment is indexed, and its index counts exactly the records in it
+        long total = 0;
+        for (int n = 0; Files.exists(dir.resolve(String.format("segment-%06d.log", n))); n++) {
+            Path index = dir.resolve(String.format("segment-%06d.idx", n));
+            assertTrue(Files.exists(index), "segment " + n + " was not sealed");
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(index)) {
+                properties.load(reader);
+            }
+            int written = writtenSlots(dir.resolve(String.format("segment-%06d.log", n)));
+            assertEquals(written, Integer.parseInt(properties.getProperty("records")), "segment " + n);
+            total += written;
+        }
+        assertTrue(total >= 10_000);
+        DataStorage storage = new DataStorage();
+        new SegmentLogDataReader(dir.toString()).readData(storage);
+        long read = 0;
+        for (int patientId = 1; patientId <= writers.length; patientId++) {
+            read += storage.getRecords(patientId, 0, Long.MAX_VALUE).size();
+        }
+        assertEquals(total, read);
+    }
+
+    private static int writtenSlots(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment)).order(ByteOrder.LITTLE_ENDIAN);
+        int written = 0;
+        for (int offset = SegmentLogOutputStrategy.HEADER_BYTES; offset < buffer.capacity();
+             offset += SegmentLogOutputStrategy.RECORD_BYTES) {
+            if (buffer.getInt(offset + 4) != 0) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    @Test
+    void timeWindowSkipsSegmentsOutsideIt() throws IOException {
+        SegmentLogOutputStrategy log = new SegmentLogOutputStrategy(tempDir.toString(), SEGMENT_BYTES,
+                FileOutputStrategy.FsyncPolicy.NEVER);
+        for (int i = 0; i < 300; i++) {
+            log.output(7, i * 10L, LabelRegistry.SYSTOLIC_PRESSURE, 120.0);
+        }
+        log.close();
+        // Corrupt the first segment: a reader that maps it would fail
+        Files.write(tempDir.resolve("segment-000000.log"), new byte[SEGMENT_BYTES]);
+
+        DataStorage storage = new DataStorage();
+        new SegmentLogDataReader(tempDir.toString(), 1500L, 2490L).readData(storage);
+        List<PatientRecord> records = storage.getRecords(7, 0, Long.MAX_VALUE);
+        assertEquals(100, records.size());
+        assertEquals(1500L, records.get(0).getTimestamp());
+
+        assertThrows(IOException.class, () -> new SegmentLogDataReader(tempDir.toString()).readData(storage));
+    }
+
+    @Test
+    void refusesDirectoryWithExistingLog() throws IOException {
+        new SegmentLogOutputStrategy(tempDir.toString(), SEGMENT_BYTES, FileOutputStrategy.FsyncPolicy.NEVER)
+                .output(1, 1L, LabelRegistry.ECG, 0.5);
+        assertThrows(IOException.class, () -> new SegmentLogOutputStrategy(tempDir.toString()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.SharedMemoryDataReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hand-off through {@link SharedMemoryOutputStrategy} and
+ * {@link SharedMemoryDataReader}.
+ */
+class SharedMemoryOutputStrategyTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readerFollowsConcurrentWriters() throws Exception {
+        String ring = tempDir.resolve("cardio.ring").toString();
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 4096); // never laps
+        SharedMemoryDataReader reader = new SharedMemoryDataReader(ring);
+        DataStorage storage = new DataStorage();
+
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            int patientId = w + 1;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    output.output(patientId, 1000L + i, LabelRegistry.ECG, patientId + i / 1000.0);
+                }
+            });
+            writers[w].start();
+        }
+        long read = 0;
+        while (read < 2000) {
+            read += reader.poll(storage, 256);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        output.output(1, 5000L, "Saturation", "97.0%");
+        output.output(1, 5000L, "Alert", "triggered");
+        reader.readData(storage);
+        output.close();
+
+        assertEquals(0, reader.getLostCount());
+        assertEquals(2001, reader.getPosition());
+        assertEquals(1, output.getSkippedCount());
+        for (int patientId = 1; patientId <= 4; patientId++) {
+            List<PatientRecord> records = storage.getRecords(patientId, 1000L, 1499L);
+            assertEquals(500, records.size());
+            assertEquals("ECG", records.get(0).getRecordType());
+        }
+        List<PatientRecord> saturation = storage.getRecords(1, 5000L, 5000L);
+        assertEquals(1, saturation.size());
+        assertEquals("Saturation", saturation.get(0).getRecordType());
+        assertEquals(97.0, saturation.get(0).getMeasurementValue());
+    }
+
+    @Test
+    void slowReaderSkipsOverwrittenReadings() throws Exception {
+        String ring = tempDir.resolve("small.ring").toString();
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 16);
+        SharedMemoryDataReader reader = new SharedMemoryDataReader(ring);
+        for (int i = 0; i < 40; i++) {
+            output.output(7, i, LabelRegistry.ECG, i);
+        }
+
+        DataStorage storage = new DataStorage();
+        reader.readData(storage);
+
+        assertEquals(24, reader.getLostCount());
+        List<PatientRecord> records = storage.getRecords(7, 0, Long.MAX_VALUE);
+        assertEquals(16, records.size());
+        assertEquals(24.0, records.get(0).getMeasurementValue());
+
+        SharedMemoryDataReader latest = new SharedMemoryDataReader(ring, true);
+        output.output(7, 100L, LabelRegistry.ECG, 1.0);
+        assertEquals(1, latest.poll(new DataStorage(), 10));
+    }
+
+    @Test
+    void labelsTooLongForTheTableAreNotPublished() throws Exception {
+        String ring = tempDir.resolve("labels.ring").toString();
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 16);
+        String longest = "L".repeat(SharedMemoryOutputStrategy.MAX_LABEL_BYTES);
+        output.output(3, 1000L, longest, "1.0");
+        output.output(3, 1001L, longest + "X", "2.0");
+        output.output(3, 1002L, longest + "X", "3.0");
+
+        assertEquals(1, output.getPublishedCount());
+        assertEquals(2, output.getSkippedCount());
+        DataStorage storage = new DataStorage();
+        new SharedMemoryDataReader(ring).readData(storage);
+        List<PatientRecord> records = storage.getRecords(3, 0, Long.MAX_VALUE);
+        assertEquals(1, records.size());
+        assertEquals(longest, records.get(0).getRecordType());
+    }
+}
@@ -0,0 +1,194 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.BinaryDataReader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link TcpOutputStrategy}: several subscribers receive the same
+ * stream, and a subscriber that stops reading is disconnected without
+ * holding back the others. Clients that ask for binary frames receive the
+ * same readings in a fraction of the bytes.
+ */
+class TcpOutputStrategyTest {
+
+    private static final int RECORDS = 200_000;
+
+    @Test
+    void slowClientIsDroppedWhileFastClientsReceiveEverything() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        TcpOutputStrategy tcp = new TcpOutputStrategy(port, Executors.newSingleThreadExecutor(),
+                16 * 1024, 1024 * 1024);
+
+        AtomicInteger[] received = {new AtomicInteger(), new AtomicInteger()};
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            Socket socket = new Socket("localhost", port);
+            AtomicInteger counter = received[r];
+            readers[r] = new Thread(() -> readLines(socket, counter));
+            readers[r].start();
+        }
+        Socket slow = new Socket();
+        slow.setReceiveBufferSize(4096);
+        slow.connect(new java.net.InetSocketAddress("localhost", port));
+        awaitClients(tcp, 3);
+
+        for (int i = 0; i < RECORDS; i++) {
+            tcp.output(i, 1700000000000L + i, LabelRegistry.ECG, i * 0.5);
+            if (i % 1000 == 999) {
+                // Stay within the readers' buffer limit; the slow client never reads
+                awaitReceived(received, i + 1 - 5000);
+            }
+        }
+        tcp.close();
+        for (Thread reader : readers) {
+            reader.join(10_000);
+        }
+        slow.close();
+
+        assertEquals(RECORDS, received[0].get());
+        assertEquals(RECORDS, received[1].get());
+        assertEquals(0, tcp.getClientCount());
+    }
+
+    @Test
+    void binaryClientReceivesSameReadingsInFewerBytes() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        TcpOutputStrategy tcp = new TcpOutputStrategy(port, Executors.newSingleThreadExecutor(),
+                16 * 1024, 64 * 1024 * 1024);
+
+        Socket textSocket = new Socket("localhost", port);
+        Socket binarySocket = new Socket("localhost", port);
+        OutputStream command = binarySocket.getOutputStream();
+        command.write("mode binary\n".getBytes(StandardCharsets.US_ASCII));
+        command.flush();
+        InputStream binaryIn = binarySocket.getInputStream();
+        assertEquals("mode binary", readLine(binaryIn));
+
+        ByteArrayOutputStream textBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream binaryBytes = new ByteArrayOutputStream();
+        Thread textReader = new Thread(() -> drain(textSocket, textBytes));
+        Thread binaryReader = new Thread(() -> drain(binarySocket, binaryBytes));
+        textReader.start();
+        binaryReader.start();
+        awaitClients(tcp, 2);
+
+        // One second of 250 Hz ECG for 100 patients, plus saturation and an alert
+        long start = 1700000000000L;
+        for (int k = 0; k < 250; k++) {
+            for (int patientId = 1; patientId <= 100; patientId++) {
+                tcp.output(patientId, start + k * 4, LabelRegistry.ECG, Math.sin(patientId + k * 0.1) * 0.7);
+            }
+        }
+        for (int patientId = 1; patientId <= 100; patientId++) {
+            tcp.output(patientId, start + 1000, LabelRegistry.SATURATION, 97.0);
+        }
+        tcp.output(7, start + 1000, "Alert", "triggered");
+        tcp.close();
+        textReader.join(10_000);
+        binaryReader.join(10_000);
+
+        DataStorage storage = new DataStorage();
+        new BinaryDataReader(new ByteArrayInputStream(binaryBytes.toByteArray())).readData(storage);
+        List<PatientRecord> records = storage.getRecords(42, start, start + 1000);
+        assertEquals(251, records.size());
+        PatientRecord last = records.get(records.size() - 1);
+        assertEquals("Saturation", last.getRecordType());
+        assertEquals(97.0, last.getMeasurementValue());
+        assertEquals(Math.sin(42 + 3 * 0.1) * 0.7, records.get(3).getMeasurementValue());
+        assertEquals(start + 12, records.get(3).getTimestamp());
+
+        double ratio = (double) textBytes.size() / binaryBytes.size();
+        assertTrue(ratio >= 3.0, "text/binary size ratio was " + ratio);
+    }
+
+    @Test
+    void closeStopsAnOwnedExecutorsThreads() throws Exception {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        TcpOutputStrategy tcp = new TcpOutputStrategy(0, Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task);
+            threads.add(thread);
+            return thread;
+        }), true);
+        tcp.output(1, 1000L, LabelRegistry.ECG, 0.5);
+        tcp.close();
+
+        assertFalse(threads.isEmpty());
+        for (Thread thread : threads) {
+            thread.join(10_000);
+            assertFalse(thread.isAlive(), "a non-daemon thread would keep the JVM running");
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    private static void drain(Socket socket, ByteArrayOutputStream into) {
+        try (InputStream in = socket.getInputStream()) {
+            in.transferTo(into);
+        } catch (IOException e) {
+            // Connection closed
+        }
+    }
+
+    private static void readLines(Socket socket, AtomicInteger counter) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(",");
+                assertEquals(counter.get(), Integer.parseInt(parts[0]), "records must arrive in order");
+                assertEquals("ECG", parts[2]);
+                counter.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // Connection closed
+        }
+    }
+
+    private static void awaitClients(TcpOutputStrategy tcp, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (tcp.getClientCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, tcp.getClientCount());
+    }
+
+    private static void awaitReceived(AtomicInteger[] received, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (AtomicInteger counter : received) {
+            while (counter.get() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
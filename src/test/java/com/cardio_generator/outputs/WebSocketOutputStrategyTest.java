@@ -0,0 +1,241 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.BinaryDataReader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WebSocketOutputStrategy}: records are coalesced into
+ * multi-record frames, subscribers only receive what they asked for, and
+ * binary mode delivers the same readings as decodable binary frames.
+ */
+class WebSocketOutputStrategyTest {
+
+    /** Client that keeps every frame it receives. */
+    private static class Recorder extends WebSocketClient {
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        final List<ByteBuffer> binaryFrames = new CopyOnWriteArrayList<>();
+        final CountDownLatch opened = new CountDownLatch(1);
+
+        Recorder(int port) throws Exception {
+            super(new URI("ws://localhost:" + port));
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            opened.countDown();
+        }
+
+        @Override
+        public void onMessage(String message) {
+            frames.add(message);
+        }
+
+        @Override
+        public void onMessage(ByteBuffer message) {
+            binaryFrames.add(message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+
+        long records() {
+            return frames.stream().mapToLong(frame -> frame.split("\n").length).sum();
+        }
+    }
+
+    /** Connects once the server, which starts asynchronously, accepts connections. */
+    private static Recorder connect(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            Recorder client = new Recorder(port);
+            if (client.connectBlocking(5, TimeUnit.SECONDS)) {
+                return client;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "server did not accept connections");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void subscribersReceiveCoalescedFramesOfTheirStreams() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        WebSocketOutputStrategy ws = new WebSocketOutputStrategy(port, 20, 100);
+        Recorder all = new Recorder(port);
+        Recorder ward = new Recorder(port);
+        try {
+            assertTrue(all.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(ward.connectBlocking(5, TimeUnit.SECONDS));
+            ward.send("subscribe 1-2,5 ECG,Alert");
+            Thread.sleep(200); // let the subscription arrive
+
+            for (int i = 0; i < 1000; i++) {
+                int patientId = 1 + i % 10;
+                ws.output(patientId, 1000L + i, LabelRegistry.ECG, i);
+                ws.output(patientId, 1000L + i, LabelRegistry.SATURATION, 97.0);
+            }
+            ws.output(5, 5000L, "Alert", "triggered");
+            ws.output(6, 5000L, "Alert", "triggered");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((all.records() < 2002 || ward.records() < 301) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2002, all.records());
+            assertEquals(301, ward.records());
+            assertTrue(all.frames.size() < 100, "records must be coalesced, got " + all.frames.size() + " frames");
+            for (String frame : ward.frames) {
+                for (String record : frame.split("\n")) {
+                    String[] fields = record.split(",");
+                    int patientId = Integer.parseInt(fields[0]);
+                    assertTrue(patientId == 1 || patientId == 2 || patientId == 5, record);
+                    assertTrue(fields[2].equals("ECG") || fields[2].equals("Alert"), record);
+                }
+            }
+            assertTrue(ward.frames.get(ward.frames.size() - 1).endsWith("5,5000,Alert,triggered"));
+        } finally {
+            all.closeBlocking();
+            ward.closeBlocking();
+            ws.close();
+        }
+    }
+
+    @Test
+    void badSubscriptionsAreRejectedWithoutSideEffects() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        WebSocketOutputStrategy ws = new WebSocketOutputStrategy(port, 20, 100, 50);
+        Recorder client = connect(port);
+        int labels = LabelRegistry.size();
+        try {
+            client.send("subscribe 1-2000000000 *");
+            client.send("subscribe -3 *");
+            client.send("subscribe 9-4 *");
+            client.send("subscribe 1 NoSuchLabel");
+            client.send("subscribe 50 ECG");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.frames.size() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, client.frames.size(), client.frames.toString());
+            for (String reply : client.frames) {
+                assertTrue(reply.startsWith("error: "), reply);
+            }
+            assertTrue(client.frames.get(3).contains("NoSuchLabel"));
+            assertEquals(labels, LabelRegistry.size());
+
+            // The last, valid subscription is in effect
+            ws.output(49, 1000L, LabelRegistry.ECG, 1.0);
+            ws.output(50, 1000L, LabelRegistry.SATURATION, 97.0);
+            ws.output(50, 1001L, LabelRegistry.ECG, 2.0);
+            deadline = System.currentTimeMillis() + 5000;
+            while (client.frames.size() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("50,1001,ECG,2.0", client.frames.get(4));
+        } finally {
+            client.closeBlocking();
+            ws.close();
+        }
+    }
+
+    @Test
+    void connectionsAreTrackedAsTheyOpenAndClose() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        WebSocketOutputStrategy ws = new WebSocketOutputStrategy(port, 20, 100);
+        Recorder first = connect(port);
+        Recorder second = connect(port);
+        try {
+            awaitSubscribers(ws, 2);
+            first.closeBlocking();
+            awaitSubscribers(ws, 1);
+
+            ws.output(3, 1000L, LabelRegistry.ECG, 0.5);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (second.records() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("3,1000,ECG,0.5"), second.frames);
+            assertTrue(first.frames.isEmpty());
+        } finally {
+            second.closeBlocking();
+            ws.close();
+        }
+        assertEquals(0, ws.getSubscriberCount());
+    }
+
+    private static void awaitSubscribers(WebSocketOutputStrategy ws, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ws.getSubscriberCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, ws.getSubscriberCount());
+    }
+
+    @Test
+    void binaryModeSendsDecodableFrames() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        WebSocketOutputStrategy ws = new WebSocketOutputStrategy(port, 20, 100);
+        Recorder client = new Recorder(port);
+        try {
+            assertTrue(client.connectBlocking(5, TimeUnit.SECONDS));
+            client.send("mode binary");
+            Thread.sleep(200);
+
+            for (int i = 0; i < 250; i++) {
+                ws.output(1 + i % 5, 1000L + i, LabelRegistry.ECG, i * 0.25);
+            }
+            ws.output(3, 2000L, "Alert", "triggered");
+
+            DataStorage storage = new DataStorage();
+            BinaryDataReader reader = new BinaryDataReader(null);
+            long deadline = System.currentTimeMillis() + 5000;
+            int decoded = 0;
+            while (storage.getRecords(3, 0, Long.MAX_VALUE).size() < 50 && System.currentTimeMillis() < deadline) {
+                while (decoded < client.binaryFrames.size()) {
+                    reader.readFrame(client.binaryFrames.get(decoded++), storage);
+                }
+                Thread.sleep(10);
+            }
+            assertTrue(client.frames.isEmpty());
+            List<PatientRecord> records = storage.getRecords(3, 0, Long.MAX_VALUE);
+            assertEquals(50, records.size());
+            assertEquals(1002L, records.get(0).getTimestamp());
+            assertEquals(2 * 0.25, records.get(0).getMeasurementValue());
+            assertEquals("ECG", records.get(0).getRecordType());
+        } finally {
+            client.closeBlocking();
+            ws.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.cardio_generator.scheduling;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the default platform-thread pool, one {@code scheduleAtFixedRate}
+ * task per patient and signal on {@code patientCount * 4} threads, with
+ * {@link PatientLoopScheduler} on virtual threads: time to start, live
+ * platform threads, readings per second and heap, with an output that only
+ * counts readings. Not run by the test suite; after
+ * {@code mvn -Pjava21 test-compile}, run
+ * {@code java -cp target/classes:target/test-classes
+ * com.cardio_generator.scheduling.PatientLoopSchedulerBenchmark <pool|virtual> <patients> <seconds>}.
+ * On a runtime without virtual threads the virtual mode falls back to
+ * platform threads, as the simulator does.
+ */
+public class PatientLoopSchedulerBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        String mode = args.length > 0 ? args[0] : "virtual";
+        int patientCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 15;
+
+        LongAdder count = new LongAdder();
+        OutputStrategy counter = (patientId, timestamp, label, data) -> count.increment();
+        List<PeriodicSignal> signals = new ArrayList<>();
+        signals.add(new PeriodicSignal(new ECGDataGenerator(patientCount), 1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodSaturationDataGenerator(patientCount), 1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodPressureDataGenerator(patientCount), 1, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new BloodLevelsDataGenerator(patientCount), 2, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new AlertGenerator(patientCount), 20, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        if (mode.equals("virtual")) {
+            ExecutorService executor;
+            if (VirtualThreads.isSupported()) {
+                executor = VirtualThreads.newThreadPerTaskExecutor();
+            } else {
+                System.err.println("Virtual threads require Java 21 or newer. Using platform threads.");
+                executor = Executors.newCachedThreadPool();
+            }
+            new PatientLoopScheduler(patientCount, signals, counter, executor).start();
+        } else {
+            // The simulator's default scheduling
+            ScheduledExecutorService pool = Executors.newScheduledThreadPool(patientCount * 4);
+            Random random = new Random();
+            for (int patientId = 1; patientId <= patientCount; patientId++) {
+                int id = patientId;
+                for (PeriodicSignal signal : signals) {
+                    pool.scheduleAtFixedRate(() -> signal.getGenerator().generate(id, counter),
+                            random.nextInt(5), signal.getPeriod(), signal.getTimeUnit());
+                }
+            }
+        }
+        double startMillis = (System.nanoTime() - start) / 1e6;
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long readings = count.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        long heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+        System.out.printf("%s patients=%d start=%.0f ms threads=%d readings=%.0f/s heap=%d MB%n",
+                mode, patientCount, startMillis, ManagementFactory.getThreadMXBean().getThreadCount(),
+                readings / elapsed, heap >> 20);
+        System.exit(0);
+    }
+}
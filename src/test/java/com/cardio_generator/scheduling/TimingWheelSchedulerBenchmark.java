@@ -0,0 +1,52 @@
+package com.cardio_generator.scheduling;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.SimulationClock;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many readings per second the {@link TimingWheelScheduler}
+ * sustains in real time, with an output that only counts them. Not run by
+ * the test suite; after {@code mvn test-compile}, run
+ * {@code java -cp target/classes:target/test-classes
+ * com.cardio_generator.scheduling.TimingWheelSchedulerBenchmark <patients> <seconds>}.
+ */
+public class TimingWheelSchedulerBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+
+        LongAdder count = new LongAdder();
+        OutputStrategy counter = (patientId, timestamp, label, data) -> count.increment();
+        List<PeriodicSignal> signals = new ArrayList<>();
+        signals.add(new PeriodicSignal(new ECGDataGenerator(patientCount), 1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodSaturationDataGenerator(patientCount), 1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodPressureDataGenerator(patientCount), 1, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new BloodLevelsDataGenerator(patientCount), 2, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new AlertGenerator(patientCount), 20, TimeUnit.SECONDS));
+
+        TimingWheelScheduler scheduler = new TimingWheelScheduler(patientCount, signals, counter,
+                Runtime.getRuntime().availableProcessors(), TimingWheelScheduler.DEFAULT_TICK_MILLIS,
+                SimulationClock.SYSTEM);
+        long start = System.nanoTime();
+        scheduler.start();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long readings = count.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("patients=%d readings=%d in %.1f s -> %.0f/s, skipped=%d threads=%d%n",
+                patientCount, readings, elapsed, readings / elapsed, scheduler.getSkippedFirings(),
+                Thread.activeCount());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,79 @@
+package com.cardio_generator.scheduling;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.SimulatedClock;
+import com.cardio_generator.outputs.OutputStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Simulated runs of the {@link TimingWheelScheduler}.
+ */
+class TimingWheelSchedulerTest {
+
+    private static final int PATIENTS = 20;
+
+    @Test
+    void simulatedRunsWithTheSameSeedProduceTheSameReadings() throws Exception {
+        List<String> first = simulate(42);
+        List<String> second = simulate(42);
+
+        assertFalse(first.isEmpty());
+        assertEquals(first, second);
+        assertNotEquals(first, simulate(43));
+    }
+
+    @Test
+    void rejectsSpeedsThatAreNotPositive() {
+        for (double speed : new double[] {0, -1, Double.NaN, Double.NEGATIVE_INFINITY}) {
+            TimingWheelScheduler scheduler = new TimingWheelScheduler(PATIENTS, new ArrayList<>(),
+                    (patientId, timestamp, label, data) -> { }, 1,
+                    TimingWheelScheduler.DEFAULT_TICK_MILLIS, new SimulatedClock(0));
+            assertThrows(IllegalArgumentException.class, () -> scheduler.runSimulated(1000, speed));
+        }
+    }
+
+    /**
+     * Generates five simulated minutes on two workers, seeding the generators
+     * from a master seed as the simulator does.
+     *
+     * @return every reading formatted as a line, sorted since workers
+     *         interleave them
+     */
+    private static List<String> simulate(long seed) throws InterruptedException {
+        SimulatedClock clock = new SimulatedClock(1_700_000_000_000L);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<PeriodicSignal> signals = new ArrayList<>();
+        signals.add(new PeriodicSignal(new ECGDataGenerator(PATIENTS, clock, seeds.nextLong(), 10),
+                1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodSaturationDataGenerator(PATIENTS, clock, seeds.nextLong()),
+                1, TimeUnit.SECONDS));
+        signals.add(new PeriodicSignal(new BloodPressureDataGenerator(PATIENTS, clock, seeds.nextLong()),
+                1, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new BloodLevelsDataGenerator(PATIENTS, clock, seeds.nextLong()),
+                2, TimeUnit.MINUTES));
+        signals.add(new PeriodicSignal(new AlertGenerator(PATIENTS, clock, seeds.nextLong()),
+                20, TimeUnit.SECONDS));
+
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        OutputStrategy capture = (patientId, timestamp, label, data) ->
+                lines.add(patientId + "," + timestamp + "," + label + "," + data);
+        new TimingWheelScheduler(PATIENTS, signals, capture, 2,
+                TimingWheelScheduler.DEFAULT_TICK_MILLIS, clock).runSimulated(5 * 60_000L, Double.POSITIVE_INFINITY);
+
+        List<String> sorted = new ArrayList<>(lines);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
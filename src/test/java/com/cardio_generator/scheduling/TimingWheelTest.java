@@ -0,0 +1,62 @@
+package com.cardio_generator.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Expiry order and cascading of the {@link TimingWheel}.
+ */
+class TimingWheelTest {
+
+    @Test
+    void expiresTasksAtTheirDeadlineInTickOrder() {
+        TimingWheel<Long> wheel = new TimingWheel<>();
+        // Deadlines on every level, including ones exactly at level boundaries
+        long[] deadlines = {1, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, 300_000, 20_000_000};
+        for (int i = deadlines.length - 1; i >= 0; i--) {
+            wheel.schedule(deadlines[i], deadlines[i]);
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        List<Long> expired = new ArrayList<>();
+        long last = deadlines[deadlines.length - 1];
+        while (wheel.currentTick() < last) {
+            long tick = wheel.currentTick() + 1;
+            wheel.advance(task -> {
+                assertEquals(task.longValue(), tick, "expired on the wrong tick");
+                expired.add(task);
+            });
+        }
+        assertEquals(Arrays.stream(deadlines).boxed().collect(Collectors.toList()), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadesTasksScheduledMidWay() {
+        TimingWheel<String> wheel = new TimingWheel<>();
+        for (int i = 0; i < 100; i++) {
+            wheel.advance(task -> fail("nothing is scheduled"));
+        }
+        // Not aligned with any slot boundary, so each must move down levels
+        wheel.schedule(100 + 5_000, "level 2");
+        wheel.schedule(100 + 70, "level 1");
+        wheel.schedule(50, "overdue");
+
+        List<String> expired = new ArrayList<>();
+        List<Long> ticks = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            wheel.advance(task -> {
+                expired.add(task);
+                ticks.add(wheel.currentTick());
+            });
+        }
+        assertEquals(Arrays.asList("overdue", "level 1", "level 2"), expired);
+        assertEquals(Arrays.asList(101L, 170L, 5_100L), ticks);
+    }
+}
@@ -0,0 +1,99 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class BinaryDataReaderTest {
+
+    @Test
+    void testReadsWellFormedFrames() throws IOException {
+        byte[] frame = frame(body(label(0, "ECG"), numeric(7, 1000, 0, 0.5), numeric(7, 4, 0, 0.75)));
+        DataStorage storage = new DataStorage();
+        new BinaryDataReader(new ByteArrayInputStream(concat(frame, frame))).readData(storage);
+        assertEquals(4, storage.getRecords(7, 0, Long.MAX_VALUE).size()); // timestamps restart in each frame
+
+        DataStorage single = new DataStorage();
+        new BinaryDataReader(new ByteArrayInputStream(new byte[0])).readFrame(ByteBuffer.wrap(frame), single);
+        assertEquals(0.75, single.getRecords(7, 1004, 1004).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testRejectsFrameLengthsBeyondTheLimit() {
+        // 35 bits, above 2^31 once cast to an int
+        byte[] huge = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        assertThrows(IOException.class, () -> read(huge));
+        // Within an int, but a frame of 2 GB
+        byte[] large = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(IOException.class, () -> read(large));
+        byte[] overLimit = frame(new byte[100]);
+        assertThrows(IOException.class, () ->
+                new BinaryDataReader(new ByteArrayInputStream(overLimit), 64).readData(new DataStorage()));
+    }
+
+    @Test
+    void testRejectsNegativeAndOversizedLengthsInsideFrames() {
+        // -1 as a 64-bit varint
+        byte[] negative = varint(-1L);
+        assertThrows(IOException.class, () -> new BinaryDataReader(new ByteArrayInputStream(new byte[0]))
+                .readFrame(ByteBuffer.wrap(negative), new DataStorage()));
+        assertThrows(IOException.class, () -> new BinaryDataReader(new ByteArrayInputStream(new byte[0]))
+                .readFrame(ByteBuffer.wrap(new byte[] {(byte) 0x80}), new DataStorage()));
+
+        // A label name claiming more bytes than the frame holds
+        byte[] longName = concat(new byte[] {0, 0}, varint(Integer.MAX_VALUE), "ECG".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> read(frame(longName)));
+        // A label ID far beyond any real one
+        assertThrows(IOException.class, () -> read(frame(label(Integer.MAX_VALUE, "ECG"))));
+        assertThrows(IOException.class, () -> read(frame(concat(label(0, "ECG"), numeric(1, 1, 1 << 20, 1.0)))));
+        // A text reading whose length runs past the frame
+        byte[] text = concat(label(0, "Alert"), new byte[] {2, 1, 2, 0}, varint(-1L));
+        assertThrows(IOException.class, () -> read(frame(text)));
+    }
+
+    private static void read(byte[] stream) throws IOException {
+        new BinaryDataReader(new ByteArrayInputStream(stream)).readData(new DataStorage());
+    }
+
+    private static byte[] frame(byte[] body) {
+        return concat(varint(body.length), body);
+    }
+
+    private static byte[] body(byte[]... records) {
+        return concat(records);
+    }
+
+    private static byte[] label(long id, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return concat(new byte[] {0}, varint(id), varint(bytes.length), bytes);
+    }
+
+    private static byte[] numeric(int patientId, long delta, long labelId, double value) {
+        return concat(new byte[] {1}, varint(patientId), varint((delta << 1) ^ (delta >> 63)), varint(labelId),
+                ByteBuffer.allocate(8).putDouble(value).array());
+    }
+
+    private static byte[] varint(long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
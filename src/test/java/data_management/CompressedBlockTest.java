@@ -0,0 +1,131 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+class CompressedBlockTest {
+
+    @Test
+    void testRoundTripKeepsEveryBit() {
+        Random random = new Random(7);
+        int n = 5000;
+        long[] timestamps = new long[n];
+        double[] values = new double[n];
+        long t = -1_000_000L;
+        for (int i = 0; i < n; i++) {
+            // Regular steps, jitter, large gaps and repeats
+            t += i % 500 == 0 ? random.nextInt(Integer.MAX_VALUE) * 1000L : i % 7 == 0 ? 0 : 1000 + random.nextInt(9);
+            timestamps[i] = t;
+            values[i] = i % 11 == 0 ? values[Math.max(0, i - 1)] : random.nextGaussian() * 100;
+        }
+        values[10] = Double.NaN;
+        values[20] = -0.0;
+        values[30] = Double.POSITIVE_INFINITY;
+        values[40] = Double.MIN_VALUE;
+        timestamps[n - 1] = Long.MAX_VALUE;
+
+        CompressedBlock block = CompressedBlock.encode(timestamps, values, 0, n);
+        long[] decodedTimestamps = new long[n];
+        double[] decodedValues = new double[n];
+        block.decode(decodedTimestamps, decodedValues);
+
+        assertArrayEquals(timestamps, decodedTimestamps);
+        for (int i = 0; i < n; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]), "at " + i);
+        }
+        assertEquals(timestamps[0], block.firstTimestamp);
+        assertEquals(Long.MAX_VALUE, block.lastTimestamp);
+    }
+
+    @Test
+    void testRegularSeriesTakesAboutOneByteAPoint() {
+        TimeSeries saturation = new TimeSeries(1, RecordTypes.SATURATION);
+        Random random = new Random(1);
+        double value = 97;
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(20) == 0) {
+                value = 94 + random.nextInt(6); // whole percents that rarely change
+            }
+            saturation.add(1_700_000_000_000L + i * 1000L, value);
+        }
+        double bytesPerPoint = saturation.bytes() / (double) n;
+        assertEquals(n, saturation.size());
+        assertTrue(bytesPerPoint < 1.6, bytesPerPoint + " bytes per point");
+    }
+
+    @Test
+    void testRangesSpanSealedBlocksAndTheHead() {
+        TimeSeries series = new TimeSeries(1, RecordTypes.ECG);
+        int n = 5 * TimeSeries.BLOCK_SIZE + 100;
+        for (int i = 0; i < n; i++) {
+            series.add(i * 4L, Math.sin(i / 10.0));
+        }
+        assertEquals(n, series.size());
+
+        List<PatientRecord> all = series.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(n, all.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i * 4L, all.get(i).getTimestamp());
+            assertEquals(Math.sin(i / 10.0), all.get(i).getMeasurementValue());
+        }
+        // Backwards access reloads blocks; a window starting and ending inside blocks
+        List<PatientRecord> window = series.range(1500 * 4L + 1, 3000 * 4L);
+        assertEquals(1500, window.size());
+        for (int i = window.size() - 1; i >= 0; i--) {
+            assertEquals((1501 + i) * 4L, window.get(i).getTimestamp());
+        }
+        assertTrue(series.range(n * 4L, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void testLateReadingsAreInsertedIntoSealedBlocks() {
+        TimeSeries series = new TimeSeries(1, RecordTypes.ECG);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 3 * TimeSeries.BLOCK_SIZE; i++) {
+            series.add(i * 10L, i);
+            expected.add(i * 10L);
+        }
+        for (long late : new long[] {5L, -3L, 10_245L, 20_000L, 25_555L}) {
+            series.add(late, -1);
+            expected.add(late);
+        }
+        expected.sort(Comparator.naturalOrder());
+
+        List<PatientRecord> all = series.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(expected.size(), all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(expected.get(i), all.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void testPurgingWalksThroughSealedBlocks() {
+        TimeSeries series = new TimeSeries(1, RecordTypes.ECG);
+        int n = 4 * TimeSeries.BLOCK_SIZE;
+        for (int i = 0; i < n; i++) {
+            series.add(i, i);
+        }
+        int removed = 0;
+        for (long cutoff = 0; cutoff <= 3000; cutoff += 7) {
+            removed += series.removeBefore(cutoff);
+            List<PatientRecord> all = series.range(Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(cutoff, all.get(0).getTimestamp());
+            assertEquals(n - cutoff, series.size());
+        }
+        assertEquals(2996, removed);
+
+        // A late reading into the partly purged oldest block re-encodes only its live part
+        series.add(2000L, -1);
+        assertEquals(n - 2996 + 1, series.size());
+        assertEquals(1, series.removeBefore(2996));
+        assertEquals(2996, series.range(Long.MIN_VALUE, Long.MAX_VALUE).get(0).getTimestamp());
+        assertEquals(2, series.removeBefore(2998));
+    }
+}
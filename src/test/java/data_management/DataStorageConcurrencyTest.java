@@ -0,0 +1,82 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress test for concurrent writers and readers on DataStorage.
+ */
+class DataStorageConcurrencyTest {
+
+    @Test
+    void concurrentWritersLoseNoRecordsAndReadersSeeConsistentSnapshots() throws Exception {
+        DataStorage storage = new DataStorage();
+        int writers = 16;
+        int patients = 8;
+        int perWriter = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads[w] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        // Several writers share each patient; timestamps are unique per writer
+                        storage.addPatientData(i % patients, writer, "W" + writer, (long) i * writers + writer);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[w].start();
+        }
+        Thread reader = new Thread(() -> {
+            try {
+                start.await();
+                while (!Thread.currentThread().isInterrupted()) {
+                    for (Patient patient : storage.getAllPatients()) {
+                        List<PatientRecord> snapshot = patient.getAllRecords();
+                        for (PatientRecord record : snapshot) {
+                            assertNotNull(record);
+                            assertEquals(patient.getPatientId(), record.getPatientId());
+                        }
+                        int size = snapshot.size();
+                        assertEquals(size, snapshot.size(), "a snapshot must not grow");
+                    }
+                }
+            } catch (InterruptedException e) {
+                // done
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        reader.start();
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reader.interrupt();
+        reader.join();
+        if (failure.get() != null) {
+            fail(failure.get());
+        }
+
+        assertEquals(patients, storage.getAllPatients().size());
+        long total = 0;
+        for (int p = 0; p < patients; p++) {
+            List<PatientRecord> records = storage.getRecords(p, 0, Long.MAX_VALUE);
+            assertEquals((long) writers * perWriter / patients, records.size());
+            total += records.size();
+        }
+        assertEquals((long) writers * perWriter, total);
+    }
+}
@@ -25,4 +25,25 @@ class DataStorageTest {
         assertEquals(100.0, recs.get(0).getMeasurementValue(), "First record value");
         assertEquals(200.0, recs.get(1).getMeasurementValue(), "Second record value");
     }
+
+    @Test
+    void testRecordTypeCodesAndNamesAreInterchangeable() {
+        DataStorage storage = new DataStorage();
+
+        storage.addPatientData(1, 97.0, RecordTypes.SATURATION, 1000L);
+        storage.addPatientData(1, 120.0, "SystolicPressure", 1000L);
+        int custom = RecordTypes.codeOf("HeartRate");
+        storage.addPatientData(1, 70.0, "HeartRate", 1001L);
+
+        assertEquals(custom, RecordTypes.codeOf("HeartRate"), "Codes should be stable");
+        assertEquals("HeartRate", RecordTypes.name(custom));
+
+        List<PatientRecord> saturation = storage.getRecords(1, "Saturation", 0L, 2000L);
+        assertEquals(1, saturation.size(), "Should retrieve the saturation record by name");
+        assertEquals(RecordTypes.SATURATION, saturation.get(0).getRecordTypeCode());
+
+        List<PatientRecord> pressure = storage.getRecords(1, RecordTypes.SYSTOLIC_PRESSURE, 0L, 2000L);
+        assertEquals("SystolicPressure", pressure.get(0).getRecordType(), "Should resolve the code to its name");
+        assertEquals(1, storage.getRecords(1, custom, 0L, 2000L).size());
+    }
 }
@@ -0,0 +1,73 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class DecimalParserTest {
+
+    @Test
+    void testMatchesParseDoubleOnWrittenDoubles() {
+        Random random = new Random(3);
+        for (int i = 0; i < 200_000; i++) {
+            double value;
+            switch (i % 4) {
+                case 0: value = random.nextGaussian(); break;
+                case 1: value = Math.round(random.nextDouble() * 10_000) / 100.0; break;
+                case 2: value = Double.longBitsToDouble(random.nextLong()); break;
+                default: value = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20); break;
+            }
+            assertParsesLikeJava(Double.toString(value));
+        }
+    }
+
+    @Test
+    void testMatchesParseDoubleOnHandWrittenNumbers() {
+        Random random = new Random(5);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder text = new StringBuilder();
+            if (random.nextBoolean()) {
+                text.append('-');
+            }
+            int digits = 1 + random.nextInt(21);
+            int point = random.nextInt(digits + 1);
+            for (int d = 0; d < digits; d++) {
+                if (d == point) {
+                    text.append('.');
+                }
+                text.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextInt(4) == 0) {
+                text.append('e').append(random.nextInt(700) - 350);
+            }
+            assertParsesLikeJava(text.toString());
+        }
+    }
+
+    @Test
+    void testEdgeCases() {
+        for (String text : new String[] {"0", "-0.0", "97.0", "1.7976931348623157E308", "1.7976931348623159E308",
+                "4.9E-324", "2.2250738585072014E-308", "9007199254740993", "0.1", "1e23", "123456789012345678",
+                "9999999999999999999", "NaN", "-Infinity", "+5", ".5", "5.", "1E+2",
+                "2.4703282292062328E-324", "7.2057594037927933e16"}) {
+            assertParsesLikeJava(text);
+        }
+        for (String text : new String[] {"", "-", ".", "e5", "1e", "1.2.3", "triggered", "12%"}) {
+            assertThrows(NumberFormatException.class, () -> parse(text), text);
+        }
+    }
+
+    private static void assertParsesLikeJava(String text) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)),
+                Double.doubleToRawLongBits(parse(text)), text);
+    }
+
+    private static double parse(String text) {
+        byte[] bytes = (" " + text + " ").getBytes(StandardCharsets.US_ASCII);
+        return DecimalParser.parse(ByteBuffer.wrap(bytes), 1, bytes.length - 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class DeletionPolicyTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    @Test
+    void testRetentionPerTypeFallsBackToDefault() {
+        DeletionPolicy policy = new DeletionPolicy(7 * DAY).setRetention("ECG", 10 * MINUTE);
+
+        assertEquals(10 * MINUTE, policy.getRetention(RecordTypes.ECG));
+        assertEquals(7 * DAY, policy.getRetention(RecordTypes.CHOLESTEROL));
+        assertEquals(Long.MIN_VALUE, new DeletionPolicy().cutoff(RecordTypes.ECG, 1000L));
+
+        long now = 100 * DAY;
+        assertTrue(policy.isExpired(new PatientRecord(1, 0, "ECG", now - 11 * MINUTE), now));
+        assertFalse(policy.isExpired(new PatientRecord(1, 0, "Cholesterol", now - 11 * MINUTE), now));
+    }
+
+    @Test
+    void testLongIngestKeepsOnlyTheRetentionWindow() {
+        DataStorage storage = new DataStorage(new DeletionPolicy().setRetention("ECG", 10 * MINUTE));
+        int perSecond = 10;
+        long readings = 6 * 60 * 60 * perSecond; // six hours at 10 Hz
+        for (long i = 0; i < readings; i++) {
+            storage.addPatientData(1, i, "ECG", i * 1000 / perSecond);
+            storage.addPatientData(1, i, "Cholesterol", i * 1000 / perSecond);
+        }
+        long newest = (readings - 1) * 1000 / perSecond;
+
+        List<PatientRecord> ecg = storage.getRecords(1, "ECG", Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(10 * 60 * perSecond + 1, ecg.size());
+        assertEquals(newest - 10 * MINUTE, ecg.get(0).getTimestamp());
+        assertEquals(newest, ecg.get(ecg.size() - 1).getTimestamp());
+        // Types without a retention are kept forever
+        assertEquals(readings, storage.getRecords(1, "Cholesterol", Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testSeriesCapacityStaysBounded() {
+        TimeSeries series = new TimeSeries(1, RecordTypes.ECG);
+        int window = 1000;
+        int maxCapacity = 0;
+        for (int i = 0; i < 200_000; i++) {
+            series.add(i, i);
+            series.removeBefore(i - window + 1);
+            maxCapacity = Math.max(maxCapacity, series.capacity());
+        }
+        assertEquals(window, series.size());
+        assertTrue(maxCapacity <= 4 * window, "capacity grew to " + maxCapacity);
+    }
+
+    @Test
+    void testPurgeDropsSeriesThatStoppedReceivingReadings() {
+        DataStorage storage = new DataStorage(new DeletionPolicy(DAY).setRetention("ECG", MINUTE));
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(1, i, "ECG", i * 100L);
+        }
+        storage.addPatientData(2, 5.0, "Cholesterol", 2 * DAY);
+
+        // Patient 1 sends nothing more, so only a purge can expire its ECG
+        assertEquals(100, storage.getRecords(1, "ECG", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(100, storage.purgeOldData());
+        assertTrue(storage.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        assertEquals(1, storage.getRecords(2, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(0, storage.purgeOldData());
+    }
+
+    @Test
+    void testBackgroundPurging() throws Exception {
+        DataStorage storage = new DataStorage(new DeletionPolicy(MINUTE));
+        storage.addPatientData(1, 1.0, "Saturation", 0L);
+        storage.addPatientData(2, 1.0, "Saturation", 2 * MINUTE);
+        storage.startPurging(10);
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!storage.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            storage.stopPurging();
+        }
+        assertTrue(storage.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        assertEquals(1, storage.getRecords(2, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+}
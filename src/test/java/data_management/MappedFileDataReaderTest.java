@@ -0,0 +1,88 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFileDataReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadsTheSameRecordsAsFileDataReader() throws IOException {
+        Random random = new Random(11);
+        List<String> ecg = new ArrayList<>();
+        List<String> saturation = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int patient = 1 + random.nextInt(25);
+            ecg.add("Patient ID: " + patient + ", Timestamp: " + (1_700_000_000_000L + i)
+                    + ", Label: ECG, Data: " + random.nextGaussian());
+            if (i % 10 == 0) {
+                saturation.add("Patient ID: " + patient + ", Timestamp: " + (1_700_000_000_000L + i)
+                        + ", Label: Saturation, Data: " + (90 + random.nextInt(10)) + ".0%");
+            }
+        }
+        Files.write(tempDir.resolve("ECG.txt"), ecg);
+        Files.write(tempDir.resolve("Saturation.txt"), saturation);
+
+        DataStorage expected = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(expected);
+        // Chunks of about 4 KB, so most lines fall in another chunk than their patient's previous one
+        DataStorage actual = new DataStorage();
+        MappedFileDataReader reader = new MappedFileDataReader(tempDir.toString(),
+                Long.MIN_VALUE, Long.MAX_VALUE, 3, 4096);
+        reader.readData(actual);
+
+        assertEquals(0, reader.getSkippedLines());
+        assertEquals(expected.getAllPatients().size(), actual.getAllPatients().size());
+        for (Patient patient : expected.getAllPatients()) {
+            List<PatientRecord> want = patient.getAllRecords();
+            List<PatientRecord> got = actual.getRecords(patient.getPatientId(), Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(want.size(), got.size());
+            for (int i = 0; i < want.size(); i++) {
+                assertEquals(want.get(i).getTimestamp(), got.get(i).getTimestamp());
+                assertEquals(want.get(i).getRecordType(), got.get(i).getRecordType());
+                assertEquals(want.get(i).getMeasurementValue(), got.get(i).getMeasurementValue());
+            }
+        }
+    }
+
+    @Test
+    void testSkipsAlertsAndMalformedLinesAndFiltersByTime() throws IOException {
+        Files.write(tempDir.resolve("Alert.txt"), List.of(
+                "Patient ID: 1, Timestamp: 1000, Label: Alert, Data: triggered",
+                "Patient ID: 1, Timestamp: 2000, Label: Alert, Data: resolved"));
+        Files.write(tempDir.resolve("Cholesterol.txt"), List.of(
+                "Patient ID: 2, Timestamp: 1000, Label: Cholesterol, Data: 180.5",
+                "Patient ID: 2, Timestamp: 99999999999999999999, Label: Cholesterol, Data: 1.0",
+                "Patient ID: 2, Timestamp: 2000, Label: Cholesterol, Data: 190.25",
+                "garbage",
+                "Patient ID: 2, Timestamp: 3000, Label: Cholesterol, Data: 200"));
+        // A line still being written has no line break yet
+        Files.write(tempDir.resolve("ECG.txt"),
+                "Patient ID: 3, Timestamp: 2500, Label: ECG, Data: -0.5\r\nPatient ID: 3, Timestamp: 2600, Label: ECG, Data: 0.25"
+                        .getBytes());
+
+        DataStorage storage = new DataStorage();
+        MappedFileDataReader reader = new MappedFileDataReader(tempDir.toString(), 1500, 2800);
+        reader.readData(storage);
+
+        assertTrue(storage.getRecords(1, 0, Long.MAX_VALUE).isEmpty());
+        List<PatientRecord> cholesterol = storage.getRecords(2, 0, Long.MAX_VALUE);
+        assertEquals(1, cholesterol.size());
+        assertEquals(190.25, cholesterol.get(0).getMeasurementValue());
+        List<PatientRecord> ecg = storage.getRecords(3, 0, Long.MAX_VALUE);
+        assertEquals(2, ecg.size());
+        assertEquals(-0.5, ecg.get(0).getMeasurementValue());
+        assertEquals(0.25, ecg.get(1).getMeasurementValue());
+        assertEquals(3, reader.getSkippedLines());
+    }
+}
@@ -1,6 +1,8 @@
 package com.data_management;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -40,4 +42,48 @@ class PatientTest {
         List<PatientRecord> none = p.getRecords(400L, 500L);
         assertEquals(0, none.size(), "Should retrieve no records in [400,500]");
     }
+
+    @Test
+    void testRecordsOfSeveralTypesAreMergedInTimeOrder() {
+        Patient p = new Patient(7);
+        p.addRecord(120.0, "SystolicPressure", 300L);
+        p.addRecord(97.0, "Saturation", 100L);
+        p.addRecord(80.0, "DiastolicPressure", 300L);
+        p.addRecord(96.0, "Saturation", 200L);
+        p.addRecord(95.0, "Saturation", 150L); // out of order
+
+        List<PatientRecord> all = p.getAllRecords();
+        assertEquals(5, all.size());
+        long previous = Long.MIN_VALUE;
+        for (PatientRecord record : all) {
+            assertTrue(record.getTimestamp() >= previous, "records should be in timestamp order");
+            assertEquals(7, record.getPatientId());
+            previous = record.getTimestamp();
+        }
+
+        List<PatientRecord> saturation = p.getRecords("Saturation", 100L, 200L);
+        assertEquals(3, saturation.size());
+        assertEquals(95.0, saturation.get(1).getMeasurementValue(), EPS);
+        assertEquals(150L, saturation.get(1).getTimestamp());
+        assertEquals(0, p.getRecords("ECG", 0L, 1000L).size());
+        assertEquals(List.of("SystolicPressure", "Saturation", "DiastolicPressure"), p.getRecordTypes());
+    }
+
+    @Test
+    void testReturnedRecordsAreSnapshots() {
+        Patient p = new Patient(8);
+        for (long t = 0; t < 100; t++) {
+            p.addRecord(t, "ECG", t);
+        }
+        List<PatientRecord> before = p.getRecords(0L, Long.MAX_VALUE);
+        p.addRecord(-1.0, "ECG", 50L); // forces a copy of the columns
+        for (long t = 100; t < 1000; t++) {
+            p.addRecord(t, "ECG", t);
+        }
+
+        assertEquals(100, before.size());
+        assertEquals(50.0, before.get(50).getMeasurementValue(), EPS);
+        assertEquals(1001, p.getAllRecords().size());
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(0));
+    }
 }
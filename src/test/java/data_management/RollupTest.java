@@ -0,0 +1,108 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+class RollupTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void testTiersMatchSummariesOfTheRawRecords() {
+        Patient withRollups = new Patient(1, null, true);
+        Patient rawOnly = new Patient(1);
+        Random random = new Random(42);
+        long timestamp = 0;
+        for (int i = 0; i < 50_000; i++) {
+            timestamp += random.nextInt(500);
+            double value = 90 + random.nextInt(10);
+            withRollups.addRecord(value, "Saturation", timestamp);
+            rawOnly.addRecord(value, "Saturation", timestamp);
+        }
+
+        for (long resolution : new long[] {1000L, 10_000L, 60_000L, 300_000L, HOUR, 24 * HOUR}) {
+            List<Rollup> fromTiers = withRollups.getRollups("Saturation", 12_345L, timestamp / 2, resolution);
+            List<Rollup> fromRecords = rawOnly.getRollups("Saturation", 12_345L, timestamp / 2, resolution);
+            assertFalse(fromTiers.isEmpty());
+            assertEquals(fromRecords.size(), fromTiers.size(), "resolution " + resolution);
+            for (int i = 0; i < fromTiers.size(); i++) {
+                Rollup expected = fromRecords.get(i);
+                Rollup actual = fromTiers.get(i);
+                assertEquals(expected.getStartTime(), actual.getStartTime());
+                assertEquals(resolution, actual.getDuration());
+                assertEquals(expected.getMin(), actual.getMin());
+                assertEquals(expected.getMax(), actual.getMax());
+                assertEquals(expected.getSum(), actual.getSum(), 1e-6);
+                assertEquals(expected.getCount(), actual.getCount());
+                assertEquals(expected.getLast(), actual.getLast());
+            }
+        }
+    }
+
+    @Test
+    void testBucketsOverlappingTheWindowAreReturnedWhole() {
+        DataStorage storage = new DataStorage(null, true);
+        storage.addPatientData(1, 80.0, "SystolicPressure", 10_000L);
+        storage.addPatientData(1, 120.0, "SystolicPressure", 59_000L);
+        storage.addPatientData(1, 100.0, "SystolicPressure", 61_000L);
+
+        List<Rollup> minutes = storage.getRollups(1, "SystolicPressure", 30_000L, 60_000L, 60_000L);
+        assertEquals(2, minutes.size());
+        Rollup first = minutes.get(0);
+        assertEquals(0L, first.getStartTime());
+        assertEquals(2, first.getCount());
+        assertEquals(80.0, first.getMin());
+        assertEquals(120.0, first.getMax());
+        assertEquals(100.0, first.getAverage());
+        assertEquals(120.0, first.getLast());
+        assertEquals(60_000L, minutes.get(1).getStartTime());
+        assertTrue(storage.getRollups(2, "SystolicPressure", 0L, 60_000L, 60_000L).isEmpty());
+    }
+
+    @Test
+    void testLateReadingUpdatesItsBucketButNotItsLastValue() {
+        Patient patient = new Patient(1, null, true);
+        patient.addRecord(1.0, "ECG", 1_500L);
+        patient.addRecord(3.0, "ECG", 5_000L);
+        patient.addRecord(2.0, "ECG", 1_200L); // late, but older than 1_500
+        patient.addRecord(4.0, "ECG", 3_000L); // late, into a bucket of its own
+
+        List<Rollup> seconds = patient.getRollups("ECG", 0L, 10_000L, 1000L);
+        assertEquals(3, seconds.size());
+        assertEquals(1_000L, seconds.get(0).getStartTime());
+        assertEquals(2, seconds.get(0).getCount());
+        assertEquals(1.0, seconds.get(0).getLast());
+        assertEquals(3_000L, seconds.get(1).getStartTime());
+        assertEquals(5_000L, seconds.get(2).getStartTime());
+    }
+
+    @Test
+    void testSubSecondResolutionFallsBackToRecords() {
+        Patient patient = new Patient(1, null, true);
+        for (int i = 0; i < 10; i++) {
+            patient.addRecord(i, "ECG", i * 100L);
+        }
+        List<Rollup> buckets = patient.getRollups("ECG", 0L, 999L, 250L);
+        assertEquals(4, buckets.size());
+        assertEquals(3, buckets.get(0).getCount());
+        assertEquals(2, buckets.get(3).getCount());
+        assertThrows(IllegalArgumentException.class, () -> patient.getRollups("ECG", 0L, 999L, 0L));
+    }
+
+    @Test
+    void testRetentionAlsoExpiresRollups() {
+        DataStorage storage = new DataStorage(new DeletionPolicy(HOUR), true);
+        for (long t = 0; t < 10 * HOUR; t += 1000) {
+            storage.addPatientData(1, 1.0, "Saturation", t);
+        }
+        List<Rollup> hours = storage.getRollups(1, "Saturation", 0L, 10 * HOUR, HOUR);
+        // The hour still partly inside the retention window is kept whole
+        assertEquals(2, hours.size());
+        assertEquals(8 * HOUR, hours.get(0).getStartTime());
+        assertEquals(3600, hours.get(0).getCount());
+    }
+}
@@ -0,0 +1,133 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+class TailingFileDataReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path ecg;
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        ecg = tempDir.resolve("ECG.txt");
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testReadsOnlyAppendedCompleteLines() throws IOException {
+        try (TailingFileDataReader reader = new TailingFileDataReader(tempDir.toString())) {
+            append(ecg, line(1, 1000, "0.5") + line(1, 1004, "0.75") + "Patient ID: 1, Timestamp: 10");
+            assertEquals(2, reader.poll(storage));
+            assertEquals(line(1, 1000, "0.5").length() + line(1, 1004, "0.75").length(), reader.getOffset("ECG.txt"));
+
+            append(ecg, "08, Label: ECG, Data: -1.25\n");
+            append(tempDir.resolve("Alert.txt"), "Patient ID: 1, Timestamp: 1008, Label: Alert, Data: triggered\n");
+            assertEquals(1, reader.poll(storage));
+            assertEquals(0, reader.poll(storage));
+            assertEquals(1, reader.getSkippedLines());
+        }
+        assertEquals(3, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(-1.25, storage.getRecords(1, 1008, 1008).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testFollowsTruncatedAndRotatedFiles() throws IOException {
+        try (TailingFileDataReader reader = new TailingFileDataReader(tempDir.toString())) {
+            append(ecg, line(1, 1000, "1.0") + line(1, 2000, "2.0"));
+            assertEquals(2, reader.poll(storage));
+
+            // Truncated and rewritten with less data than was read
+            try (FileChannel channel = FileChannel.open(ecg, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+            append(ecg, line(2, 3000, "3.0"));
+            assertEquals(1, reader.poll(storage));
+
+            // Rotated: the old file gets a last line after it was renamed
+            append(ecg, line(2, 4000, "4.0"));
+            Path rotated = tempDir.resolve("ECG.txt.1");
+            Files.move(ecg, rotated);
+            append(rotated, line(2, 5000, "5.0"));
+            append(ecg, line(2, 6000, "6.0"));
+            assertEquals(3, reader.poll(storage));
+            assertEquals(line(2, 6000, "6.0").length(), reader.getOffset("ECG.txt"));
+        }
+        assertEquals(2, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(4, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testResumesFromSavedOffsets() throws IOException {
+        String offsets = tempDir.resolve("offsets.properties").toString();
+        Path dir = Files.createDirectory(tempDir.resolve("output"));
+        Path saturation = dir.resolve("Saturation.txt");
+        append(saturation, "Patient ID: 3, Timestamp: 1000, Label: Saturation, Data: 97.0%\n");
+        try (TailingFileDataReader reader = new TailingFileDataReader(dir.toString(), offsets, 100)) {
+            reader.readData(storage);
+        }
+        append(saturation, "Patient ID: 3, Timestamp: 2000, Label: Saturation, Data: 95.0%\n");
+
+        DataStorage restarted = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(dir.toString(), offsets, 100)) {
+            assertEquals(1, reader.poll(restarted));
+        }
+        assertEquals(95.0, restarted.getRecords(3, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+        assertEquals(1, restarted.getRecords(3, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testSavedOffsetsNeverGetAheadOfTheLog() throws IOException {
+        String offsets = tempDir.resolve("offsets.properties").toString();
+        Path dir = Files.createDirectory(tempDir.resolve("output"));
+        String logDir = tempDir.resolve("wal").toString();
+        Path cholesterol = dir.resolve("Cholesterol.txt");
+        append(cholesterol, "Patient ID: 5, Timestamp: 1000, Label: Cholesterol, Data: 180.0\n");
+
+        // Only forced on request, and abandoned without closing as if the process died
+        WriteAheadLog log = new WriteAheadLog(logDir, 0);
+        storage.attachLog(log);
+        TailingFileDataReader reader = new TailingFileDataReader(dir.toString(), offsets, 100);
+        assertEquals(1, reader.poll(storage));
+
+        DataStorage restarted = new DataStorage();
+        restarted.attachLog(new WriteAheadLog(logDir, 0));
+        try (TailingFileDataReader resumed = new TailingFileDataReader(dir.toString(), offsets, 100)) {
+            assertEquals(0, resumed.poll(restarted));
+        }
+        assertEquals(1, restarted.getRecords(5, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testBackgroundThreadPicksUpAppends() throws Exception {
+        try (TailingFileDataReader reader = new TailingFileDataReader(tempDir.toString(), null, 20)) {
+            reader.start(storage);
+            for (int i = 0; i < 100; i++) {
+                append(ecg, line(4, 1000 + i, Integer.toString(i)));
+            }
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (storage.getRecords(4, 0, Long.MAX_VALUE).size() < 100 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+        assertEquals(100, storage.getRecords(4, 0, Long.MAX_VALUE).size());
+    }
+
+    private static String line(int patientId, long timestamp, String data) {
+        return "Patient ID: " + patientId + ", Timestamp: " + timestamp + ", Label: ECG, Data: " + data + "\n";
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,156 @@
+package com.data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRestartReplaysTheLog() throws Exception {
+        DataStorage storage = new DataStorage();
+        WriteAheadLog log = new WriteAheadLog(dir.toString());
+        assertEquals(0, storage.attachLog(log));
+        for (int i = 0; i < 10_000; i++) {
+            storage.addPatientData(i % 3, i, i % 2 == 0 ? "ECG" : "Saturation", i);
+        }
+        log.close();
+
+        DataStorage restarted = new DataStorage();
+        WriteAheadLog reopened = new WriteAheadLog(dir.toString());
+        assertEquals(10_000, restarted.attachLog(reopened));
+        assertSameRecords(storage, restarted);
+
+        // The reopened log continues where the old one stopped
+        restarted.addPatientData(7, 1.0, "Cholesterol", 5L);
+        reopened.close();
+        DataStorage again = new DataStorage();
+        assertEquals(10_001, again.attachLog(new WriteAheadLog(dir.toString())));
+        assertEquals(1, again.getRecords(7, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testSnapshotReplacesOlderSegments() throws Exception {
+        DataStorage storage = new DataStorage();
+        WriteAheadLog log = new WriteAheadLog(dir.toString(), 0);
+        storage.attachLog(log);
+        for (int i = 0; i < 5000; i++) {
+            storage.addPatientData(1, i, "ECG", i * 4L);
+        }
+        assertEquals(5000, storage.snapshot());
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(2, i, "Saturation", i * 1000L);
+        }
+        log.close();
+        assertEquals(List.of("snapshot-000002.snap", "wal-000002.log"), files());
+
+        DataStorage restarted = new DataStorage();
+        assertEquals(5100, restarted.attachLog(new WriteAheadLog(dir.toString(), 0)));
+        assertSameRecords(storage, restarted);
+    }
+
+    @Test
+    void testRecoversAcrossSegmentRotations() throws Exception {
+        DataStorage storage = new DataStorage();
+        // Every batch starts a new segment, also those written because the 1 MiB buffer filled up
+        WriteAheadLog log = new WriteAheadLog(dir.toString(), 0, 1);
+        storage.attachLog(log);
+        String[] types = {"ECG", "Saturation", "Cholesterol"};
+        int n = 150_000;
+        for (int i = 0; i < n; i++) {
+            storage.addPatientData(i % 7, i, types[i % types.length], i);
+            if (i % 100_000 == 0) {
+                log.sync();
+            }
+        }
+        log.close();
+        assertTrue(files().size() > 5, files().toString());
+
+        DataStorage restarted = new DataStorage();
+        assertEquals(n, restarted.attachLog(new WriteAheadLog(dir.toString(), 0)));
+        assertSameRecords(storage, restarted);
+    }
+
+    @Test
+    void testTornTailIsIgnored() throws Exception {
+        DataStorage storage = new DataStorage();
+        WriteAheadLog log = new WriteAheadLog(dir.toString(), 0);
+        storage.attachLog(log);
+        storage.addPatientData(1, 1.0, "ECG", 1L);
+        log.sync(); // first batch
+        storage.addPatientData(1, 2.0, "ECG", 2L);
+        log.close(); // second batch
+        Path segment = dir.resolve("wal-000001.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        DataStorage restarted = new DataStorage();
+        assertEquals(1, restarted.attachLog(new WriteAheadLog(dir.toString(), 0)));
+        assertEquals(1.0, restarted.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testSnapshotDuringIngestionLosesAndDuplicatesNothing() throws Exception {
+        DataStorage storage = new DataStorage();
+        WriteAheadLog log = new WriteAheadLog(dir.toString());
+        storage.attachLog(log);
+        int writers = 4;
+        int perWriter = 50_000;
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads[w] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    storage.addPatientData(i % 10, writer, "W" + writer, i);
+                }
+            });
+            threads[w].start();
+        }
+        int snapshots = 0;
+        while (threads[0].isAlive() || snapshots == 0) {
+            storage.snapshot();
+            snapshots++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        DataStorage restarted = new DataStorage();
+        assertEquals(writers * perWriter, restarted.attachLog(new WriteAheadLog(dir.toString())));
+        assertSameRecords(storage, restarted);
+    }
+
+    private static void assertSameRecords(DataStorage expected, DataStorage actual) {
+        assertEquals(expected.getAllPatients().size(), actual.getAllPatients().size());
+        for (Patient patient : expected.getAllPatients()) {
+            List<PatientRecord> want = patient.getAllRecords();
+            List<PatientRecord> got = actual.getRecords(patient.getPatientId(), Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(want.size(), got.size(), "patient " + patient.getPatientId());
+            for (int i = 0; i < want.size(); i++) {
+                assertEquals(want.get(i).getTimestamp(), got.get(i).getTimestamp());
+                assertEquals(want.get(i).getRecordType(), got.get(i).getRecordType());
+                assertEquals(want.get(i).getMeasurementValue(), got.get(i).getMeasurementValue());
+            }
+        }
+    }
+
+    private List<String> files() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}